@@ -0,0 +1,114 @@
+package com.example;
+
+/**
+ * Zapis jednej zakończonej partii w archiwum ({@link GameArchive}): gracze, ustawienia,
+ * wynik i kolejne ruchy. Ruch jest kodowany jako {@code 0} dla pasu lub {@code indeks + 1}
+ * dla kamienia postawionego na polu {@code indeks = x * size + y}.
+ * Obiekt jest niezmienny (tablicy ruchów nie wolno modyfikować).
+ */
+public final class ArchivedGame {
+
+    /**
+     * Sposób zakończenia partii.
+     */
+    public enum Ending {
+
+        /** Partia policzona po fazie punktacji. */
+        SCORE,
+
+        /** Jeden z graczy się poddał. */
+        RESIGNATION,
+
+        /** Jednemu z graczy skończył się czas na ruch. */
+        TIMEOUT,
+
+        /** Jeden z graczy rozłączył się i nie wrócił. */
+        DISCONNECT
+    }
+
+    /** Opis czarnego gracza (np. adres klienta). */
+    public final String blackPlayer;
+
+    /** Opis białego gracza (np. adres klienta). */
+    public final String whitePlayer;
+
+    /** Rozmiar planszy. */
+    public final int size;
+
+    /** Komi obowiązujące w partii. */
+    public final float komi;
+
+    /** Zasady punktacji. */
+    public final ScoringRules scoring;
+
+    /** Zwycięzca partii ({@link Stone#EMPTY}, jeśli obaj gracze rozłączyli się i nie wrócili). */
+    public final Stone winner;
+
+    /** Sposób zakończenia partii. */
+    public final Ending ending;
+
+    /** Wynik czarnego (tylko po punktacji, w pozostałych przypadkach 0). */
+    public final float blackScore;
+
+    /** Wynik białego (tylko po punktacji, w pozostałych przypadkach 0). */
+    public final float whiteScore;
+
+    /** Kody kolejnych ruchów, zaczynając od czarnego. */
+    public final short[] moves;
+
+    /**
+     * Tworzy zapis partii.
+     *
+     * @param blackPlayer Opis czarnego gracza.
+     * @param whitePlayer Opis białego gracza.
+     * @param size        Rozmiar planszy.
+     * @param komi        Komi.
+     * @param scoring     Zasady punktacji.
+     * @param winner      Zwycięzca.
+     * @param ending      Sposób zakończenia partii.
+     * @param blackScore  Wynik czarnego.
+     * @param whiteScore  Wynik białego.
+     * @param moves       Kody ruchów.
+     */
+    public ArchivedGame(String blackPlayer, String whitePlayer, int size, float komi, ScoringRules scoring,
+                        Stone winner, Ending ending, float blackScore, float whiteScore, short[] moves) {
+        this.blackPlayer = blackPlayer == null ? "" : blackPlayer;
+        this.whitePlayer = whitePlayer == null ? "" : whitePlayer;
+        this.size = size;
+        this.komi = komi;
+        this.scoring = scoring;
+        this.winner = winner;
+        this.ending = ending;
+        this.blackScore = blackScore;
+        this.whiteScore = whiteScore;
+        this.moves = moves;
+    }
+
+    /**
+     * Koduje ruch na polu planszy.
+     *
+     * @param x    Współrzędna pozioma.
+     * @param y    Współrzędna pionowa.
+     * @param size Rozmiar planszy.
+     * @return Kod ruchu.
+     */
+    public static short play(int x, int y, int size) {
+        return (short) (x * size + y + 1);
+    }
+
+    /**
+     * Odtwarza partię i zwraca końcową pozycję (przed zdjęciem martwych kamieni).
+     *
+     * @return Plansza po ostatnim ruchu.
+     */
+    public Board replay() {
+        Board board = new Board(size);
+        RulesEngine rules = new RulesEngine();
+        Stone turn = Stone.BLACK;
+        for (short code : moves) {
+            if (code != 0) rules.play(board, (code - 1) / size, (code - 1) % size, turn);
+            turn = turn.opposite();
+        }
+        return board;
+    }
+}
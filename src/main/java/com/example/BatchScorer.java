@@ -0,0 +1,138 @@
+package com.example;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Liczy wyniki wielu zakończonych partii równolegle, np. po zmianie komi
+ * lub zasad punktacji w archiwum gier.
+ * Lista partii jest dzielona rekurencyjnie na fragmenty przetwarzane w puli fork/join;
+ * każdy wątek korzysta z własnych buforów roboczych {@link ScoringEngine}.
+ */
+public class BatchScorer {
+
+    /** Liczba partii, poniżej której fragment jest liczony bez dalszego podziału. */
+    private static final int THRESHOLD = 256;
+
+    /** Pula wątków wykonująca obliczenia. */
+    private final ForkJoinPool pool;
+
+    /** Silnik punktacji (bezstanowy, współdzielony przez wątki). */
+    private final ScoringEngine engine = new ScoringEngine();
+
+    /**
+     * Tworzy obiekt korzystający ze wspólnej puli fork/join (wszystkie rdzenie).
+     */
+    public BatchScorer() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Tworzy obiekt korzystający z podanej puli wątków.
+     *
+     * @param pool Pula fork/join.
+     */
+    public BatchScorer(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Liczy wyniki wszystkich partii z listy.
+     *
+     * @param jobs Partie do policzenia.
+     * @return Wyniki w kolejności listy wraz z czasem i przepustowością.
+     */
+    public BatchResult scoreAll(List<ScoringJob> jobs) {
+        ScoringResult[] results = new ScoringResult[jobs.size()];
+        long start = System.nanoTime();
+        pool.invoke(new Slice(jobs, results, 0, jobs.size()));
+        return new BatchResult(results, System.nanoTime() - start);
+    }
+
+    /**
+     * Liczy wyniki wszystkich partii ze strumienia.
+     *
+     * @param jobs Strumień partii do policzenia.
+     * @return Wyniki w kolejności strumienia wraz z czasem i przepustowością.
+     */
+    public BatchResult scoreAll(Stream<ScoringJob> jobs) {
+        return scoreAll(jobs.collect(Collectors.toList()));
+    }
+
+    /**
+     * Fragment listy partii liczony jako jedno zadanie fork/join.
+     */
+    private class Slice extends RecursiveAction {
+        private final List<ScoringJob> jobs;
+        private final ScoringResult[] results;
+        private final int from;
+        private final int to;
+
+        Slice(List<ScoringJob> jobs, ScoringResult[] results, int from, int to) {
+            this.jobs = jobs;
+            this.results = results;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= THRESHOLD) {
+                for (int k = from; k < to; k++) {
+                    ScoringJob job = jobs.get(k);
+                    results[k] = engine.score(job.position, job.blackPrisoners, job.whitePrisoners, job.komi, job.rules);
+                }
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new Slice(jobs, results, from, mid), new Slice(jobs, results, mid, to));
+        }
+    }
+
+    /**
+     * Wynik przetwarzania wsadowego: wyniki partii, czas oraz przepustowość.
+     */
+    public static final class BatchResult {
+
+        /** Wyniki partii w kolejności wejścia. */
+        private final ScoringResult[] results;
+
+        /** Czas przetwarzania w nanosekundach. */
+        private final long elapsedNanos;
+
+        BatchResult(ScoringResult[] results, long elapsedNanos) {
+            this.results = results;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        /**
+         * Zwraca wyniki partii.
+         *
+         * @return Niezmienna lista wyników w kolejności wejścia.
+         */
+        public List<ScoringResult> results() {
+            return List.of(results);
+        }
+
+        /**
+         * Zwraca czas przetwarzania.
+         *
+         * @return Czas w nanosekundach.
+         */
+        public long elapsedNanos() {
+            return elapsedNanos;
+        }
+
+        /**
+         * Zwraca przepustowość przetwarzania.
+         *
+         * @return Liczba partii policzonych na sekundę.
+         */
+        public double gamesPerSecond() {
+            return elapsedNanos == 0 ? 0 : results.length * 1e9 / elapsedNanos;
+        }
+    }
+}
@@ -1,34 +1,66 @@
 package com.example;
 
+import java.util.Arrays;
+
 /**
  * Reprezentuje planszę do gry.
- * Plansza przechowuje stan gry w postaci dwuwymiarowej tablicy obiektów {@link Stone}.
+ * Plansza przechowuje stan gry w postaci dwóch zbiorów bitowych (po jednym na kolor),
+ * w których pole (x, y) odpowiada bitowi o indeksie {@code x * size + y}.
+ * Kopiowanie, porównywanie i zliczanie kamieni odbywa się na całych słowach {@code long}.
  */
 public class Board {
 
     /**
-     * Dwuwymiarowa tablica przechowywująca układ kamieni na planszy.
-     * Pierwszy indeks to współrzędna X, drugi to współrzędna Y.
+     * Geometria planszy (rozmiar, liczba słów, maski krawędzi).
+     */
+    private final BoardGeometry geometry;
+
+    /**
+     * Zbiór bitowy pól zajętych przez czarne kamienie.
+     */
+    private final long[] black;
+
+    /**
+     * Zbiór bitowy pól zajętych przez białe kamienie.
      */
-    private final Stone[][] grid;
+    private final long[] white;
 
     /**
      * Rozmiar boku planszy.
      */
     private final int size;
 
+    /**
+     * Skrót Zobrista bieżącego układu kamieni, aktualizowany przy każdej zmianie pola.
+     */
+    private long zobrist;
+
+    /**
+     * Struktura łańcuchów i oddechów, tworzona przy pierwszym użyciu przez silnik reguł.
+     */
+    private GroupTracker groups;
+
+    /**
+     * Przyrostowe terytorium, tworzone przy pierwszym zapytaniu o szacowany wynik.
+     */
+    private ScoreTracker territory;
+
+    /**
+     * Dziennik zmian ruchów wykonanych przez {@link RulesEngine#play(Board, int, int, Stone)}.
+     */
+    private UndoLog undoLog;
+
     /**
      * Tworzy nową, pustą planszę o zadanym rozmiarze.
-     * Wszystkie pola są inicjalizowane wartością {@link Stone#EMPTY}.
+     * Wszystkie pola mają wartość {@link Stone#EMPTY}.
      *
      * @param size Długość boku planszy.
      */
     public Board(int size) {
         this.size = size;
-        grid = new Stone[size][size];
-        for (int i = 0; i < size; i++)
-            for (int j = 0; j < size; j++)
-                grid[i][j] = Stone.EMPTY;
+        this.geometry = BoardGeometry.of(size);
+        this.black = geometry.newSet();
+        this.white = geometry.newSet();
     }
 
     /**
@@ -45,8 +77,8 @@ public class Board {
 
     /**
      * Pobiera kamień znajdujący się na podanych współrzędnych.
-     * Uwaga: Metoda nie sprawdza granic tablicy. W przypadku podania
-     * nieprawidłowych współrzędnych może zostać rzucony wyjątek {@link ArrayIndexOutOfBoundsException}.
+     * Uwaga: Metoda nie sprawdza granic planszy. Dla nieprawidłowych współrzędnych
+     * wynik jest nieokreślony lub zostanie rzucony wyjątek {@link ArrayIndexOutOfBoundsException}.
      * Zaleca się wcześniejsze sprawdzenie metodą {@link #inBounds(int, int)}.
      *
      * @param x Współrzędna pozioma pola.
@@ -54,7 +86,20 @@ public class Board {
      * @return Obiekt {@link Stone} znajdujący się na wskazanym polu.
      */
     public Stone get(int x, int y) {
-        return grid[x][y];
+        return get(geometry.index(x, y));
+    }
+
+    /**
+     * Pobiera kamień z pola o podanym indeksie {@code x * size + y}.
+     *
+     * @param i Indeks pola.
+     * @return Kamień na polu.
+     */
+    Stone get(int i) {
+        long bit = 1L << i;
+        if ((black[i >>> 6] & bit) != 0) return Stone.BLACK;
+        if ((white[i >>> 6] & bit) != 0) return Stone.WHITE;
+        return Stone.EMPTY;
     }
 
     /**
@@ -65,7 +110,116 @@ public class Board {
      * @param s Kamień ({@link Stone}), który ma zostać postawiony (np. BLACK, WHITE lub EMPTY).
      */
     public void set(int x, int y, Stone s) {
-        grid[x][y] = s;
+        int i = geometry.index(x, y);
+        Stone old = get(i);
+        set(i, s);
+        if (groups != null) groups.changed(i, old, s);
+    }
+
+    /**
+     * Ustawia kamień na polu o podanym indeksie.
+     * Zmienia zbiory bitowe i oznacza pole w liczniku terytorium;
+     * nie aktualizuje struktury łańcuchów.
+     *
+     * @param i Indeks pola.
+     * @param s Nowa zawartość pola.
+     */
+    void set(int i, Stone s) {
+        int w = i >>> 6;
+        long bit = 1L << i;
+        zobrist ^= geometry.zobrist(get(i), i) ^ geometry.zobrist(s, i);
+        black[w] &= ~bit;
+        white[w] &= ~bit;
+        if (s == Stone.BLACK) black[w] |= bit;
+        else if (s == Stone.WHITE) white[w] |= bit;
+        if (territory != null) territory.touch(i);
+    }
+
+    /**
+     * Zwraca 64-bitowy skrót Zobrista układu kamieni.
+     * Równe plansze mają równe skróty; różne plansze mają różne skróty
+     * z bardzo dużym prawdopodobieństwem.
+     *
+     * @return Skrót pozycji.
+     */
+    long zobrist() {
+        return zobrist;
+    }
+
+    /**
+     * Zwraca liczbę kamieni danego koloru na planszy.
+     * Dla {@link Stone#EMPTY} zwraca liczbę pustych pól.
+     *
+     * @param s Kolor kamieni.
+     * @return Liczba pól o danej zawartości.
+     */
+    public int count(Stone s) {
+        if (s == Stone.BLACK) return BoardGeometry.count(black);
+        if (s == Stone.WHITE) return BoardGeometry.count(white);
+        return geometry.points - BoardGeometry.count(black) - BoardGeometry.count(white);
+    }
+
+    /**
+     * Zwraca wewnętrzny zbiór bitowy kamieni danego koloru (bez kopiowania).
+     * Przeznaczone wyłącznie do odczytu przez silniki gry.
+     *
+     * @param s Kolor kamieni (BLACK lub WHITE).
+     * @return Tablica słów zbioru bitowego.
+     */
+    long[] bits(Stone s) {
+        return s == Stone.BLACK ? black : white;
+    }
+
+    /**
+     * Wyznacza zbiór pustych pól planszy.
+     *
+     * @param dst Tablica wynikowa (nadpisywana).
+     */
+    void empty(long[] dst) {
+        for (int w = 0; w < dst.length; w++) {
+            dst[w] = ~(black[w] | white[w]) & geometry.mask(w);
+        }
+    }
+
+    /**
+     * Zwraca strukturę łańcuchów i oddechów tej planszy, tworząc ją przy pierwszym wywołaniu.
+     * Od tej chwili jest ona aktualizowana przy każdej zmianie pola.
+     *
+     * @return Obiekt {@link GroupTracker} powiązany z planszą.
+     */
+    GroupTracker groups() {
+        if (groups == null) groups = new GroupTracker(this);
+        return groups;
+    }
+
+    /**
+     * Zwraca przyrostowy licznik terytorium tej planszy, tworząc go przy pierwszym wywołaniu.
+     * Od tej chwili każda zmiana pola jest w nim odnotowywana.
+     *
+     * @return Obiekt {@link ScoreTracker} powiązany z planszą.
+     */
+    ScoreTracker territory() {
+        if (territory == null) territory = new ScoreTracker(this);
+        return territory;
+    }
+
+    /**
+     * Zwraca dziennik zmian tej planszy, tworząc go przy pierwszym wywołaniu.
+     *
+     * @return Obiekt {@link UndoLog} powiązany z planszą.
+     */
+    UndoLog undoLog() {
+        if (undoLog == null) undoLog = new UndoLog();
+        return undoLog;
+    }
+
+    /**
+     * Zwraca geometrię planszy.
+     *
+     * @return Współdzielony obiekt {@link BoardGeometry}.
+     */
+    BoardGeometry geometry() {
+        return geometry;
     }
 
     /**
@@ -74,11 +228,25 @@ public class Board {
      */
     @Override
     public String toString() {
-        StringBuilder sb = new StringBuilder();
+        return toString(null);
+    }
+
+    /**
+     * Generuje tekstową reprezentację planszy, w której kamienie oznaczone jako martwe
+     * zapisane są małymi literami ('b', 'w').
+     *
+     * @param dead Zbiór bitowy martwych kamieni lub {@code null}.
+     * @return Łańcuch znaków przedstawiający planszę wiersz po wierszu.
+     */
+    String toString(long[] dead) {
+        StringBuilder sb = new StringBuilder(size * (2 * size + 1));
         for (int y = 0; y < size; y++) {
             for (int x = 0; x < size; x++) {
-                sb.append(grid[x][y] == Stone.BLACK ? 'B' :
-                        grid[x][y] == Stone.WHITE ? 'W' : '.');
+                int i = geometry.index(x, y);
+                Stone s = get(i);
+                boolean marked = dead != null && (dead[i >>> 6] & 1L << i) != 0;
+                sb.append(s == Stone.BLACK ? (marked ? 'b' : 'B') :
+                        s == Stone.WHITE ? (marked ? 'w' : 'W') : '.');
                 sb.append(' ');
             }
             sb.append('\n');
@@ -97,18 +265,44 @@ public class Board {
 
     /**
      * Tworzy głęboką kopię bieżącej planszy.
-     * Nowa plansza jest niezależnym obiektem z takim samym układem kamieni.
+     * Nowa plansza jest niezależnym obiektem z takim samym układem kamieni;
+     * kopiowane są jedynie słowa zbiorów bitowych.
      *
      * @return Nowy obiekt {@code Board} będący kopią bieżącego.
      */
     public Board copy() {
         Board b = new Board(size);
-        for (int x = 0; x < size; x++)
-            for (int y = 0; y < size; y++)
-                b.grid[x][y] = this.grid[x][y];
+        System.arraycopy(black, 0, b.black, 0, black.length);
+        System.arraycopy(white, 0, b.white, 0, white.length);
+        b.zobrist = zobrist;
         return b;
     }
 
+    /**
+     * Tworzy niezmienną migawkę bieżącego układu kamieni.
+     *
+     * @return Nowa migawka {@link BoardSnapshot}.
+     */
+    public BoardSnapshot snapshot() {
+        return snapshot(null);
+    }
+
+    /**
+     * Tworzy niezmienną migawkę bieżącego układu, współdzieląc z migawką bazową
+     * zbiory bitowe kolorów, które się od niej nie zmieniły.
+     *
+     * @param base Poprzednia migawka tej samej planszy lub {@code null}.
+     * @return Nowa migawka {@link BoardSnapshot}.
+     */
+    public BoardSnapshot snapshot(BoardSnapshot base) {
+        boolean sameSize = base != null && base.getSize() == size;
+        long[] b = sameSize && Arrays.equals(base.bits(Stone.BLACK), black)
+                ? base.bits(Stone.BLACK) : black.clone();
+        long[] w = sameSize && Arrays.equals(base.bits(Stone.WHITE), white)
+                ? base.bits(Stone.WHITE) : white.clone();
+        return new BoardSnapshot(size, b, w, zobrist);
+    }
+
     /**
      * Porównuje tę planszę z innym obiektem.
      * Dwie plansze są uznawane za równe, jeśli mają ten sam rozmiar
@@ -121,13 +315,19 @@ public class Board {
     public boolean equals(Object o) {
         if (!(o instanceof Board)) return false;
         Board other = (Board) o;
-        if (this.size != other.size) return false;
-
-        for (int x = 0; x < size; x++)
-            for (int y = 0; y < size; y++)
-                if (this.grid[x][y] != other.grid[x][y])
-                    return false;
+        return this.size == other.size
+                && this.zobrist == other.zobrist
+                && Arrays.equals(this.black, other.black)
+                && Arrays.equals(this.white, other.white);
+    }
 
-        return true;
+    /**
+     * Zwraca kod skrótu zgodny z {@link #equals(Object)}.
+     *
+     * @return Kod skrótu wyliczony ze skrótu Zobrista.
+     */
+    @Override
+    public int hashCode() {
+        return Long.hashCode(zobrist);
     }
-}
\ No newline at end of file
+}
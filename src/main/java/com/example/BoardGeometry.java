@@ -0,0 +1,179 @@
+package com.example;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Opisuje geometrię planszy o danym rozmiarze na potrzeby reprezentacji bitowej.
+ * Pole (x, y) ma indeks {@code x * size + y}, a zbiór pól jest tablicą słów {@code long},
+ * w której bit o numerze {@code i} odpowiada polu o indeksie {@code i}.
+ * Obiekty są niezmienne i współdzielone przez wszystkie plansze tego samego rozmiaru.
+ */
+final class BoardGeometry {
+
+    /** Pamięć podręczna geometrii dla kolejnych rozmiarów planszy. */
+    private static final ConcurrentMap<Integer, BoardGeometry> CACHE = new ConcurrentHashMap<>();
+
+    /** Długość boku planszy. */
+    final int size;
+
+    /** Liczba pól planszy. */
+    final int points;
+
+    /** Liczba słów {@code long} potrzebnych do zapisania zbioru pól. */
+    final int words;
+
+    /**
+     * Początki list sąsiadów w {@link #adjacent}: sąsiedzi pola {@code i} zajmują
+     * pozycje od {@code adjacentStart[i]} (włącznie) do {@code adjacentStart[i + 1]} (wyłącznie).
+     * Pola brzegowe i narożne mają odpowiednio mniej wpisów. Tablica nie może być modyfikowana.
+     */
+    final int[] adjacentStart;
+
+    /** Indeksy sąsiadów (góra, dół, lewo, prawo) kolejnych pól. Tablica nie może być modyfikowana. */
+    final int[] adjacent;
+
+    /** Maska wszystkich pól planszy. */
+    private final long[] full;
+
+    /** Maska pól, które mają sąsiada w kierunku y + 1. */
+    private final long[] notLastRow;
+
+    /** Maska pól, które mają sąsiada w kierunku y - 1. */
+    private final long[] notFirstRow;
+
+    /** Losowe klucze Zobrista dla czarnego kamienia na każdym polu. */
+    private final long[] zobristBlack;
+
+    /** Losowe klucze Zobrista dla białego kamienia na każdym polu. */
+    private final long[] zobristWhite;
+
+    private BoardGeometry(int size) {
+        this.size = size;
+        this.points = size * size;
+        this.words = Math.max(1, (points + 63) >>> 6);
+        this.full = new long[words];
+        this.notLastRow = new long[words];
+        this.notFirstRow = new long[words];
+
+        for (int i = 0; i < points; i++) {
+            int y = i % size;
+            full[i >>> 6] |= 1L << i;
+            if (y != size - 1) notLastRow[i >>> 6] |= 1L << i;
+            if (y != 0) notFirstRow[i >>> 6] |= 1L << i;
+        }
+
+        this.adjacentStart = new int[points + 1];
+        this.adjacent = new int[4 * points - 4 * size];
+        int k = 0;
+        for (int i = 0; i < points; i++) {
+            int x = i / size, y = i % size;
+            adjacentStart[i] = k;
+            if (x < size - 1) adjacent[k++] = i + size;
+            if (x > 0) adjacent[k++] = i - size;
+            if (y < size - 1) adjacent[k++] = i + 1;
+            if (y > 0) adjacent[k++] = i - 1;
+        }
+        adjacentStart[points] = k;
+
+        SplittableRandom random = new SplittableRandom(0x9E3779B97F4A7C15L ^ size);
+        this.zobristBlack = new long[points];
+        this.zobristWhite = new long[points];
+        for (int i = 0; i < points; i++) {
+            zobristBlack[i] = random.nextLong();
+            zobristWhite[i] = random.nextLong();
+        }
+    }
+
+    /**
+     * Zwraca geometrię dla planszy o podanym rozmiarze.
+     *
+     * @param size Długość boku planszy.
+     * @return Współdzielony obiekt geometrii.
+     */
+    static BoardGeometry of(int size) {
+        return CACHE.computeIfAbsent(size, BoardGeometry::new);
+    }
+
+    /**
+     * Zamienia współrzędne na indeks pola.
+     *
+     * @param x Współrzędna X.
+     * @param y Współrzędna Y.
+     * @return Indeks pola.
+     */
+    int index(int x, int y) {
+        return x * size + y;
+    }
+
+    /**
+     * Zwraca klucz Zobrista kamienia na polu.
+     * Skrót pozycji jest sumą XOR kluczy wszystkich kamieni, więc zmianę pola
+     * uwzględnia się jedną operacją XOR.
+     *
+     * @param s Kolor kamienia (dla {@link Stone#EMPTY} zwracane jest 0).
+     * @param i Indeks pola.
+     * @return 64-bitowy klucz.
+     */
+    long zobrist(Stone s, int i) {
+        if (s == Stone.BLACK) return zobristBlack[i];
+        if (s == Stone.WHITE) return zobristWhite[i];
+        return 0L;
+    }
+
+    /**
+     * Zwraca słowo maski wszystkich pól planszy.
+     *
+     * @param w Numer słowa.
+     * @return Maska pól leżących na planszy w danym słowie.
+     */
+    long mask(int w) {
+        return full[w];
+    }
+
+    /**
+     * Tworzy nowy, pusty zbiór pól.
+     *
+     * @return Tablica słów o długości {@link #words}.
+     */
+    long[] newSet() {
+        return new long[words];
+    }
+
+    /**
+     * Wyznacza zbiór pól sąsiadujących (góra, dół, lewo, prawo) z dowolnym polem zbioru {@code src}.
+     * Wynik nie obejmuje pól samego zbioru, chyba że sąsiadują z innym jego polem.
+     *
+     * @param src Zbiór wejściowy.
+     * @param dst Tablica wynikowa (nadpisywana), różna od {@code src}.
+     */
+    void neighbours(long[] src, long[] dst) {
+        int n = size;
+        for (int w = words - 1; w >= 0; w--) {
+            long s = src[w];
+            long lower = w > 0 ? src[w - 1] : 0L;
+            long upper = w + 1 < words ? src[w + 1] : 0L;
+
+            long r = (s << n) | (lower >>> (64 - n));
+            r |= (s >>> n) | (upper << (64 - n));
+            r |= ((s & notLastRow[w]) << 1)
+                    | (w > 0 ? (lower & notLastRow[w - 1]) >>> 63 : 0L);
+            r |= ((s & notFirstRow[w]) >>> 1)
+                    | (w + 1 < words ? (upper & notFirstRow[w + 1]) << 63 : 0L);
+            dst[w] = r & full[w];
+        }
+    }
+
+    /**
+     * Liczy pola należące do zbioru.
+     *
+     * @param set Zbiór pól.
+     * @return Liczba ustawionych bitów.
+     */
+    static int count(long[] set) {
+        int c = 0;
+        for (long w : set) c += Long.bitCount(w);
+        return c;
+    }
+}
@@ -0,0 +1,162 @@
+package com.example;
+
+import java.util.Arrays;
+
+/**
+ * Niezmienna migawka układu kamieni na planszy.
+ * <p>
+ * Migawka przechowuje zbiory bitowe obu kolorów w tym samym układzie co {@link Board}.
+ * Tablice nigdy nie są modyfikowane, dlatego kolejne migawki współdzielą z poprzednikiem
+ * zbiór koloru, który się nie zmienił (np. zbiór białych po ruchu czarnego bez zbicia).
+ * Pełna historia partii kosztuje więc kilkadziesiąt bajtów na ruch zamiast pełnej planszy,
+ * a migawkę można bez synchronizacji przekazać innym wątkom (pola są finalne).
+ */
+public final class BoardSnapshot {
+
+    /** Rozmiar boku planszy. */
+    private final int size;
+
+    /** Zbiór bitowy czarnych kamieni (niemodyfikowalny, współdzielony). */
+    private final long[] black;
+
+    /** Zbiór bitowy białych kamieni (niemodyfikowalny, współdzielony). */
+    private final long[] white;
+
+    /** Skrót Zobrista układu. */
+    private final long zobrist;
+
+    /**
+     * Tworzy migawkę z gotowych zbiorów bitowych.
+     *
+     * @param size    Rozmiar planszy.
+     * @param black   Zbiór czarnych kamieni (nie może być później modyfikowany).
+     * @param white   Zbiór białych kamieni (nie może być później modyfikowany).
+     * @param zobrist Skrót Zobrista układu.
+     */
+    BoardSnapshot(int size, long[] black, long[] white, long zobrist) {
+        this.size = size;
+        this.black = black;
+        this.white = white;
+        this.zobrist = zobrist;
+    }
+
+    /**
+     * Zwraca rozmiar planszy.
+     *
+     * @return Długość boku planszy.
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Pobiera kamień znajdujący się na podanych współrzędnych.
+     *
+     * @param x Współrzędna pozioma pola.
+     * @param y Współrzędna pionowa pola.
+     * @return Obiekt {@link Stone} znajdujący się na wskazanym polu.
+     */
+    public Stone get(int x, int y) {
+        int i = x * size + y;
+        long bit = 1L << i;
+        if ((black[i >>> 6] & bit) != 0) return Stone.BLACK;
+        if ((white[i >>> 6] & bit) != 0) return Stone.WHITE;
+        return Stone.EMPTY;
+    }
+
+    /**
+     * Tworzy nową, modyfikowalną planszę z układem tej migawki.
+     *
+     * @return Nowy obiekt {@link Board}.
+     */
+    public Board toBoard() {
+        Board b = new Board(size);
+        for (int w = 0; w < black.length; w++) {
+            for (long bits = black[w]; bits != 0; bits &= bits - 1) {
+                b.set((w << 6) + Long.numberOfTrailingZeros(bits), Stone.BLACK);
+            }
+            for (long bits = white[w]; bits != 0; bits &= bits - 1) {
+                b.set((w << 6) + Long.numberOfTrailingZeros(bits), Stone.WHITE);
+            }
+        }
+        return b;
+    }
+
+    /**
+     * Sprawdza, czy plansza ma dokładnie taki układ kamieni jak ta migawka.
+     *
+     * @param board Plansza do porównania.
+     * @return {@code true}, jeśli układy są identyczne.
+     */
+    boolean matches(Board board) {
+        return board.getSize() == size
+                && board.zobrist() == zobrist
+                && Arrays.equals(board.bits(Stone.BLACK), black)
+                && Arrays.equals(board.bits(Stone.WHITE), white);
+    }
+
+    /**
+     * Zwraca zbiór bitowy kamieni danego koloru (bez kopiowania, tylko do odczytu).
+     *
+     * @param s Kolor kamieni (BLACK lub WHITE).
+     * @return Tablica słów zbioru bitowego.
+     */
+    long[] bits(Stone s) {
+        return s == Stone.BLACK ? black : white;
+    }
+
+    /**
+     * Zwraca skrót Zobrista układu.
+     *
+     * @return Skrót pozycji.
+     */
+    long zobrist() {
+        return zobrist;
+    }
+
+    /**
+     * Generuje tekstową reprezentację planszy w formacie {@link Board#toString()}.
+     *
+     * @return Łańcuch znaków przedstawiający planszę wiersz po wierszu.
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(size * (2 * size + 1));
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                Stone s = get(x, y);
+                sb.append(s == Stone.BLACK ? 'B' : s == Stone.WHITE ? 'W' : '.');
+                sb.append(' ');
+            }
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Porównuje migawkę z innym obiektem; migawki są równe, gdy mają ten sam układ kamieni.
+     *
+     * @param o Obiekt do porównania.
+     * @return {@code true}, jeśli obiekty są logicznie równe.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof BoardSnapshot)) return false;
+        BoardSnapshot other = (BoardSnapshot) o;
+        return size == other.size
+                && zobrist == other.zobrist
+                && Arrays.equals(black, other.black)
+                && Arrays.equals(white, other.white);
+    }
+
+    /**
+     * Zwraca kod skrótu zgodny z {@link #equals(Object)}.
+     *
+     * @return Kod skrótu wyliczony ze skrótu Zobrista.
+     */
+    @Override
+    public int hashCode() {
+        return Long.hashCode(zobrist);
+    }
+}
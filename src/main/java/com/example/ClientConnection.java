@@ -0,0 +1,65 @@
+package com.example;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Połączenie z jednym graczem lub widzem, niezależne od sposobu transportu danych.
+ * Implementacje przekazują odebrane ruchy do {@link GameSession#handleMove(Move, ClientConnection)}
+ * i wysyłają klientowi kolejne stany gry.
+ */
+public interface ClientConnection {
+
+    /**
+     * Przypisuje połączenie do sesji gry i koloru kamieni.
+     *
+     * @param session Sesja, do której trafiają odebrane ruchy.
+     * @param stone   Kolor kamieni gracza.
+     */
+    void attach(GameSession session, Stone stone);
+
+    /**
+     * Rozpoczyna odbiór ruchów od klienta.
+     *
+     * @param executor Wykonawca dla transportów potrzebujących własnej pętli odbioru;
+     *                 transporty oparte na selektorach mogą go pominąć.
+     */
+    void start(Executor executor);
+
+    /**
+     * Zwraca kolor kamienia przypisany do tego gracza.
+     *
+     * @return Obiekt {@link Stone} reprezentujący kolor gracza.
+     */
+    Stone getStone();
+
+    /**
+     * Wysyła stan gry do klienta. Ten sam obiekt może trafić do wielu połączeń,
+     * więc implementacja korzysta z jego gotowej ramki zamiast kodować stan ponownie.
+     *
+     * @param state Stan gry przygotowany do wysłania.
+     */
+    void sendState(EncodedState state);
+
+    /**
+     * Sprawdza, czy połączenie jest wciąż otwarte (o ile transport potrafi to stwierdzić).
+     *
+     * @return {@code false}, jeśli połączenie zostało już zamknięte.
+     */
+    boolean isOpen();
+
+    /**
+     * Zwraca adres zdalnego klienta (zapisywany w archiwum partii jako opis gracza).
+     *
+     * @return Adres klienta lub pusty napis, jeśli nie jest znany.
+     */
+    String address();
+
+    /** Zamyka połączenie. */
+    void close();
+
+    /**
+     * Zamyka połączenie po wysłaniu stanów, które czekają już w kolejce (np. po końcu partii).
+     * Kolejne stany są pomijane.
+     */
+    void finish();
+}
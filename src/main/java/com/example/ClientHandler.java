@@ -2,23 +2,111 @@ package com.example;
 
 import java.io.*;
 import java.net.Socket;
+import java.util.concurrent.Executor;
 
 /**
- * Obsługuje połączenie sieciowe z pojedynczym klientem (graczem) w osobnym wątku.
+ * Obsługuje połączenie sieciowe z pojedynczym klientem (graczem) przez blokujące strumienie.
  * Klasa odpowiada za odbieranie ruchów od klienta oraz przesyłanie mu aktualnego stanu gry.
+ * Protokół wybierany jest po pierwszych bajtach od klienta: binarny {@link WireProtocol}
+ * albo (dla starszych klientów) serializacja Javy przez strumienie obiektowe.
+ * Pętla odbioru jest zadaniem ({@link Runnable}) uruchamianym przez wykonawcę sesji,
+ * domyślnie w wątku wirtualnym, więc bezczynne połączenie nie zajmuje wątku systemowego.
+ * Stany gry trafiają do {@link OutboundQueue}, którą opróżnia osobne zadanie pisarza,
+ * więc sesja nigdy nie czeka na zapis do gniazda wolnego klienta.
  */
-public class ClientHandler extends Thread {
-    /** Strumień wejściowy do odbierania obiektów od klienta. */
+public class ClientHandler implements ClientConnection, Runnable {
+    /**
+     * Co ile obiektów strumień serializacji jest resetowany. Strumień obiektowy pamięta każdy
+     * wysłany obiekt (tablica uchwytów), więc bez resetu pamięć połączenia rośnie przez całą partię;
+     * reset co kilkadziesiąt stanów ogranicza ją, a opis klasy wysyłany ponownie jest rzadki.
+     */
+    static final int RESET_INTERVAL = 32;
+    /**
+     * Limit czasu na przedstawienie się klienta ({@code go.handshakeMillis}). Po rozpoznaniu
+     * protokołu limit jest zdejmowany, bo gracz może długo myśleć nad ruchem.
+     */
+    static final int HANDSHAKE_MILLIS = Integer.getInteger("go.handshakeMillis", 10_000);
+    /** Gniazdo połączenia z klientem. */
+    private final Socket socket;
+    /** Strumień wejściowy do odbierania obiektów od klienta (protokół serializacji). */
     private final ObjectInputStream in;
-    /** Strumień wyjściowy do wysyłania obiektów do klienta. */
+    /** Strumień wyjściowy do wysyłania obiektów do klienta (protokół serializacji). */
     private final ObjectOutputStream out;
+    /** Strumień wejściowy ramek binarnych ({@code null} dla protokołu serializacji). */
+    private final DataInputStream dataIn;
+    /** Strumień wyjściowy ramek binarnych ({@code null} dla protokołu serializacji). */
+    private final DataOutputStream dataOut;
     /** Kolor kamienia przypisany do tego klienta. */
-    private final Stone stone;
+    private volatile Stone stone;
     /** Sesja gry, do której przypisany jest ten kontroler. */
-    private final GameSession session;
+    private volatile GameSession session;
+    /** Numer partii obserwowanej przez widza lub -1 dla gracza. */
+    private final long watchedGame;
+    /** Żeton sesji gracza wznawiającego grę lub 0. */
+    private final long resumeToken;
+    /** Wersja planszy, którą ma gracz wznawiający grę, lub -1. */
+    private final int resumeVersion;
+    /** Stany oczekujące na wysłanie przez pisarza. */
+    private final OutboundQueue outbound = new OutboundQueue();
+    /** Liczba obiektów zapisanych od ostatniego resetu strumienia serializacji (tylko pisarz). */
+    private int sinceReset;
+    /** Poczekalnia, w której gracz czeka na przeciwnika, lub {@code null}. */
+    private volatile Lobby lobby;
+    /** Czy pętla odbioru została już uruchomiona. */
+    private boolean reading;
+    /** Czy sesja uruchomiła połączenie metodą {@link #start(Executor)}. */
+    private boolean started;
+    /** Czy pętla odbioru zakończyła się przed uruchomieniem połączenia przez sesję. */
+    private boolean ended;
+
+    /**
+     * Tworzy nowy obiekt obsługi klienta, uzgadnia protokół i inicjalizuje strumienie.
+     * Połączenie trzeba jeszcze przypisać do sesji metodą {@link #attach(GameSession, Stone)}.
+     *
+     * @param socket Otwarte gniazdo (socket) połączenia z klientem.
+     * @throws IOException Jeśli wystąpi błąd podczas tworzenia strumieni wejścia/wyjścia,
+     *                     klient nie mówi żadnym ze znanych protokołów lub nie przedstawi się
+     *                     w czasie {@link #HANDSHAKE_MILLIS}.
+     */
+    public ClientHandler(Socket socket) throws IOException {
+        this.socket = socket;
+        socket.setSoTimeout(HANDSHAKE_MILLIS);
+        InputStream raw = new BufferedInputStream(socket.getInputStream());
+        raw.mark(2);
+        int b0 = raw.read();
+        int b1 = raw.read();
+
+        if (b0 == WireProtocol.MAGIC_0 && (b1 == WireProtocol.MAGIC_1 || b1 == WireProtocol.WATCH_MAGIC
+                || b1 == WireProtocol.RESUME_MAGIC)) {
+            int version = raw.read();
+            if (version < WireProtocol.VERSION) throw new IOException("Unsupported protocol version: " + version);
+            this.dataIn = new DataInputStream(raw);
+            this.watchedGame = b1 == WireProtocol.WATCH_MAGIC ? dataIn.readLong() : -1;
+            this.resumeToken = b1 == WireProtocol.RESUME_MAGIC ? dataIn.readLong() : 0;
+            this.resumeVersion = b1 == WireProtocol.RESUME_MAGIC ? dataIn.readInt() : -1;
+            this.dataOut = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            this.dataOut.write(WireProtocol.hello());
+            this.dataOut.flush();
+            this.out = null;
+            this.in = null;
+        } else if ((b0 << 8 | b1) == WireProtocol.SERIALIZATION_MAGIC) {
+            raw.reset();
+            this.out = new ObjectOutputStream(socket.getOutputStream());
+            this.out.flush();
+            this.in = new ObjectInputStream(raw);
+            this.dataOut = null;
+            this.dataIn = null;
+            this.watchedGame = -1;
+            this.resumeToken = 0;
+            this.resumeVersion = -1;
+        } else {
+            throw new IOException("Unknown protocol");
+        }
+        socket.setSoTimeout(0);
+    }
 
     /**
-     * Tworzy nowy obiekt obsługi klienta i inicjalizuje strumienie obiektowe.
+     * Tworzy nowy obiekt obsługi klienta przypisany do sesji.
      *
      * @param socket Otwarte gniazdo (socket) połączenia z klientem.
      * @param stone Kolor kamienia ({@link Stone}), którym gra ten klient.
@@ -26,12 +114,88 @@ public class ClientHandler extends Thread {
      * @throws IOException Jeśli wystąpi błąd podczas tworzenia strumieni wejścia/wyjścia.
      */
     public ClientHandler(Socket socket, Stone stone, GameSession session) throws IOException {
-        this.stone = stone;
+        this(socket);
+        attach(session, stone);
+    }
+
+    /**
+     * Zwraca numer partii, którą klient chce obserwować jako widz.
+     *
+     * @return Numer partii lub -1, jeśli klient jest graczem.
+     */
+    long watchedGame() {
+        return watchedGame;
+    }
+
+    /**
+     * Zwraca żeton sesji, z którym gracz wznawia grę po zerwaniu połączenia.
+     *
+     * @return Żeton lub 0, jeśli klient dołącza jako nowy gracz albo widz.
+     */
+    long resumeToken() {
+        return resumeToken;
+    }
+
+    /**
+     * Zwraca wersję planszy, którą ma gracz wznawiający grę.
+     *
+     * @return Wersja planszy lub -1.
+     */
+    int resumeVersion() {
+        return resumeVersion;
+    }
+
+    /**
+     * Przypisuje połączenie do sesji gry i koloru kamieni.
+     *
+     * @param session Sesja, do której trafiają odebrane ruchy.
+     * @param stone   Kolor kamieni gracza.
+     */
+    @Override
+    public void attach(GameSession session, Stone stone) {
         this.session = session;
+        this.stone = stone;
+    }
 
-        this.out = new ObjectOutputStream(socket.getOutputStream());
-        this.out.flush();
-        this.in = new ObjectInputStream(socket.getInputStream());
+    /**
+     * Uruchamia pętlę odbioru, zanim gracz dostanie przeciwnika, aby poczekalnia dowiedziała się
+     * o kliencie, który rozłączył się w trakcie czekania. Ruchy odebrane przed przypisaniem
+     * do sesji są pomijane.
+     *
+     * @param lobby    Poczekalnia, z której gracz jest usuwany po rozłączeniu.
+     * @param executor Wykonawca pętli odbioru.
+     */
+    void awaitOpponent(Lobby lobby, Executor executor) {
+        this.lobby = lobby;
+        synchronized (this) {
+            if (reading) return;
+            reading = true;
+        }
+        executor.execute(this);
+    }
+
+    /**
+     * Uruchamia pętlę odbioru ruchów (jeśli jeszcze nie działa) i pisarza stanów w podanym
+     * wykonawcy. Jeśli klient rozłączył się, zanim sesja wystartowała, sesja jest o tym powiadamiana.
+     *
+     * @param executor Wykonawca pętli odbioru i zapisu.
+     */
+    @Override
+    public void start(Executor executor) {
+        boolean read;
+        boolean gone;
+        synchronized (this) {
+            started = true;
+            read = !reading;
+            reading = true;
+            gone = ended;
+        }
+        if (gone) {
+            session.disconnected(this);
+            return;
+        }
+        if (read) executor.execute(this);
+        executor.execute(this::write);
     }
 
     /**
@@ -39,39 +203,119 @@ public class ClientHandler extends Thread {
      *
      * @return Obiekt {@link Stone} reprezentujący kolor gracza.
      */
+    @Override
     public Stone getStone() {
         return stone;
     }
 
     /**
-     * Wysyła aktualny stan gry do klienta w sposób asynchroniczny względem odbioru danych.
+     * Wysyła aktualny stan gry do klienta w sposób asynchroniczny względem odbioru danych:
+     * stan trafia do kolejki pisarza, a wywołujący nigdy nie czeka na gniazdo.
+     * Klient, który przekroczył dopuszczalne opóźnienie, jest rozłączany.
      *
-     * @param state Obiekt {@link GameState} zawierający dane o aktualnej sytuacji na planszy.
+     * @param state Stan gry przygotowany do wysłania.
+     */
+    @Override
+    public void sendState(EncodedState state) {
+        if (!outbound.offer(state)) {
+            System.out.println("Client too slow, disconnecting: " + stone);
+            close();
+        }
+    }
+
+    /**
+     * Pętla pisarza: wysyła kolejne stany z kolejki. W protokole binarnym zapisywana jest
+     * współdzielona, zakodowana raz ramka. Kończy się po zamknięciu połączenia; po opróżnieniu
+     * kolejki zamykanej metodą {@link #finish()} zamyka gniazdo.
      */
-    public void sendState(GameState state) {
+    private void write() {
         try {
-            out.writeObject(state);
-            out.flush();
-        } catch (IOException e) {
-            System.out.println("Client disconnected: " + stone);
+            for (EncodedState state = outbound.take(); state != null; state = outbound.take()) {
+                if (dataOut != null) {
+                    state.writeBinary(dataOut);
+                    dataOut.flush();
+                } else {
+                    out.writeObject(state.state());
+                    if (++sinceReset == RESET_INTERVAL) {
+                        out.reset();
+                        sinceReset = 0;
+                    }
+                    out.flush();
+                }
+            }
+            if (outbound.drained()) close();
+        } catch (IOException | InterruptedException e) {
+            close();
         }
     }
 
     /**
-     * Główna pętla wątku obsługująca komunikację przychodzącą.
+     * Sprawdza, czy gniazdo nie zostało zamknięte po stronie serwera.
+     *
+     * @return {@code true}, dopóki gniazdo jest otwarte.
+     */
+    @Override
+    public boolean isOpen() {
+        return !socket.isClosed();
+    }
+
+    /**
+     * Zwraca adres zdalnego klienta.
+     *
+     * @return Adres gniazda klienta.
+     */
+    @Override
+    public String address() {
+        return String.valueOf(socket.getRemoteSocketAddress());
+    }
+
+    /** Zamyka gniazdo połączenia i kolejkę pisarza. */
+    @Override
+    public void close() {
+        outbound.close();
+        try {
+            socket.close();
+        } catch (IOException ignored) {
+            // połączenie i tak jest porzucane
+        }
+    }
+
+    /** Zamyka gniazdo, gdy pisarz wyśle stany czekające w kolejce. */
+    @Override
+    public void finish() {
+        outbound.finish();
+    }
+
+    /**
+     * Główna pętla obsługująca komunikację przychodzącą.
      * Metoda w pętli oczekuje na obiekty typu {@link Move} przesyłane przez klienta.
      * Po odebraniu ruchu, przekazuje go do sesji gry w celu przetworzenia.
-     * Pętla kończy się w momencie rozłączenia klienta lub wystąpienia błędu komunikacji.
+     * Pętla kończy się w momencie rozłączenia klienta lub wystąpienia błędu komunikacji;
+     * sesja jest wtedy o tym powiadamiana, a gracz czekający na przeciwnika jest usuwany z poczekalni.
      */
     @Override
     public void run() {
         try {
             while (true) {
-                Move move = (Move) in.readObject();
-                session.handleMove(move, this);
+                Move move = (Move) (dataIn != null ? WireProtocol.read(dataIn) : in.readObject());
+                GameSession s = session;
+                if (s != null) s.handleMove(move, this);
             }
         } catch (Exception e) {
             System.out.println("Client disconnected: " + stone);
+            outbound.close();
+            boolean notify;
+            synchronized (this) {
+                notify = started;
+                ended = true;
+            }
+            if (notify) {
+                session.disconnected(this);
+                return;
+            }
+            close();
+            Lobby l = lobby;
+            if (l != null) l.leave(this);
         }
     }
-}
\ No newline at end of file
+}
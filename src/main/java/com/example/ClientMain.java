@@ -17,19 +17,50 @@ import java.net.Socket;
 /**
  * Główna klasa klienta gry Go.
  * Odpowiada za wyświetlanie interfejsu graficznego, obsługę interakcji użytkownika
- * oraz komunikację z serwerem gry przez gniazda.
+ * oraz komunikację z serwerem gry przez gniazda. Po zerwaniu połączenia klient binarny
+ * próbuje wrócić do partii z żetonem sesji i wersją swojej planszy.
  */
 public class ClientMain extends Application {
 
-    private static final int SIZE = 19;
     private static final double CELL = 32;
     private static final double MARGIN = 30;
 
+    /** Liczba prób ponownego połączenia po zerwaniu połączenia. */
+    private static final int RECONNECT_ATTEMPTS = 10;
+
+    /** Odstęp między próbami ponownego połączenia w milisekundach. */
+    private static final long RECONNECT_DELAY_MILLIS = 1000;
+
     private ObjectOutputStream out;
     private ObjectInputStream in;
 
+    /** Strumienie ramek: binarnych (domyślnie) lub z serializacją dla serwera NIO. */
+    private volatile DataOutputStream frameOut;
+    private volatile DataInputStream frameIn;
+
+    /** Żeton sesji otrzymany na początku partii (0 przed jego otrzymaniem). */
+    private volatile long token;
+
+    /** Czy uzgodniono binarny protokół {@link WireProtocol}. */
+    private boolean binary;
+
+    /** Czy klient jedynie obserwuje partię (bez możliwości wykonywania ruchów). */
+    private boolean spectator;
+
+    /** Rozmiar planszy; ustalany przez serwer w każdym {@link GameState}. */
+    private int size = GameSession.DEFAULT_SIZE;
+
+    /** Lokalna kopia planszy, na którą nakładane są stany różnicowe. */
+    private String board;
+
+    /** Wersja lokalnej kopii planszy ({@link GameState#KEYFRAME} przed pierwszym stanem). */
+    private volatile int boardVersion = GameState.KEYFRAME;
+
+    private Stage stage;
+    private Canvas boardCanvas;
+
     private boolean yourTurn = false;
-    private boolean gameOver = false;
+    private volatile boolean gameOver = false;
     private boolean scoringMode = false;
 
     private Pane stoneLayer = new Pane();
@@ -48,12 +79,26 @@ public class ClientMain extends Application {
     @Override
     public void start(Stage stage) throws Exception {
         Socket socket = new Socket("localhost", 12345);
-        out = new ObjectOutputStream(socket.getOutputStream());
-        out.flush();
-        in = new ObjectInputStream(socket.getInputStream());
+        String protocol = getParameters().getNamed().getOrDefault("protocol", "binary");
+        String watch = getParameters().getNamed().get("watch");
+        if (protocol.equals("binary")) {
+            spectator = watch != null;
+            openBinary(socket, spectator ? WireProtocol.watch(Long.parseLong(watch)) : WireProtocol.hello());
+            binary = true;
+        } else if ("nio".equals(getParameters().getNamed().get("transport"))) {
+            frameOut = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            frameIn = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            frameOut.write(Frames.STREAM_HEADER);
+            frameOut.flush();
+        } else {
+            out = new ObjectOutputStream(socket.getOutputStream());
+            out.flush();
+            in = new ObjectInputStream(socket.getInputStream());
+        }
 
-        double sizePx = MARGIN * 2 + CELL * (SIZE - 1);
-        Canvas boardCanvas = new Canvas(sizePx, sizePx);
+        this.stage = stage;
+        double sizePx = MARGIN * 2 + CELL * (size - 1);
+        boardCanvas = new Canvas(sizePx, sizePx);
         drawBoard(boardCanvas.getGraphicsContext2D());
 
         stoneLayer.setPrefSize(sizePx, sizePx);
@@ -68,18 +113,77 @@ public class ClientMain extends Application {
 
         HBox controls = new HBox(10, passBtn, resignBtn, doneBtn);
         controls.setAlignment(javafx.geometry.Pos.CENTER);
+        controls.setVisible(!spectator);
 
         VBox root = new VBox(10, board, controls, status);
         root.setAlignment(javafx.geometry.Pos.CENTER);
 
         stage.setScene(new Scene(root));
-        stage.setHeight(850);
+        stage.sizeToScene();
         stage.setTitle("GO Client");
         stage.show();
 
         startReceiver();
     }
 
+    /**
+     * Wysyła powitanie protokołu binarnego i czeka na odpowiedź serwera.
+     *
+     * @param socket Nowe gniazdo połączenia z serwerem.
+     * @param hello  Powitanie gracza, widza lub gracza wznawiającego grę.
+     * @throws IOException Jeśli serwer nie odpowie powitaniem binarnym.
+     */
+    private void openBinary(Socket socket, byte[] hello) throws IOException {
+        DataOutputStream o = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        DataInputStream i = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        o.write(hello);
+        o.flush();
+        byte[] reply = new byte[3];
+        i.readFully(reply);
+        if (reply[0] != WireProtocol.MAGIC_0 || reply[1] != WireProtocol.MAGIC_1) {
+            throw new IOException("Server does not support the binary protocol");
+        }
+        frameIn = i;
+        frameOut = o;
+    }
+
+    /**
+     * Sprawdza, czy komunikat serwera kończy partię (wynik, poddanie, przekroczenie czasu,
+     * rozłączenie przeciwnika lub porzucenie partii).
+     *
+     * @param message Komunikat ze stanu gry.
+     * @return {@code true} dla komunikatu końcowego.
+     */
+    static boolean isFinal(String message) {
+        return message.contains("GAME OVER") || message.endsWith("You win.") || message.endsWith("You lose.")
+                || message.endsWith(" wins.") || message.endsWith("Game abandoned.")
+                || message.endsWith("The game is over.");
+    }
+
+    /**
+     * Próbuje wrócić do przerwanej partii z żetonem sesji. Serwer uzupełnia planszę
+     * od posiadanej wersji, więc nie trzeba odtwarzać całej partii.
+     *
+     * @return {@code true}, jeśli połączenie zostało przywrócone.
+     */
+    private boolean reconnect() {
+        for (int attempt = 1; attempt <= RECONNECT_ATTEMPTS; attempt++) {
+            int n = attempt;
+            Platform.runLater(() -> status.setText("Connection lost. Reconnecting (" + n + ")..."));
+            try {
+                Thread.sleep(RECONNECT_DELAY_MILLIS);
+                openBinary(new Socket("localhost", 12345), WireProtocol.resume(token, boardVersion));
+                return true;
+            } catch (IOException e) {
+                // serwer jeszcze niedostępny; kolejna próba
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return false;
+    }
+
     /**
      * Obsługuje kliknięcie myszką w obszar planszy.
      * Przelicza współrzędne pikselowe na współrzędne siatki gry.
@@ -88,13 +192,13 @@ public class ClientMain extends Application {
      * @param my Pozycja Y myszy w pikselach.
      */
     private void handleClick(double mx, double my) {
-        if (gameOver) return;
+        if (gameOver || spectator) return;
         if (!scoringMode && !yourTurn) return;
 
         int x = (int) Math.round((mx - MARGIN) / CELL);
         int y = (int) Math.round((my - MARGIN) / CELL);
 
-        if (x < 0 || y < 0 || x >= SIZE || y >= SIZE) return;
+        if (x < 0 || y < 0 || x >= size || y >= size) return;
 
         sendMove(new Move(x, y, false, false, false));
     }
@@ -106,16 +210,31 @@ public class ClientMain extends Application {
      * @param state Obiekt {@link GameState} zawierający nowe dane z serwera.
      */
     private void updateUI(GameState state) {
+        if (state.isDelta() && (board == null || state.baseVersion != boardVersion)) {
+            Move resync = new Move(-1, -1, false, false);
+            resync.resync = true;
+            sendMove(resync);
+            return;
+        }
+        board = state.applyTo(board);
+        boardVersion = state.version;
+
+        if (state.size != size) resizeBoard(state.size);
         yourTurn = state.yourTurn;
         status.setText(state.message);
 
-        if (state.message.contains("SCORING PHASE") || state.message.contains("removed")) {
+        if (state.message.contains("SCORING PHASE") || state.message.contains("Keep marking")) {
             scoringMode = true;
         } else if (state.message.contains("GAME OVER")) {
             gameOver = true;
             scoringMode = false;
         }
 
+        if (!gameOver) {
+            status.setText(String.format("%s%nEstimate  BLACK: %.1f | WHITE: %.1f",
+                    state.message, state.blackEstimate, state.whiteEstimate));
+        }
+
         if (scoringMode && !gameOver) {
             passBtn.setVisible(false);
             resignBtn.setVisible(false);
@@ -129,7 +248,7 @@ public class ClientMain extends Application {
             resignBtn.setDisable(gameOver);
         }
 
-        redrawStones(state.board);
+        redrawStones(board);
     }
 
     /**
@@ -141,22 +260,47 @@ public class ClientMain extends Application {
         g.setFill(Color.web("#DEB887")); // Drewniany kolor planszy
         g.fillRect(0, 0, g.getCanvas().getWidth(), g.getCanvas().getHeight());
         g.setStroke(Color.BLACK);
-        for (int i = 0; i < SIZE; i++) {
+        for (int i = 0; i < size; i++) {
             double p = MARGIN + i * CELL;
-            g.strokeLine(MARGIN, p, MARGIN + CELL * (SIZE - 1), p); // Poziome
-            g.strokeLine(p, MARGIN, p, MARGIN + CELL * (SIZE - 1)); // Pionowe
+            g.strokeLine(MARGIN, p, MARGIN + CELL * (size - 1), p); // Poziome
+            g.strokeLine(p, MARGIN, p, MARGIN + CELL * (size - 1)); // Pionowe
         }
     }
 
+    /**
+     * Dostosowuje siatkę i warstwę kamieni do nowego rozmiaru planszy.
+     *
+     * @param newSize Rozmiar planszy przesłany przez serwer.
+     */
+    private void resizeBoard(int newSize) {
+        size = newSize;
+        double sizePx = MARGIN * 2 + CELL * (size - 1);
+        boardCanvas.setWidth(sizePx);
+        boardCanvas.setHeight(sizePx);
+        stoneLayer.setPrefSize(sizePx, sizePx);
+        drawBoard(boardCanvas.getGraphicsContext2D());
+        stage.sizeToScene();
+    }
+
     /**
      * Wysyła obiekt ruchu do serwera w sposób bezpieczny dla wyjątków.
+     * Strumień obiektowy jest resetowany po każdym ruchu, aby żadna ze stron
+     * nie przechowywała wszystkich przesłanych obiektów do końca partii.
      *
      * @param m Obiekt {@link Move} do przesłania.
      */
     private void sendMove(Move m) {
         try {
-            out.writeObject(m);
-            out.flush();
+            if (binary) {
+                frameOut.write(WireProtocol.encodeMove(m));
+                frameOut.flush();
+            } else if (frameOut != null) {
+                Frames.write(frameOut, m);
+            } else {
+                out.writeObject(m);
+                out.reset();
+                out.flush();
+            }
         } catch (Exception e) {
             status.setText("Connection error");
         }
@@ -165,16 +309,25 @@ public class ClientMain extends Application {
     /**
      * Uruchamia wątek demona, który nieustannie nasłuchuje na pakiety danych z serwera.
      * Po odebraniu stanu gry, aktualizacja UI jest delegowana do wątku głównego.
+     * Gracz binarny z żetonem sesji po zerwaniu połączenia próbuje wrócić do partii.
+     * Po końcowym stanie partii serwer zamyka połączenie; ostatni komunikat pozostaje wtedy widoczny.
      */
     private void startReceiver() {
         Thread t = new Thread(() -> {
-            try {
-                while (true) {
-                    GameState s = (GameState) in.readObject();
+            while (true) {
+                try {
+                    GameState s = (GameState) (binary ? WireProtocol.read(frameIn)
+                            : frameIn != null ? Frames.read(frameIn, Frames.MAX_SERVER_FRAME)
+                            : in.readObject());
+                    if (s.token != 0) token = s.token;
+                    if (isFinal(s.message)) gameOver = true;
                     Platform.runLater(() -> updateUI(s));
+                } catch (Exception e) {
+                    if (gameOver) return;
+                    if (binary && token != 0 && !gameOver && reconnect()) continue;
+                    Platform.runLater(() -> status.setText("Disconnected"));
+                    return;
                 }
-            } catch (Exception e) {
-                Platform.runLater(() -> status.setText("Disconnected"));
             }
         });
         t.setDaemon(true);
@@ -184,16 +337,22 @@ public class ClientMain extends Application {
     /**
      * Czyści warstwę kamieni i rysuje je ponownie na podstawie tekstowej reprezentacji planszy.
      *
-     * @param board String zawierający znaki 'B', 'W' lub '.' oddzielone spacjami.
+     * Kamienie oznaczone jako martwe ('b', 'w') rysowane są półprzezroczyście.
+     *
+     * @param board String zawierający znaki 'B', 'W', 'b', 'w' lub '.' oddzielone spacjami.
      */
     private void redrawStones(String board) {
         stoneLayer.getChildren().clear();
         String[] rows = board.split("\n");
-        for (int y = 0; y < SIZE; y++) {
+        for (int y = 0; y < size; y++) {
             String[] cells = rows[y].trim().split(" ");
-            for (int x = 0; x < SIZE; x++) {
-                if (cells[x].equals("B")) stoneLayer.getChildren().add(stone(x, y, Color.BLACK));
-                else if (cells[x].equals("W")) stoneLayer.getChildren().add(stone(x, y, Color.WHITE));
+            for (int x = 0; x < size; x++) {
+                Circle s = null;
+                if (cells[x].equalsIgnoreCase("B")) s = stone(x, y, Color.BLACK);
+                else if (cells[x].equalsIgnoreCase("W")) s = stone(x, y, Color.WHITE);
+                if (s == null) continue;
+                if (Character.isLowerCase(cells[x].charAt(0))) s.setOpacity(0.4);
+                stoneLayer.getChildren().add(s);
             }
         }
     }
@@ -215,7 +374,10 @@ public class ClientMain extends Application {
 
     /**
      * Punkt wejścia aplikacji.
-     * @param args Argumenty linii komend.
+     * @param args Argumenty linii komend: domyślnie używany jest protokół binarny;
+     *             {@code --protocol=serialized} wybiera serializację Javy, a wraz z nią
+     *             {@code --transport=nio} ramki dla serwera NIO. {@code --watch=<numer>}
+     *             dołącza do partii o podanym numerze jako widz (tylko w protokole binarnym).
      */
-    public static void main(String[] args) { launch(); }
+    public static void main(String[] args) { launch(args); }
 }
\ No newline at end of file
@@ -0,0 +1,138 @@
+package com.example;
+
+import java.util.Arrays;
+
+/**
+ * Numeruje kolejne wersje widocznej planszy (kamienie i oznaczenia martwych kamieni)
+ * i pamięta zmienione pola, aby klientom można było wysyłać tylko różnice.
+ * <p>
+ * Zmienione pola wyznaczane są przez porównanie słów zbiorów bitowych z ostatnio
+ * opublikowanymi, więc koszt aktualizacji zależy od liczby słów, a nie pól planszy.
+ * Dziennik zmian obejmuje wersje od ostatniej klatki kluczowej; co
+ * {@link #KEYFRAME_INTERVAL} wersji (lub gdy dziennik przerósłby samą planszę) jest
+ * czyszczony, a klient, który ma starszą wersję, dostaje pełny stan.
+ * Wpis dziennika to {@code indeks << 3 | kod}, gdzie kod to pozycja znaku w {@link #CODES}.
+ */
+final class DeltaTracker {
+
+    /** Maksymalna liczba wersji między klatkami kluczowymi. */
+    static final int KEYFRAME_INTERVAL = 32;
+
+    /** Znaki pól odpowiadające kodom wpisów: puste, czarny, biały, martwy czarny, martwy biały. */
+    static final String CODES = ".BWbw";
+
+    /** Geometria planszy. */
+    private final BoardGeometry geometry;
+
+    /** Ostatnio opublikowany zbiór czarnych kamieni. */
+    private final long[] black;
+
+    /** Ostatnio opublikowany zbiór białych kamieni. */
+    private final long[] white;
+
+    /** Ostatnio opublikowany zbiór kamieni oznaczonych jako martwe. */
+    private final long[] dead;
+
+    /** Wersja każdego wpisu dziennika. */
+    private final int[] versions;
+
+    /** Wpisy dziennika w kolejności zmian. */
+    private final int[] entries;
+
+    /** Liczba wpisów dziennika. */
+    private int count;
+
+    /** Bieżąca wersja planszy. */
+    private int version;
+
+    /** Wersja ostatniej klatki kluczowej; różnice można liczyć tylko od niej lub nowszej wersji. */
+    private int keyframe;
+
+    /**
+     * Tworzy dziennik dla pustej planszy w wersji 0.
+     *
+     * @param geometry Geometria planszy.
+     */
+    DeltaTracker(BoardGeometry geometry) {
+        this.geometry = geometry;
+        this.black = geometry.newSet();
+        this.white = geometry.newSet();
+        this.dead = geometry.newSet();
+        this.versions = new int[geometry.points];
+        this.entries = new int[geometry.points];
+    }
+
+    /**
+     * Porównuje planszę z ostatnio opublikowaną wersją i, jeśli coś się zmieniło,
+     * zapisuje zmienione pola pod nowym numerem wersji.
+     *
+     * @param board Bieżąca plansza.
+     * @param marks Zbiór kamieni oznaczonych jako martwe lub {@code null}.
+     * @return Numer bieżącej wersji.
+     */
+    int update(Board board, long[] marks) {
+        long[] b = board.bits(Stone.BLACK);
+        long[] w = board.bits(Stone.WHITE);
+        int changed = 0;
+        for (int k = 0; k < geometry.words; k++) {
+            changed += Long.bitCount(b[k] ^ black[k] | w[k] ^ white[k] | (marks == null ? 0 : marks[k]) ^ dead[k]);
+        }
+        if (changed == 0) return version;
+
+        version++;
+        boolean log = version - keyframe < KEYFRAME_INTERVAL && count + changed <= entries.length;
+        if (!log) {
+            keyframe = version;
+            count = 0;
+        }
+        for (int k = 0; k < geometry.words; k++) {
+            long m = marks == null ? 0 : marks[k];
+            long diff = b[k] ^ black[k] | w[k] ^ white[k] | m ^ dead[k];
+            for (long bits = diff; log && bits != 0; bits &= bits - 1) {
+                int i = (k << 6) + Long.numberOfTrailingZeros(bits);
+                long bit = 1L << i;
+                int code = (b[k] & bit) != 0 ? 1 : (w[k] & bit) != 0 ? 2 : 0;
+                if (code != 0 && (m & bit) != 0) code += 2;
+                versions[count] = version;
+                entries[count++] = i << 3 | code;
+            }
+            black[k] = b[k];
+            white[k] = w[k];
+            dead[k] = m;
+        }
+        return version;
+    }
+
+    /**
+     * Zwraca bieżącą wersję planszy.
+     *
+     * @return Numer wersji.
+     */
+    int version() {
+        return version;
+    }
+
+    /**
+     * Sprawdza, czy od podanej wersji można przejść do bieżącej samymi zmianami.
+     *
+     * @param since Wersja, którą ma klient.
+     * @return {@code false}, jeśli wersja jest starsza niż ostatnia klatka kluczowa.
+     */
+    boolean hasChangesSince(int since) {
+        return since >= keyframe && since <= version;
+    }
+
+    /**
+     * Zwraca zmiany potrzebne, aby z podanej wersji przejść do bieżącej.
+     *
+     * @param since Wersja, którą ma klient.
+     * @return Wpisy zmian w kolejności ich wystąpienia lub {@code null},
+     *         jeśli wersja jest starsza niż ostatnia klatka kluczowa (potrzebny pełny stan).
+     */
+    int[] changesSince(int since) {
+        if (!hasChangesSince(since)) return null;
+        int from = count;
+        while (from > 0 && versions[from - 1] > since) from--;
+        return Arrays.copyOfRange(entries, from, count);
+    }
+}
@@ -0,0 +1,91 @@
+package com.example;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Stan gry przygotowany do wysłania wielu odbiorcom.
+ * <p>
+ * Sesja tworzy jeden obiekt dla wszystkich odbiorców, którzy mają dostać identyczny stan
+ * (np. wszyscy widzowie po ruchu), a każdy transport pobiera z niego gotową ramkę w swoim
+ * protokole. Ramka danego protokołu jest kodowana tylko raz, przy pierwszym użyciu,
+ * i nigdy potem nie jest modyfikowana, więc wiele połączeń może wysyłać ją jednocześnie.
+ */
+public final class EncodedState {
+
+    /** Stan gry. */
+    private final GameState state;
+
+    /** Ramka {@link WireProtocol} (kodowana przy pierwszym użyciu). */
+    private volatile byte[] binary;
+
+    /** Ramka {@link Frames} z nagłówkiem długości (kodowana przy pierwszym użyciu). */
+    private volatile byte[] serialized;
+
+    /**
+     * Tworzy stan do wysłania.
+     *
+     * @param state Stan gry.
+     */
+    EncodedState(GameState state) {
+        this.state = state;
+    }
+
+    /**
+     * Zwraca stan gry (dla transportów serializujących obiekty samodzielnie).
+     *
+     * @return Obiekt {@link GameState}.
+     */
+    public GameState state() {
+        return state;
+    }
+
+    /**
+     * Zwraca ramkę protokołu binarnego jako bufor tylko do odczytu.
+     *
+     * @return Nowy widok współdzielonej ramki.
+     */
+    ByteBuffer binaryFrame() {
+        return ByteBuffer.wrap(binary()).asReadOnlyBuffer();
+    }
+
+    /**
+     * Zapisuje ramkę protokołu binarnego do strumienia.
+     *
+     * @param out Strumień wyjściowy.
+     * @throws IOException W przypadku błędu zapisu.
+     */
+    void writeBinary(OutputStream out) throws IOException {
+        out.write(binary());
+    }
+
+    private byte[] binary() {
+        byte[] frame = binary;
+        if (frame == null) {
+            frame = WireProtocol.encodeState(state);
+            binary = frame;
+        }
+        return frame;
+    }
+
+    /**
+     * Zwraca ramkę serializacji (z 4-bajtowym nagłówkiem długości) jako bufor tylko do odczytu.
+     *
+     * @return Nowy widok współdzielonej ramki.
+     */
+    ByteBuffer serializedFrame() {
+        byte[] frame = serialized;
+        if (frame == null) {
+            try {
+                byte[] payload = Frames.encode(state);
+                frame = ByteBuffer.allocate(Frames.HEADER + payload.length).putInt(payload.length).put(payload).array();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            serialized = frame;
+        }
+        return ByteBuffer.wrap(frame).asReadOnlyBuffer();
+    }
+}
@@ -0,0 +1,91 @@
+package com.example;
+
+import java.io.*;
+
+/**
+ * Kodowanie wiadomości w ramkach o stałym nagłówku: 4-bajtowa długość (big-endian),
+ * a po niej treść — obiekt zserializowany samodzielnie (z własnym nagłówkiem strumienia).
+ * Ramki pozwalają transportowi nieblokującemu wydzielać wiadomości ze strumienia bajtów
+ * bez parsowania serializacji Javy. Klient używający tych ramek zaczyna połączenie
+ * od {@link #STREAM_HEADER}, po którym serwer rozpoznaje protokół serializacji
+ * (klienci binarni zaczynają od powitania {@link WireProtocol#hello()}).
+ */
+final class Frames {
+
+    /** Rozmiar nagłówka ramki w bajtach. */
+    static final int HEADER = 4;
+
+    /** Największa dopuszczalna treść ramki wysyłanej przez klienta. */
+    static final int MAX_CLIENT_FRAME = 1024;
+
+    /** Największa dopuszczalna treść ramki wysyłanej przez serwer. */
+    static final int MAX_SERVER_FRAME = 64 * 1024;
+
+    /** Nagłówek strumienia serializacji Javy wysyłany przez klienta przed pierwszą ramką. */
+    static final byte[] STREAM_HEADER = {(byte) 0xAC, (byte) 0xED, 0x00, 0x05};
+
+    private Frames() {
+    }
+
+    /**
+     * Serializuje obiekt do samodzielnej tablicy bajtów.
+     *
+     * @param message Obiekt do zakodowania.
+     * @return Treść ramki.
+     * @throws IOException Jeśli obiektu nie da się zserializować.
+     */
+    static byte[] encode(Serializable message) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(message);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Odtwarza obiekt z treści ramki.
+     *
+     * @param payload Treść ramki.
+     * @return Odczytany obiekt.
+     * @throws IOException            Jeśli dane są uszkodzone.
+     * @throws ClassNotFoundException Jeśli klasa obiektu jest nieznana.
+     */
+    static Object decode(byte[] payload) throws IOException, ClassNotFoundException {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(payload))) {
+            return in.readObject();
+        }
+    }
+
+    /**
+     * Zapisuje obiekt jako ramkę do strumienia (strona blokująca, np. klient).
+     *
+     * @param out     Strumień wyjściowy.
+     * @param message Obiekt do wysłania.
+     * @throws IOException W przypadku błędu zapisu.
+     */
+    static void write(DataOutputStream out, Serializable message) throws IOException {
+        byte[] payload = encode(message);
+        out.writeInt(payload.length);
+        out.write(payload);
+        out.flush();
+    }
+
+    /**
+     * Odczytuje jedną ramkę ze strumienia (strona blokująca, np. klient).
+     *
+     * @param in       Strumień wejściowy.
+     * @param maxFrame Największa dopuszczalna długość treści.
+     * @return Odczytany obiekt.
+     * @throws IOException            W przypadku błędu odczytu lub zbyt długiej ramki.
+     * @throws ClassNotFoundException Jeśli klasa obiektu jest nieznana.
+     */
+    static Object read(DataInputStream in, int maxFrame) throws IOException, ClassNotFoundException {
+        int length = in.readInt();
+        if (length < 0 || length > maxFrame) {
+            throw new IOException("Invalid frame length: " + length);
+        }
+        byte[] payload = new byte[length];
+        in.readFully(payload);
+        return decode(payload);
+    }
+}
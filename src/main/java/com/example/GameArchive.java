@@ -0,0 +1,582 @@
+package com.example;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Zwarte archiwum zakończonych partii w dwóch plikach: {@code games.dat} z kolejnymi partiami
+ * i {@code games.idx} z 8-bajtowym przesunięciem każdej partii, dzięki czemu partię o numerze
+ * {@code n} znajduje się w O(1).
+ * <p>
+ * Partia to nagłówek ({@link #HEADER} bajtów: rozmiar planszy, zasady punktacji, zwycięzca,
+ * sposób zakończenia, komi, wyniki i liczba ruchów), opisy obu graczy w UTF-8 poprzedzone
+ * długością oraz ruchy w kodowaniu {@link ArchivedGame}: jeden bajt na ruch na planszach 9x9
+ * i 13x13, dwa bajty na planszy 19x19.
+ * <p>
+ * Masowe odtwarzanie czyta plik danych przez okna mapowane do pamięci i przepuszcza ruchy przez
+ * {@link RulesEngine} na planszach używanych ponownie dla kolejnych partii (cofanych metodą
+ * {@link RulesEngine#undo(Board)}), więc nie tworzy obiektów na partię ani na ruch.
+ * Przy otwarciu archiwum usuwa niedokończony zapis ostatniej partii (np. po awarii serwera).
+ * <p>
+ * Sesje przekazują zakończone partie metodą {@link #submit(ArchivedGame)} do jednego wątku
+ * zapisującego, więc wolny dysk nie wstrzymuje sesji dzielących pulę wątków.
+ */
+public final class GameArchive implements Closeable {
+
+    /** Długość stałej części nagłówka partii w bajtach. */
+    static final int HEADER = 20;
+
+    /** Największe okno pliku danych mapowane naraz przy odtwarzaniu. */
+    private static final long WINDOW = 1L << 30;
+
+    /** Zasady punktacji według numeru (bez kopiowania tablicy przy każdym odczycie). */
+    private static final ScoringRules[] SCORING = ScoringRules.values();
+
+    /** Kolory według numeru. */
+    private static final Stone[] STONES = Stone.values();
+
+    /** Sposoby zakończenia według numeru. */
+    private static final ArchivedGame.Ending[] ENDINGS = ArchivedGame.Ending.values();
+
+    /** Czas oczekiwania przy zamykaniu na zapis partii z kolejki. */
+    private static final long CLOSE_TIMEOUT_SECONDS = 30;
+
+    /** Plik z partiami. */
+    private final FileChannel data;
+
+    /** Plik z przesunięciami partii. */
+    private final FileChannel index;
+
+    /** Koniec ostatniej zapisanej partii w pliku danych (dostęp pod blokadą archiwum). */
+    private long end;
+
+    /** Liczba partii w archiwum. */
+    private volatile int games;
+
+    /** Wykonawca zapisu partii przekazanych przez sesje. */
+    private final Executor writer;
+
+    /** Własny wątek zapisujący archiwum (zamykany razem z nim) lub {@code null}. */
+    private final ExecutorService ownWriter;
+
+    /**
+     * Otwiera (lub tworzy) archiwum w podanym katalogu.
+     *
+     * @param directory Katalog archiwum.
+     * @throws IOException Jeśli pliki archiwum nie dają się otworzyć.
+     */
+    public GameArchive(Path directory) throws IOException {
+        this(directory, null);
+    }
+
+    /**
+     * Otwiera (lub tworzy) archiwum zapisujące partie przekazane przez sesje podanym wykonawcą.
+     *
+     * @param directory Katalog archiwum.
+     * @param writer    Wykonawca zapisu lub {@code null} dla własnego wątku archiwum.
+     * @throws IOException Jeśli pliki archiwum nie dają się otworzyć.
+     */
+    GameArchive(Path directory, Executor writer) throws IOException {
+        this.ownWriter = writer == null
+                ? Executors.newSingleThreadExecutor(Thread.ofPlatform().daemon().name("archive-writer").factory())
+                : null;
+        this.writer = writer == null ? ownWriter : writer;
+        Files.createDirectories(directory);
+        data = FileChannel.open(directory.resolve("games.dat"),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        index = FileChannel.open(directory.resolve("games.idx"),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        repair();
+    }
+
+    /**
+     * Zwraca liczbę bajtów zajmowanych przez jeden ruch na planszy danego rozmiaru.
+     *
+     * @param size Rozmiar planszy.
+     * @return 1 lub 2.
+     */
+    static int moveWidth(int size) {
+        return size * size < 255 ? 1 : 2;
+    }
+
+    /**
+     * Zwraca liczbę partii w archiwum.
+     *
+     * @return Liczba partii.
+     */
+    public int size() {
+        return games;
+    }
+
+    /**
+     * Przekazuje partię do zapisu wątkowi archiwum i nie czeka na dysk.
+     * Błąd zapisu jest zgłaszany na standardowym wyjściu błędów.
+     *
+     * @param game Zapis partii.
+     */
+    public void submit(ArchivedGame game) {
+        try {
+            writer.execute(() -> {
+                try {
+                    append(game);
+                } catch (IOException e) {
+                    System.err.println("Could not archive game: " + e.getMessage());
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            System.err.println("Could not archive game: archive is closed");
+        }
+    }
+
+    /**
+     * Dopisuje partię na końcu archiwum.
+     *
+     * @param game Zapis partii.
+     * @return Numer partii w archiwum.
+     * @throws IOException Jeśli zapis się nie powiódł.
+     */
+    public synchronized int append(ArchivedGame game) throws IOException {
+        byte[] black = game.blackPlayer.getBytes(StandardCharsets.UTF_8);
+        byte[] white = game.whitePlayer.getBytes(StandardCharsets.UTF_8);
+        int width = moveWidth(game.size);
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER + 4 + black.length + white.length + width * game.moves.length);
+        buffer.put((byte) game.size).put((byte) game.scoring.ordinal())
+                .put((byte) game.winner.ordinal()).put((byte) game.ending.ordinal())
+                .putFloat(game.komi).putFloat(game.blackScore).putFloat(game.whiteScore)
+                .putInt(game.moves.length)
+                .putShort((short) black.length).put(black)
+                .putShort((short) white.length).put(white);
+        for (short move : game.moves) {
+            if (width == 1) buffer.put((byte) move);
+            else buffer.putShort(move);
+        }
+        writeFully(data, buffer.flip(), end);
+        writeFully(index, ByteBuffer.allocate(8).putLong(0, end), 8L * games);
+        end += buffer.limit();
+        return games++;
+    }
+
+    /**
+     * Odczytuje partię o podanym numerze.
+     *
+     * @param n Numer partii (od 0).
+     * @return Zapis partii.
+     * @throws IOException Jeśli odczyt się nie powiódł.
+     */
+    public ArchivedGame read(int n) throws IOException {
+        if (n < 0 || n >= games) throw new IndexOutOfBoundsException("No archived game " + n);
+        long offset = readFully(index, ByteBuffer.allocate(8), 8L * n).getLong(0);
+        ByteBuffer header = readFully(data, ByteBuffer.allocate(HEADER + 2), offset);
+        int size = header.get(0);
+        int count = header.getInt(16);
+        String black = readString(offset + HEADER, header.getShort(HEADER));
+        long at = offset + HEADER + 2 + header.getShort(HEADER);
+        ByteBuffer whiteLength = readFully(data, ByteBuffer.allocate(2), at);
+        String white = readString(at, whiteLength.getShort(0));
+        at += 2 + whiteLength.getShort(0);
+
+        int width = moveWidth(size);
+        ByteBuffer encoded = readFully(data, ByteBuffer.allocate(width * count), at);
+        short[] moves = new short[count];
+        for (int k = 0; k < count; k++) {
+            moves[k] = width == 1 ? (short) (encoded.get(k) & 0xFF) : encoded.getShort(2 * k);
+        }
+        return new ArchivedGame(black, white, size, header.getFloat(4), SCORING[header.get(1)],
+                STONES[header.get(2)], ENDINGS[header.get(3)], header.getFloat(8), header.getFloat(12), moves);
+    }
+
+    /**
+     * Odtwarza po kolei wszystkie partie archiwum.
+     *
+     * @param listener Odbiorca końcowej pozycji każdej partii.
+     * @return Łączna liczba odtworzonych ruchów.
+     * @throws IOException Jeśli odczyt się nie powiódł lub archiwum zawiera niedozwolony ruch.
+     */
+    public long replay(Listener listener) throws IOException {
+        return replay(0, games, listener);
+    }
+
+    /**
+     * Odtwarza wszystkie partie archiwum równolegle we wspólnej puli fork/join;
+     * każdy wątek odtwarza własny ciągły zakres partii.
+     *
+     * @param listener Odbiorca końcowej pozycji każdej partii (wywoływany z wielu wątków).
+     * @return Łączna liczba odtworzonych ruchów.
+     * @throws IOException Jeśli odczyt się nie powiódł lub archiwum zawiera niedozwolony ruch.
+     */
+    public long replayParallel(Listener listener) throws IOException {
+        int count = games;
+        int parts = Math.max(1, Math.min(count / 1024, 4 * Runtime.getRuntime().availableProcessors()));
+        try {
+            return IntStream.range(0, parts).parallel().mapToLong(p -> {
+                try {
+                    return replay((int) ((long) count * p / parts), (int) ((long) count * (p + 1) / parts), listener);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }).sum();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Odtwarza partie o numerach z zakresu {@code [from, to)}. Koniec zakresu w pliku danych
+     * ustalany jest pod blokadą archiwum, więc partie dopisywane w trakcie odtwarzania są pomijane.
+     *
+     * @param from     Numer pierwszej partii.
+     * @param to       Numer za ostatnią partią.
+     * @param listener Odbiorca końcowej pozycji każdej partii.
+     * @return Łączna liczba odtworzonych ruchów.
+     * @throws IOException Jeśli odczyt się nie powiódł lub archiwum zawiera niedozwolony ruch.
+     */
+    public long replay(int from, int to, Listener listener) throws IOException {
+        if (from >= to) return 0;
+        long limit;
+        synchronized (this) {
+            if (from < 0 || to > games) throw new IndexOutOfBoundsException("No archived games " + from + "-" + to);
+            limit = to == games ? end : readFully(index, ByteBuffer.allocate(8), 8L * to).getLong(0);
+        }
+        Replay game = new Replay();
+        long offset = readFully(index, ByteBuffer.allocate(8), 8L * from).getLong(0);
+        long total = 0;
+        MappedByteBuffer window = null;
+        long windowStart = 0;
+
+        for (int n = from; n < to; n++) {
+            if (window == null || offset + HEADER + 2 > windowStart + window.limit()) {
+                windowStart = offset;
+                window = map(offset, limit);
+            }
+            int at = (int) (offset - windowStart);
+            int blackLength = window.getShort(at + HEADER);
+            if (offset + HEADER + 4 + blackLength > windowStart + window.limit()) {
+                windowStart = offset;
+                window = map(offset, limit);
+                at = 0;
+            }
+            int size = window.get(at);
+            int count = window.getInt(at + 16);
+            int names = 4 + blackLength + window.getShort(at + HEADER + 2 + blackLength);
+            int length = HEADER + names + moveWidth(size) * count;
+            if (offset + length > windowStart + window.limit()) {
+                windowStart = offset;
+                window = map(offset, limit);
+                at = 0;
+            }
+
+            game.start(n, size, window, at);
+            game.play(window, at + HEADER + names, count);
+            listener.replayed(game);
+            total += count;
+            offset += length;
+        }
+        return total;
+    }
+
+    /**
+     * Mapuje okno pliku danych zaczynające się od podanej pozycji.
+     */
+    private MappedByteBuffer map(long offset, long limit) throws IOException {
+        return data.map(FileChannel.MapMode.READ_ONLY, offset, Math.min(WINDOW, limit - offset));
+    }
+
+    /**
+     * Czeka na zapis partii przekazanych wcześniej metodą {@link #submit(ArchivedGame)},
+     * zapisuje archiwum na dysk i zamyka pliki.
+     *
+     * @throws IOException Jeśli zamknięcie się nie powiodło.
+     */
+    @Override
+    public void close() throws IOException {
+        if (ownWriter != null) {
+            ownWriter.shutdown();
+            try {
+                if (!ownWriter.awaitTermination(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                    System.err.println("Archive writer did not finish in time");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        synchronized (this) {
+            data.force(false);
+            index.force(false);
+            data.close();
+            index.close();
+        }
+    }
+
+    /**
+     * Odrzuca wpisy indeksu wskazujące poza plik danych oraz dane za ostatnią kompletną partią.
+     */
+    private void repair() throws IOException {
+        long count = index.size() / 8;
+        long size = data.size();
+        while (count > 0) {
+            long offset = readFully(index, ByteBuffer.allocate(8), 8 * (count - 1)).getLong(0);
+            long gameEnd = offset + HEADER + 4 <= size ? endOf(offset) : Long.MAX_VALUE;
+            if (gameEnd <= size) {
+                end = gameEnd;
+                break;
+            }
+            count--;
+        }
+        games = (int) count;
+        index.truncate(8 * count);
+        data.truncate(end);
+    }
+
+    /**
+     * Zwraca pozycję końca partii zapisanej od podanego przesunięcia.
+     */
+    private long endOf(long offset) throws IOException {
+        ByteBuffer header = readFully(data, ByteBuffer.allocate(HEADER + 2), offset);
+        long at = offset + HEADER + 2 + header.getShort(HEADER);
+        if (at + 2 > data.size()) return Long.MAX_VALUE;
+        at += 2 + readFully(data, ByteBuffer.allocate(2), at).getShort(0);
+        return at + (long) moveWidth(header.get(0)) * header.getInt(16);
+    }
+
+    /**
+     * Odczytuje opis gracza poprzedzony 2-bajtową długością.
+     */
+    private String readString(long at, int length) throws IOException {
+        ByteBuffer bytes = readFully(data, ByteBuffer.allocate(length), at + 2);
+        return new String(bytes.array(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Wypełnia bufor danymi pliku od podanej pozycji.
+     */
+    private static ByteBuffer readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int n = channel.read(buffer, position + buffer.position());
+            if (n < 0) throw new IOException("Truncated archive");
+        }
+        return buffer.flip();
+    }
+
+    /**
+     * Zapisuje cały bufor do pliku od podanej pozycji.
+     */
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, position + buffer.position());
+        }
+    }
+
+    /**
+     * Odbiorca partii odtwarzanych z archiwum.
+     */
+    public interface Listener {
+
+        /**
+         * Wywoływana po odtworzeniu partii. Obiekt {@link Replay} i jego plansza są używane
+         * ponownie dla następnej partii, więc nie wolno ich zachowywać.
+         *
+         * @param game Odtworzona partia.
+         */
+        void replayed(Replay game);
+    }
+
+    /**
+     * Odtwarzana partia: nagłówek z archiwum i pozycja po ostatnim ruchu.
+     * Jeden obiekt i jedna plansza na rozmiar są używane dla wszystkich partii zakresu.
+     */
+    public static final class Replay {
+
+        /** Plansze według rozmiaru, cofane do pustych przed kolejną partią. */
+        private final Board[] boards = new Board[20];
+
+        /** Silnik reguł wykonujący ruchy. */
+        private final RulesEngine rules = new RulesEngine();
+
+        /** Numer partii w archiwum. */
+        private int index;
+
+        /** Plansza bieżącej partii. */
+        private Board board;
+
+        /** Komi. */
+        private float komi;
+
+        /** Zasady punktacji. */
+        private ScoringRules scoring;
+
+        /** Zwycięzca. */
+        private Stone winner;
+
+        /** Sposób zakończenia partii. */
+        private ArchivedGame.Ending ending;
+
+        /** Wynik czarnego. */
+        private float blackScore;
+
+        /** Wynik białego. */
+        private float whiteScore;
+
+        /** Liczba ruchów. */
+        private int moves;
+
+        /** Kamienie zbite przez czarnego. */
+        private int blackPrisoners;
+
+        /** Kamienie zbite przez białego. */
+        private int whitePrisoners;
+
+        /**
+         * Odczytuje nagłówek partii i przygotowuje pustą planszę.
+         */
+        private void start(int n, int size, ByteBuffer window, int at) throws IOException {
+            if (!GameSession.isSupportedSize(size)) throw new IOException("Corrupt archived game " + n);
+            index = n;
+            board = boards[size];
+            if (board == null) board = boards[size] = new Board(size);
+            while (rules.undo(board)) {
+                // cofanie do pustej planszy
+            }
+            scoring = SCORING[window.get(at + 1)];
+            winner = STONES[window.get(at + 2)];
+            ending = ENDINGS[window.get(at + 3)];
+            komi = window.getFloat(at + 4);
+            blackScore = window.getFloat(at + 8);
+            whiteScore = window.getFloat(at + 12);
+            blackPrisoners = 0;
+            whitePrisoners = 0;
+        }
+
+        /**
+         * Wykonuje zakodowane ruchy partii.
+         */
+        private void play(ByteBuffer window, int at, int count) throws IOException {
+            int size = board.getSize();
+            boolean wide = moveWidth(size) == 2;
+            Stone turn = Stone.BLACK;
+            for (int k = 0; k < count; k++) {
+                int code = wide ? window.getShort(at + 2 * k) : window.get(at + k) & 0xFF;
+                if (code != 0) {
+                    int captured = rules.play(board, (code - 1) / size, (code - 1) % size, turn);
+                    if (captured < 0) throw new IOException("Illegal move in archived game " + index);
+                    if (turn == Stone.BLACK) blackPrisoners += captured;
+                    else whitePrisoners += captured;
+                }
+                turn = turn.opposite();
+            }
+            moves = count;
+        }
+
+        /**
+         * Zwraca numer partii w archiwum.
+         *
+         * @return Numer partii.
+         */
+        public int index() {
+            return index;
+        }
+
+        /**
+         * Zwraca pozycję po ostatnim ruchu (przed zdjęciem martwych kamieni).
+         *
+         * @return Plansza używana ponownie dla następnej partii.
+         */
+        public Board board() {
+            return board;
+        }
+
+        /**
+         * Zwraca komi partii.
+         *
+         * @return Komi.
+         */
+        public float komi() {
+            return komi;
+        }
+
+        /**
+         * Zwraca zasady punktacji partii.
+         *
+         * @return Zasady punktacji.
+         */
+        public ScoringRules scoring() {
+            return scoring;
+        }
+
+        /**
+         * Zwraca zwycięzcę partii.
+         *
+         * @return Kolor zwycięzcy.
+         */
+        public Stone winner() {
+            return winner;
+        }
+
+        /**
+         * Zwraca sposób zakończenia partii.
+         *
+         * @return Sposób zakończenia.
+         */
+        public ArchivedGame.Ending ending() {
+            return ending;
+        }
+
+        /**
+         * Zwraca zapisany wynik czarnego.
+         *
+         * @return Wynik czarnego.
+         */
+        public float blackScore() {
+            return blackScore;
+        }
+
+        /**
+         * Zwraca zapisany wynik białego.
+         *
+         * @return Wynik białego.
+         */
+        public float whiteScore() {
+            return whiteScore;
+        }
+
+        /**
+         * Zwraca liczbę ruchów partii (z pasami).
+         *
+         * @return Liczba ruchów.
+         */
+        public int moves() {
+            return moves;
+        }
+
+        /**
+         * Zwraca liczbę kamieni zbitych przez czarnego.
+         *
+         * @return Jeńcy czarnego.
+         */
+        public int blackPrisoners() {
+            return blackPrisoners;
+        }
+
+        /**
+         * Zwraca liczbę kamieni zbitych przez białego.
+         *
+         * @return Jeńcy białego.
+         */
+        public int whitePrisoners() {
+            return whitePrisoners;
+        }
+    }
+}
@@ -0,0 +1,397 @@
+package com.example;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Dziennik zapisu z wyprzedzeniem trwających partii, pozwalający odtworzyć je po awarii serwera.
+ * <p>
+ * Dziennik to katalog segmentów {@code journal-N.log} stałej wielkości, mapowanych do pamięci
+ * i zapisywanych wyłącznie na końcu. Każdy zaakceptowany ruch, pas, oznaczenie martwej grupy
+ * i zakończenie punktacji to jeden rekord o stałej długości {@link #RECORD} bajtów:
+ * numer partii, wartość, typ, kolor, współrzędne i suma kontrolna CRC32C. Dopisanie rekordu
+ * to kilka zapisów do pamięci; dane na dysk wypycha osobny wątek co {@code go.journalSyncMillis}
+ * milisekund jednym {@code force} dla wszystkich rekordów dopisanych od poprzedniego
+ * (grupowe zatwierdzanie), więc ruch gracza nigdy nie czeka na dysk.
+ * <p>
+ * Przy otwarciu dziennik odczytuje wszystkie segmenty aż do pierwszego pustego lub uszkodzonego
+ * rekordu, przepisuje rekordy niezakończonych partii do nowego segmentu i usuwa stare.
+ * W trakcie pracy, przy przejściu do nowego segmentu, usuwane są starsze segmenty, w których
+ * nie zaczęła się żadna niezakończona partia, więc dysk zajmują tylko segmenty trwających partii.
+ * Jeśli nowego segmentu nie da się utworzyć, partie, których rekordów nie zapisano, przestają
+ * być zapisywane w dzienniku i po restarcie nie są odtwarzane.
+ */
+public final class GameJournal implements Closeable {
+
+    /** Długość rekordu w bajtach. */
+    static final int RECORD = 24;
+
+    /** Rekord rozpoczęcia partii: x = rozmiar planszy, y = zasady punktacji, wartość = komi. */
+    static final int START = 1;
+
+    /** Rekord żetonu sesji gracza danego koloru. */
+    static final int TOKEN = 2;
+
+    /** Rekord zaakceptowanego ruchu lub oznaczenia grupy w fazie punktacji. */
+    static final int MOVE = 3;
+
+    /** Rekord pasu. */
+    static final int PASS = 4;
+
+    /** Rekord zakończenia oznaczania martwych kamieni przez gracza. */
+    static final int DONE = 5;
+
+    /** Rekord zakończenia partii (wynik, poddanie, przekroczenie czasu lub rozłączenie). */
+    static final int END = 6;
+
+    /**
+     * Domyślna wielkość segmentu w bajtach. Segment jest usuwany dopiero wtedy, gdy skończą się
+     * wszystkie partie rozpoczęte w nim lub wcześniej, więc jedna bardzo długa partia
+     * zatrzymuje na dysku segmenty zapisane od jej początku.
+     */
+    private static final int SEGMENT_SIZE = 16 * 1024 * 1024;
+
+    /** Odstęp między wypchnięciami dziennika na dysk ({@code go.journalSyncMillis}). */
+    private static final long SYNC_MILLIS = Long.getLong("go.journalSyncMillis", 10);
+
+    /** Katalog segmentów. */
+    private final Path directory;
+
+    /** Wielkość segmentu w bajtach (wielokrotność {@link #RECORD}). */
+    private final int segmentSize;
+
+    /** Rekordy niezakończonych partii odczytane przy otwarciu. */
+    private final List<Record> recovered = new ArrayList<>();
+
+    /** Suma kontrolna rekordów (używana pod blokadą dziennika). */
+    private final CRC32C crc = new CRC32C();
+
+    /** Wątek grupowego zatwierdzania. */
+    private final ScheduledExecutorService syncer;
+
+    /** Numer bieżącego segmentu. */
+    private long segment;
+
+    /** Numer najstarszego segmentu, który może jeszcze leżeć na dysku. */
+    private long oldest;
+
+    /** Niezakończone partie i numery segmentów z ich rekordami rozpoczęcia. */
+    private final Map<Long, Long> live = new HashMap<>();
+
+    /** Partie, których rekord przepadł; nie są już zapisywane w dzienniku. */
+    private final Set<Long> dropped = new HashSet<>();
+
+    /** Porzucone partie, którym trzeba jeszcze dopisać rekord zakończenia. */
+    private final Set<Long> unterminated = new HashSet<>();
+
+    /** Zmapowany bieżący segment. */
+    private MappedByteBuffer buffer;
+
+    /** Pozycja, do której bieżący segment został wypchnięty na dysk. */
+    private int synced;
+
+    /** Czy dziennik został zamknięty. */
+    private boolean closed;
+
+    /**
+     * Otwiera dziennik w podanym katalogu z domyślną wielkością segmentu.
+     *
+     * @param directory Katalog dziennika (tworzony, jeśli nie istnieje).
+     * @throws IOException Jeśli nie można odczytać lub utworzyć segmentów.
+     */
+    public GameJournal(Path directory) throws IOException {
+        this(directory, SEGMENT_SIZE);
+    }
+
+    /**
+     * Otwiera dziennik w podanym katalogu.
+     *
+     * @param directory   Katalog dziennika (tworzony, jeśli nie istnieje).
+     * @param segmentSize Wielkość segmentu w bajtach.
+     * @throws IOException Jeśli nie można odczytać lub utworzyć segmentów.
+     */
+    GameJournal(Path directory, int segmentSize) throws IOException {
+        this.directory = directory;
+        this.segmentSize = segmentSize - segmentSize % RECORD;
+        Files.createDirectories(directory);
+
+        List<Path> old = segments();
+        Map<Long, List<Record>> games = new LinkedHashMap<>();
+        for (Path path : old) {
+            segment = Math.max(segment, number(path));
+            read(path, games);
+        }
+        for (List<Record> records : games.values()) {
+            if (records.get(records.size() - 1).type != END) recovered.addAll(records);
+        }
+
+        segment++;
+        oldest = segment;
+        open(segment);
+        for (Record r : recovered) append(r.game, r.type, r.stone, r.x, r.y, r.value);
+        sync();
+        for (Path path : old) Files.delete(path);
+
+        syncer = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().daemon().name("journal-sync").factory());
+        syncer.scheduleWithFixedDelay(this::sync, SYNC_MILLIS, SYNC_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Zwraca rekordy partii, które nie zakończyły się przed zamknięciem lub awarią serwera,
+     * w kolejności zapisu.
+     *
+     * @return Niemodyfikowalna lista rekordów.
+     */
+    public List<Record> recovered() {
+        return List.copyOf(recovered);
+    }
+
+    /**
+     * Zapisuje rozpoczęcie partii wraz z żetonami sesji obu graczy.
+     *
+     * @param game       Numer partii.
+     * @param size       Rozmiar planszy.
+     * @param komi       Komi.
+     * @param scoring    Zasady punktacji.
+     * @param blackToken Żeton sesji czarnego.
+     * @param whiteToken Żeton sesji białego.
+     */
+    public synchronized void started(long game, int size, float komi, ScoringRules scoring,
+                                     long blackToken, long whiteToken) {
+        append(game, START, Stone.EMPTY, size, scoring.ordinal(), Float.floatToIntBits(komi));
+        append(game, TOKEN, Stone.BLACK, 0, 0, blackToken);
+        append(game, TOKEN, Stone.WHITE, 0, 0, whiteToken);
+    }
+
+    /**
+     * Dopisuje rekord na końcu dziennika. Nie czeka na zapis na dysk. Jeśli rekordu nie da się
+     * zapisać, bo nie można utworzyć nowego segmentu, partia przestaje być zapisywana w dzienniku.
+     *
+     * @param game  Numer partii.
+     * @param type  Typ rekordu.
+     * @param stone Kolor gracza.
+     * @param x     Współrzędna pozioma (lub parametr rekordu).
+     * @param y     Współrzędna pionowa (lub parametr rekordu).
+     * @param value Wartość rekordu (komi, żeton) lub 0.
+     */
+    public synchronized void append(long game, int type, Stone stone, int x, int y, long value) {
+        if (closed || dropped.contains(game)) return;
+        if (buffer.remaining() < RECORD && !roll()) {
+            System.err.println("Game " + game + " is no longer journaled");
+            dropped.add(game);
+            unterminated.add(game);
+            live.remove(game);
+            return;
+        }
+        if (type == START) {
+            live.put(game, segment);
+        } else if (type == END) {
+            live.remove(game);
+        }
+        put(game, type, stone, x, y, value);
+    }
+
+    /**
+     * Zapisuje rekord w bieżącym segmencie, w którym musi być na niego miejsce.
+     */
+    private void put(long game, int type, Stone stone, int x, int y, long value) {
+        int at = buffer.position();
+        buffer.putLong(game).putLong(value)
+                .put((byte) type).put((byte) stone.ordinal()).put((byte) x).put((byte) y);
+        crc.reset();
+        crc.update(buffer.slice(at, RECORD - 4));
+        buffer.putInt((int) crc.getValue());
+    }
+
+    /**
+     * Zapisuje zakończenie partii, której nie da się odtworzyć (np. dziennik zawiera tylko jej
+     * niepełny początek), aby nie blokowała usuwania segmentów i nie wracała po kolejnym restarcie.
+     *
+     * @param game Numer partii.
+     */
+    public void abandon(long game) {
+        append(game, END, Stone.EMPTY, 0, 0, 0);
+    }
+
+    /**
+     * Wypycha na dysk rekordy dopisane od poprzedniego wywołania (jedno {@code force} dla wszystkich).
+     */
+    void sync() {
+        MappedByteBuffer target;
+        int from;
+        int to;
+        synchronized (this) {
+            if (closed || buffer.position() == synced) return;
+            target = buffer;
+            from = synced;
+            to = buffer.position();
+            synced = to;
+        }
+        target.force(from, to - from);
+    }
+
+    /**
+     * Wypycha dziennik na dysk i kończy grupowe zatwierdzanie.
+     */
+    @Override
+    public void close() {
+        if (syncer != null) syncer.shutdown();
+        sync();
+        synchronized (this) {
+            closed = true;
+        }
+    }
+
+    /**
+     * Wypycha bieżący segment i otwiera następny. W nowym segmencie zamyka porzucone partie,
+     * a następnie usuwa segmenty starsze niż początek najstarszej niezakończonej partii.
+     *
+     * @return {@code false}, jeśli nowego segmentu nie udało się utworzyć.
+     */
+    private boolean roll() {
+        buffer.force(synced, buffer.position() - synced);
+        try {
+            open(segment + 1);
+        } catch (IOException e) {
+            System.err.println("Could not open journal segment: " + e.getMessage());
+            return false;
+        }
+        segment++;
+        for (Iterator<Long> it = unterminated.iterator(); it.hasNext() && buffer.remaining() >= RECORD; ) {
+            put(it.next(), END, Stone.EMPTY, 0, 0, 0);
+            it.remove();
+        }
+
+        long keep = segment;
+        for (long first : live.values()) keep = Math.min(keep, first);
+        for (; oldest < keep; oldest++) {
+            try {
+                Files.deleteIfExists(path(oldest));
+            } catch (IOException e) {
+                System.err.println("Could not delete journal segment: " + e.getMessage());
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Tworzy i mapuje segment o podanym numerze jako bieżący.
+     */
+    private void open(long number) throws IOException {
+        try (FileChannel channel = FileChannel.open(path(number), StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        }
+        synced = 0;
+    }
+
+    /**
+     * Odczytuje poprawne rekordy segmentu i grupuje je według partii.
+     */
+    private void read(Path path, Map<Long, List<Record>> games) throws IOException {
+        MappedByteBuffer in;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        CRC32C check = new CRC32C();
+        for (int at = 0; at + RECORD <= in.limit(); at += RECORD) {
+            int type = in.get(at + 16);
+            if (type == 0) break;
+            check.reset();
+            check.update(in.slice(at, RECORD - 4));
+            if ((int) check.getValue() != in.getInt(at + RECORD - 4)) break;
+            Record r = new Record(in.getLong(at), type, Stone.values()[in.get(at + 17)],
+                    in.get(at + 18), in.get(at + 19), in.getLong(at + 8));
+            if (type == START) games.put(r.game, new ArrayList<>());
+            List<Record> records = games.get(r.game);
+            if (records != null) records.add(r);
+        }
+    }
+
+    /**
+     * Zwraca istniejące segmenty w kolejności numerów.
+     */
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(p -> p.getFileName().toString().matches("journal-\\d+\\.log"))
+                    .sorted((a, b) -> Long.compare(number(a), number(b)))
+                    .toList();
+        }
+    }
+
+    /**
+     * Zwraca ścieżkę segmentu o podanym numerze.
+     */
+    private Path path(long number) {
+        return directory.resolve("journal-" + number + ".log");
+    }
+
+    /**
+     * Zwraca numer segmentu z nazwy pliku.
+     */
+    private static long number(Path path) {
+        String name = path.getFileName().toString();
+        return Long.parseLong(name.substring("journal-".length(), name.length() - ".log".length()));
+    }
+
+    /**
+     * Odczytany rekord dziennika.
+     */
+    public static final class Record {
+
+        /** Numer partii. */
+        public final long game;
+
+        /** Typ rekordu ({@link #START}, {@link #TOKEN}, {@link #MOVE}, ...). */
+        public final int type;
+
+        /** Kolor gracza. */
+        public final Stone stone;
+
+        /** Współrzędna pozioma lub parametr rekordu. */
+        public final int x;
+
+        /** Współrzędna pionowa lub parametr rekordu. */
+        public final int y;
+
+        /** Wartość rekordu (komi, żeton) lub 0. */
+        public final long value;
+
+        /**
+         * Tworzy rekord.
+         *
+         * @param game  Numer partii.
+         * @param type  Typ rekordu.
+         * @param stone Kolor gracza.
+         * @param x     Współrzędna pozioma lub parametr.
+         * @param y     Współrzędna pionowa lub parametr.
+         * @param value Wartość rekordu.
+         */
+        Record(long game, int type, Stone stone, int x, int y, long value) {
+            this.game = game;
+            this.type = type;
+            this.stone = stone;
+            this.x = x;
+            this.y = y;
+            this.value = value;
+        }
+    }
+}
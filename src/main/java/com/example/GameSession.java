@@ -1,36 +1,157 @@
 package com.example;
 
 import java.net.*;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 /**
  * Zarządza jedną sesją gry Go pomiędzy dwoma graczami.
  * Odpowiada za stan gry, tury, punktację i komunikację z klientami.
+ * Partię mogą obserwować widzowie; odbiorcy tego samego stanu dostają wspólny
+ * {@link EncodedState}, więc każdy ruch jest kodowany raz niezależnie od liczby widzów.
+ * <p>
+ * Sesja jest aktorem: ruchy, rozłączenia, upływ czasu na ruch i pozostałe zdarzenia trafiają
+ * jako zadania do jej skrzynki ({@link SerialExecutor}) i są przetwarzane pojedynczo, w kolejności
+ * zgłoszenia, na puli wątków współdzielonej przez wszystkie sesje. Stan gry nie wymaga więc
+ * blokad, a wątki połączeń nigdy nie konkurują o monitor sesji.
+ * <p>
+ * Każdy gracz dostaje na początku partii żeton sesji. Po zerwaniu połączenia gra czeka na jego
+ * powrót przez czas łaski; gracz, który połączy się ponownie z tym żetonem, zajmuje swoje miejsce
+ * i dostaje tylko zmiany od posiadanej wersji planszy (albo pełną planszę, jeśli jest zbyt stara).
+ * <p>
+ * Jeśli sesja ma {@link GameJournal}, każdy zaakceptowany ruch, pas i akcja punktacji są
+ * dopisywane do dziennika; po awarii serwera sesję odtwarza się z tych rekordów,
+ * przepuszczając je przez {@link RulesEngine}, a gracze wracają do niej z żetonami sesji.
+ * Zakończona partia trafia do {@link GameArchive}, jeśli sesja go ma.
  */
 public class GameSession {
 
+    /** Domyślny rozmiar planszy. */
+    public static final int DEFAULT_SIZE = 19;
+
+    /** Domyślne komi (punkty dodatkowe białego gracza). */
+    public static final float KOMI = 6.5f;
+
+    /** Domyślny wykonawca obsługi połączeń: każdy gracz w osobnym wątku wirtualnym. */
+    private static final Executor VIRTUAL_THREADS = task -> Thread.ofVirtual().start(task);
+
+    /** Wspólna pula, na której wykonywane są skrzynki wszystkich sesji. */
+    private static final Executor SESSIONS = Executors.newWorkStealingPool();
+
+    /** Wątek odmierzający czas na ruch; po jego upływie zgłasza zdarzenie do skrzynki sesji. */
+    private static final ScheduledExecutorService TIMERS = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().daemon().name("session-timers").factory());
+
+    /** Źródło żetonów sesji graczy. */
+    private static final SecureRandom TOKENS = new SecureRandom();
+
+    /** Domyślny czas oczekiwania na powrót rozłączonego gracza ({@code go.reconnectSeconds}). */
+    private static final long RECONNECT_GRACE_MILLIS =
+            TimeUnit.SECONDS.toMillis(Long.getLong("go.reconnectSeconds", 30));
+
+    /** Domyślny czas na ruch w milisekundach ({@code go.moveTimeoutSeconds}); 0 wyłącza limit. */
+    private static final long MOVE_TIMEOUT_MILLIS =
+            TimeUnit.SECONDS.toMillis(Long.getLong("go.moveTimeoutSeconds", 0));
+
+    /** Komi obowiązujące w tej sesji. */
+    private final float komi;
+
+    /** Zasady punktacji obowiązujące w tej sesji. */
+    private final ScoringRules scoring;
+
+    /** Skrzynka zdarzeń sesji; wszystkie zmiany stanu gry wykonywane są w jej zadaniach. */
+    private final SerialExecutor mailbox;
+
+    /** Numer bieżącej tury; zdarzenie upływu czasu dla wcześniejszej tury jest ignorowane. */
+    private int turnNumber;
+
+    /** Czas na ruch w milisekundach; 0 wyłącza limit. */
+    private volatile long moveTimeoutMillis = MOVE_TIMEOUT_MILLIS;
+
+    /** Czas oczekiwania na powrót rozłączonego gracza w milisekundach; 0 kończy grę od razu. */
+    private volatile long reconnectGraceMillis = RECONNECT_GRACE_MILLIS;
+
     /** Aktualna plansza gry. */
-    private final Board board = new Board(19);
+    private final Board board;
 
     /** Silnik reguł gry. */
     private final RulesEngine rules = new RulesEngine();
 
-    /** Klient grający czarnymi kamieniami. */
-    private ClientHandler black;
+    /** Ostatnia migawka planszy; odczytywana bez blokady sesji (np. przez widzów i powtórki). */
+    private volatile BoardSnapshot latest;
+
+    /** Generator dozwolonych ruchów (podpowiedzi, boty, walidacja). */
+    private final MoveGenerator moveGenerator = new MoveGenerator();
+
+    /** Klient grający czarnymi kamieniami (zastępowany po ponownym połączeniu). */
+    private ClientConnection black;
+
+    /** Klient grający białymi kamieniami (zastępowany po ponownym połączeniu). */
+    private ClientConnection white;
+
+    /** Żeton sesji czarnego gracza. */
+    private final long blackToken;
 
-    /** Klient grający białymi kamieniami. */
-    private ClientHandler white;
+    /** Żeton sesji białego gracza. */
+    private final long whiteToken;
+
+    /** Licznik rozłączeń i powrotów czarnego; zdarzenie upływu czasu łaski sprzed zmiany jest ignorowane. */
+    private int blackSeat;
+
+    /** Licznik rozłączeń i powrotów białego; zdarzenie upływu czasu łaski sprzed zmiany jest ignorowane. */
+    private int whiteSeat;
+
+    /** Czy czarny jest rozłączony (lub jeszcze nie wrócił do sesji odtworzonej z dziennika). */
+    private boolean blackAway;
+
+    /** Czy biały jest rozłączony (lub jeszcze nie wrócił do sesji odtworzonej z dziennika). */
+    private boolean whiteAway;
+
+    /** Czy czarny nie wrócił jeszcze do sesji odtworzonej z dziennika (jego wersja planszy jest nieaktualna). */
+    private boolean blackRestored;
+
+    /** Czy biały nie wrócił jeszcze do sesji odtworzonej z dziennika (jego wersja planszy jest nieaktualna). */
+    private boolean whiteRestored;
+
+    /** Dziennik, do którego trafiają zaakceptowane ruchy, lub {@code null}. */
+    private GameJournal journal;
+
+    /** Numer partii w dzienniku. */
+    private long journalId;
+
+    /** Czy sesja jest odtwarzana z dziennika (bez wysyłania stanów i zapisu do dziennika). */
+    private boolean replaying;
+
+    /** Archiwum, do którego trafia partia po zakończeniu, lub {@code null}. */
+    private volatile GameArchive archive;
+
+    /** Kody ruchów partii w formacie {@link ArchivedGame} (pasy i postawione kamienie). */
+    private short[] moves = new short[64];
+
+    /** Liczba zapisanych ruchów. */
+    private int moveCount;
 
     /** Kamień gracza, którego jest aktualnie tura. */
     private Stone currentTurn = Stone.BLACK;
 
-    /** Poprzedni stan planszy (do reguły Ko). */
-    private Board previousBoard = null;
+    /** Skróty wszystkich dotychczasowych pozycji (do reguły superko). */
+    private final PositionHistory history;
 
     /** Liczba kolejnych pasów. */
     private int consecutivePasses = 0;
 
-    /** Informacja, czy gra została zakończona. */
-    private boolean gameOver = false;
+    /** Informacja, czy gra została zakończona (odczytywana także spoza skrzynki). */
+    private volatile boolean gameOver = false;
 
     /** Informacja, czy trwa faza punktacji. */
     private boolean scoringPhase = false;
@@ -47,32 +168,282 @@ public class GameSession {
     /** Czy biały zakończył usuwanie kamieni. */
     private boolean whiteDone = false;
 
+    /** Rozpoznawanie martwych kamieni na początku fazy punktacji. */
+    private final LifeAndDeath lifeAndDeath = new LifeAndDeath();
+
+    /** Zbiór bitowy kamieni oznaczonych jako martwe w fazie punktacji. */
+    private long[] dead;
+
+    /** Wersje widocznej planszy i zmiany między nimi (stany różnicowe). */
+    private final DeltaTracker deltas;
+
+    /** Wersja planszy ostatnio wysłana do każdego połączenia. */
+    private final Map<ClientConnection, Integer> delivered = new IdentityHashMap<>();
+
+    /** Widzowie partii (połączenia tylko do odczytu, z kolorem {@link Stone#EMPTY}). */
+    private final List<ClientConnection> spectators = new ArrayList<>();
+
+    /** Ostatnio przygotowany stan; kolejni odbiorcy o tych samych parametrach dostają ten sam obiekt. */
+    private EncodedState shared;
+
+    /** Wykonawca pętli odbioru połączeń, także widzów dołączających w trakcie partii. */
+    private volatile Executor connections = VIRTUAL_THREADS;
+
+    /** Akcja wywoływana jednokrotnie po zakończeniu gry (np. usunięcie sesji z rejestru). */
+    private volatile Runnable finishListener;
+
     /**
-     * Tworzy nową sesję gry dla dwóch graczy.
+     * Tworzy nową sesję gry dla dwóch graczy na planszy 19x19.
      *
      * @param p1 Gniazdo gracza czarnego.
      * @param p2 Gniazdo gracza białego.
      * @throws Exception w przypadku błędu połączenia.
      */
     public GameSession(Socket p1, Socket p2) throws Exception {
-        black = new ClientHandler(p1, Stone.BLACK, this);
-        white = new ClientHandler(p2, Stone.WHITE, this);
+        this(p1, p2, DEFAULT_SIZE);
+    }
+
+    /**
+     * Tworzy nową sesję gry dla dwóch graczy na planszy o podanym rozmiarze,
+     * z domyślnym komi i punktacją terytorialną.
+     *
+     * @param p1   Gniazdo gracza czarnego.
+     * @param p2   Gniazdo gracza białego.
+     * @param size Rozmiar planszy (9, 13 lub 19).
+     * @throws Exception w przypadku błędu połączenia.
+     */
+    public GameSession(Socket p1, Socket p2, int size) throws Exception {
+        this(p1, p2, size, KOMI, ScoringRules.TERRITORY);
+    }
+
+    /**
+     * Tworzy nową sesję gry z podanym rozmiarem planszy, komi i zasadami punktacji.
+     *
+     * @param p1      Gniazdo gracza czarnego.
+     * @param p2      Gniazdo gracza białego.
+     * @param size    Rozmiar planszy (9, 13 lub 19).
+     * @param komi    Punkty dodatkowe białego gracza.
+     * @param scoring Zasady punktacji.
+     * @throws Exception w przypadku błędu połączenia.
+     */
+    public GameSession(Socket p1, Socket p2, int size, float komi, ScoringRules scoring) throws Exception {
+        this(new ClientHandler(p1), new ClientHandler(p2), size, komi, scoring);
+    }
+
+    /**
+     * Tworzy nową sesję gry dla dwóch nawiązanych połączeń (dowolnego transportu).
+     *
+     * @param black   Połączenie gracza czarnego.
+     * @param white   Połączenie gracza białego.
+     * @param size    Rozmiar planszy (9, 13 lub 19).
+     * @param komi    Punkty dodatkowe białego gracza.
+     * @param scoring Zasady punktacji.
+     */
+    public GameSession(ClientConnection black, ClientConnection white, int size, float komi, ScoringRules scoring) {
+        this(black, white, size, komi, scoring, SESSIONS);
+    }
+
+    /**
+     * Tworzy nową sesję gry, której zdarzenia wykonuje podana pula.
+     *
+     * @param black   Połączenie gracza czarnego.
+     * @param white   Połączenie gracza białego.
+     * @param size    Rozmiar planszy (9, 13 lub 19).
+     * @param komi    Punkty dodatkowe białego gracza.
+     * @param scoring Zasady punktacji.
+     * @param pool    Pula wykonująca skrzynkę sesji (np. {@code Runnable::run} w testach).
+     */
+    GameSession(ClientConnection black, ClientConnection white, int size, float komi, ScoringRules scoring,
+                Executor pool) {
+        this(black, white, size, komi, scoring, pool, newToken(), newToken());
+    }
+
+    /**
+     * Tworzy sesję partii odtwarzanej z dziennika. Oba miejsca są puste do czasu powrotu graczy
+     * z ich żetonami; rekordy przekazuje się metodą {@link #replay(GameJournal.Record)},
+     * a sesję uruchamia metodą {@link #resume(Executor)}.
+     *
+     * @param size       Rozmiar planszy.
+     * @param komi       Punkty dodatkowe białego gracza.
+     * @param scoring    Zasady punktacji.
+     * @param blackToken Żeton sesji czarnego.
+     * @param whiteToken Żeton sesji białego.
+     */
+    GameSession(int size, float komi, ScoringRules scoring, long blackToken, long whiteToken) {
+        this(new VacantSeat(), new VacantSeat(), size, komi, scoring, SESSIONS, blackToken, whiteToken);
+        replaying = true;
+        blackRestored = true;
+        whiteRestored = true;
+        blackAway = true;
+        whiteAway = true;
     }
 
-    /** Uruchamia grę i rozpoczyna wątki klientów. */
+    /**
+     * Tworzy sesję o podanych żetonach graczy.
+     */
+    private GameSession(ClientConnection black, ClientConnection white, int size, float komi,
+                        ScoringRules scoring, Executor pool, long blackToken, long whiteToken) {
+        if (!isSupportedSize(size)) {
+            throw new IllegalArgumentException("Unsupported board size: " + size);
+        }
+        this.komi = komi;
+        this.scoring = scoring;
+        board = new Board(size);
+        history = new PositionHistory(size);
+        latest = history.last();
+        deltas = new DeltaTracker(board.geometry());
+        mailbox = new SerialExecutor(pool);
+        this.black = black;
+        this.white = white;
+        this.blackToken = blackToken;
+        this.whiteToken = whiteToken;
+        black.attach(this, Stone.BLACK);
+        white.attach(this, Stone.WHITE);
+    }
+
+    /**
+     * Losuje niezerowy żeton sesji.
+     *
+     * @return Nowy żeton.
+     */
+    private static long newToken() {
+        long token;
+        do {
+            token = TOKENS.nextLong();
+        } while (token == 0);
+        return token;
+    }
+
+    /**
+     * Sprawdza, czy rozmiar planszy jest obsługiwany przez serwer.
+     *
+     * @param size Rozmiar planszy.
+     * @return {@code true} dla rozmiarów 9, 13 i 19.
+     */
+    public static boolean isSupportedSize(int size) {
+        return size == 9 || size == 13 || size == 19;
+    }
+
+    /** Uruchamia grę; blokujące połączenia graczy obsługiwane są w wątkach wirtualnych. */
     public void start() {
-        black.start();
-        white.start();
-        broadcast("Game started. BLACK begins.", true);
+        start(VIRTUAL_THREADS);
+    }
+
+    /**
+     * Uruchamia grę, przekazując obsługę połączeń graczy podanemu wykonawcy.
+     *
+     * @param executor Wykonawca, w którym działają pętle odbioru ruchów obu graczy
+     *                 (pomijany przez transporty oparte na selektorach).
+     */
+    public void start(Executor executor) {
+        connections = executor;
+        mailbox.execute(() -> {
+            broadcast(String.format("Game started (%s scoring, komi %.1f). BLACK begins.", scoring, komi), true);
+            armTimer();
+        });
+        black.start(executor);
+        white.start(executor);
+    }
+
+    /**
+     * Włącza zapis ruchów tej sesji do dziennika; wywoływana przed uruchomieniem sesji.
+     *
+     * @param journal Dziennik.
+     * @param id      Numer partii w dzienniku.
+     */
+    void setJournal(GameJournal journal, long id) {
+        this.journal = journal;
+        this.journalId = id;
     }
 
     /**
-     * Obsługuje ruch przesłany przez gracza.
+     * Ustawia archiwum, do którego trafi partia po zakończeniu.
+     *
+     * @param archive Archiwum partii.
+     */
+    void setArchive(GameArchive archive) {
+        this.archive = archive;
+    }
+
+    /**
+     * Odtwarza jeden rekord dziennika (ruch, pas lub akcję punktacji) tak, jakby przysłał go gracz.
+     * Wywoływana przed {@link #resume(Executor)}; stany nie są wysyłane, a rekordy ponownie zapisywane.
+     *
+     * @param record Rekord typu {@link GameJournal#MOVE}, {@link GameJournal#PASS} lub {@link GameJournal#DONE}.
+     */
+    void replay(GameJournal.Record record) {
+        Move move;
+        switch (record.type) {
+            case GameJournal.MOVE:
+                move = new Move(record.x, record.y, false, false);
+                break;
+            case GameJournal.PASS:
+                move = new Move(-1, -1, true, false);
+                break;
+            case GameJournal.DONE:
+                move = new Move(-1, -1, false, false, true);
+                break;
+            default:
+                return;
+        }
+        processMove(move, player(record.stone));
+    }
+
+    /**
+     * Uruchamia sesję odtworzoną z dziennika. Oba miejsca traktowane są jak rozłączeni gracze:
+     * gra czeka na ich powrót przez czas łaski.
+     *
+     * @param executor Wykonawca pętli odbioru połączeń graczy, którzy wrócą do partii.
+     */
+    void resume(Executor executor) {
+        connections = executor;
+        mailbox.execute(() -> {
+            replaying = false;
+            armTimer();
+        });
+        disconnected(black);
+        disconnected(white);
+    }
+
+    /**
+     * Dopisuje zaakceptowaną akcję gracza do dziennika (jeśli jest włączony).
+     *
+     * @param type   Typ rekordu.
+     * @param player Gracz.
+     * @param x      Współrzędna pozioma.
+     * @param y      Współrzędna pionowa.
+     */
+    private void log(int type, ClientConnection player, int x, int y) {
+        if (journal != null && !replaying) journal.append(journalId, type, player.getStone(), x, y, 0);
+    }
+
+    /**
+     * Zgłasza ruch przesłany przez gracza do skrzynki sesji; nie czeka na jego przetworzenie.
+     *
+     * @param move   Wykonany ruch.
+     * @param sender Gracz wykonujący ruch.
+     */
+    public void handleMove(Move move, ClientConnection sender) {
+        mailbox.execute(() -> processMove(move, sender));
+    }
+
+    /**
+     * Przetwarza ruch gracza; wywoływana w zadaniu skrzynki sesji.
      *
      * @param move   Wykonany ruch.
      * @param sender Gracz wykonujący ruch.
      */
-    public synchronized void handleMove(Move move, ClientHandler sender) {
+    private void processMove(Move move, ClientConnection sender) {
+        if (move.resync) {
+            delivered.remove(sender);
+            boolean turn = !gameOver && sender.getStone() != Stone.EMPTY
+                    && (scoringPhase || sender.getStone() == currentTurn);
+            send(sender, "Board resynchronized", turn);
+            return;
+        }
+
+        if (sender.getStone() == Stone.EMPTY) return;
+
         if (gameOver) return;
 
         if (scoringPhase) {
@@ -81,7 +452,7 @@ public class GameSession {
         }
 
         if (sender.getStone() != currentTurn) {
-            sender.sendState(new GameState(board.toString(), "Not your turn", false));
+            send(sender, "Not your turn", false);
             return;
         }
 
@@ -91,6 +462,8 @@ public class GameSession {
         }
 
         if (move.pass) {
+            log(GameJournal.PASS, sender, 0, 0);
+            record((short) 0);
             consecutivePasses++;
             if (consecutivePasses >= 2) {
                 startScoringPhase();
@@ -105,22 +478,36 @@ public class GameSession {
         boolean ok = rules.applyMove(board, move, currentTurn, this);
 
         if (!ok) {
-            sender.sendState(new GameState(board.toString(), "Invalid move", true));
+            send(sender, "Invalid move", true);
             return;
         }
+        log(GameJournal.MOVE, sender, move.x, move.y);
+        record(ArchivedGame.play(move.x, move.y, board.getSize()));
 
         switchTurn(sender, "Move accepted", "Your turn");
     }
 
+    /**
+     * Zapamiętuje kod ruchu do archiwum partii.
+     *
+     * @param code Kod ruchu.
+     */
+    private void record(short code) {
+        if (moveCount == moves.length) moves = Arrays.copyOf(moves, 2 * moveCount);
+        moves[moveCount++] = code;
+    }
+
     /** Rozpoczyna fazę punktacji. */
     private void startScoringPhase() {
         scoringPhase = true;
         blackDone = false;
         whiteDone = false;
+        dead = lifeAndDeath.deadStones(board);
 
-        String msg = "SCORING PHASE. Click DEAD stones to remove them.\nPress DONE when finished.";
-        black.sendState(new GameState(board.toString(), msg, true));
-        white.sendState(new GameState(board.toString(), msg, true));
+        String msg = "SCORING PHASE. Proposed dead stones are faded; click a group to toggle it.\nPress DONE when finished.";
+        send(black, msg, true);
+        send(white, msg, true);
+        watchers("SCORING PHASE. Players are marking dead stones.");
     }
 
     /**
@@ -129,13 +516,14 @@ public class GameSession {
      * @param move   Ruch punktacyjny.
      * @param sender Gracz wykonujący akcję.
      */
-    private void handleScoringMove(Move move, ClientHandler sender) {
+    private void handleScoringMove(Move move, ClientConnection sender) {
 
         if (move.doneScoring) {
+            log(GameJournal.DONE, sender, 0, 0);
             if (sender.getStone() == Stone.BLACK) blackDone = true;
             else whiteDone = true;
 
-            sender.sendState(new GameState(board.toString(), "Waiting for opponent...", false));
+            send(sender, "Waiting for opponent...", false);
 
             if (blackDone && whiteDone) {
                 finishGameAndScore();
@@ -143,30 +531,67 @@ public class GameSession {
             return;
         }
 
-        if (board.inBounds(move.x, move.y)) {
-            Stone target = board.get(move.x, move.y);
+        if (board.inBounds(move.x, move.y) && board.get(move.x, move.y) != Stone.EMPTY) {
+            log(GameJournal.MOVE, sender, move.x, move.y);
+            boolean nowDead = toggleChain(board.geometry().index(move.x, move.y));
 
-            if (target != Stone.EMPTY) {
-                board.set(move.x, move.y, Stone.EMPTY);
+            blackDone = false;
+            whiteDone = false;
 
-                if (target == Stone.BLACK) whitePrisoners++;
-                else blackPrisoners++;
+            String msg = nowDead
+                    ? "Group marked dead. Keep marking or press DONE."
+                    : "Group marked alive. Keep marking or press DONE.";
+            send(black, msg, true);
+            send(white, msg, true);
+            watchers(msg);
+        }
+    }
 
-                blackDone = false;
-                whiteDone = false;
+    /**
+     * Przełącza oznaczenie martwych kamieni dla całego łańcucha zawierającego pole.
+     *
+     * @param i Indeks kamienia wskazanego przez gracza.
+     * @return {@code true}, jeśli łańcuch jest teraz oznaczony jako martwy.
+     */
+    private boolean toggleChain(int i) {
+        GroupTracker groups = board.groups();
+        boolean nowDead = (dead[i >>> 6] & 1L << i) == 0;
+        int p = i;
+        do {
+            if (nowDead) dead[p >>> 6] |= 1L << p;
+            else dead[p >>> 6] &= ~(1L << p);
+            p = groups.next(p);
+        } while (p != i);
+        return nowDead;
+    }
 
-                String msg = "Stone removed. Keep marking or press DONE.";
-                black.sendState(new GameState(board.toString(), msg, true));
-                white.sendState(new GameState(board.toString(), msg, true));
+    /**
+     * Zdejmuje z planszy kamienie oznaczone jako martwe i (przy punktacji terytorialnej)
+     * dolicza je jako jeńców przeciwnika.
+     */
+    private void removeDeadStones() {
+        BoardGeometry geometry = board.geometry();
+        for (int w = 0; w < dead.length; w++) {
+            for (long bits = dead[w]; bits != 0; bits &= bits - 1) {
+                int i = (w << 6) + Long.numberOfTrailingZeros(bits);
+                if (scoring.countsPrisoners()) {
+                    if (board.get(i) == Stone.BLACK) whitePrisoners++;
+                    else blackPrisoners++;
+                }
+                board.set(i / geometry.size, i % geometry.size, Stone.EMPTY);
             }
         }
+        dead = null;
+        latest = board.snapshot(latest);
     }
 
     /** Kończy grę i oblicza wynik. */
     private void finishGameAndScore() {
-        gameOver = true;
+        removeDeadStones();
         ScoringEngine engine = new ScoringEngine();
-        ScoringResult result = engine.score(board, blackPrisoners, whitePrisoners, 6.5f);
+        ScoringResult result = engine.score(board, blackPrisoners, whitePrisoners, komi, scoring);
+        endGame(result.blackScore > result.whiteScore ? Stone.BLACK : Stone.WHITE,
+                ArchivedGame.Ending.SCORE, result.blackScore, result.whiteScore);
 
         String msg = String.format(
                 "GAME OVER\nBLACK: %.1f | WHITE: %.1f\n%s wins!",
@@ -175,8 +600,9 @@ public class GameSession {
                 result.blackScore > result.whiteScore ? "BLACK" : "WHITE"
         );
 
-        black.sendState(new GameState(board.toString(), msg, false));
-        white.sendState(new GameState(board.toString(), msg, false));
+        send(black, msg, false);
+        send(white, msg, false);
+        watchers(msg);
     }
 
     /**
@@ -186,12 +612,14 @@ public class GameSession {
      * @param msgSelf       Komunikat dla niego.
      * @param msgOther      Komunikat dla przeciwnika.
      */
-    private void switchTurn(ClientHandler currentSender, String msgSelf, String msgOther) {
+    private void switchTurn(ClientConnection currentSender, String msgSelf, String msgOther) {
         currentTurn = currentTurn.opposite();
-        ClientHandler other = (currentSender.getStone() == Stone.BLACK) ? white : black;
+        armTimer();
+        ClientConnection other = (currentSender.getStone() == Stone.BLACK) ? white : black;
 
-        currentSender.sendState(new GameState(board.toString(), msgSelf, false));
-        other.sendState(new GameState(board.toString(), msgOther, true));
+        send(currentSender, msgSelf, false);
+        send(other, msgOther, true);
+        watchers(currentTurn + " to play.");
     }
 
     /**
@@ -199,11 +627,279 @@ public class GameSession {
      *
      * @param loser Gracz, który się poddał.
      */
-    private void endGameByResignation(ClientHandler loser) {
+    private void endGameByResignation(ClientConnection loser) {
+        endGame(loser.getStone().opposite(), ArchivedGame.Ending.RESIGNATION, 0, 0);
+        ClientConnection winner = (loser.getStone() == Stone.BLACK) ? white : black;
+        send(loser, "You resigned. You lose.", false);
+        send(winner, "Opponent resigned. You win.", false);
+        watchers(loser.getStone() + " resigned. " + winner.getStone() + " wins.");
+    }
+
+    /**
+     * Rozpoczyna odmierzanie czasu na ruch bieżącego gracza (jeśli limit jest włączony).
+     * Po upływie czasu do skrzynki trafia zdarzenie z numerem tury, w której je zaplanowano.
+     */
+    private void armTimer() {
+        int turn = ++turnNumber;
+        long millis = moveTimeoutMillis;
+        if (millis > 0 && !replaying) {
+            TIMERS.schedule(() -> mailbox.execute(() -> timeout(turn)), millis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Ustawia czas na ruch; obowiązuje od następnej tury.
+     *
+     * @param millis Czas w milisekundach; 0 wyłącza limit.
+     */
+    void setMoveTimeout(long millis) {
+        this.moveTimeoutMillis = millis;
+    }
+
+    /**
+     * Kończy grę przegraną gracza, który nie wykonał ruchu w wyznaczonym czasie.
+     *
+     * @param turn Numer tury, dla której odmierzano czas.
+     */
+    private void timeout(int turn) {
+        if (gameOver || scoringPhase || turn != turnNumber) return;
+        endGame(currentTurn.opposite(), ArchivedGame.Ending.TIMEOUT, 0, 0);
+        ClientConnection loser = currentTurn == Stone.BLACK ? black : white;
+        ClientConnection winner = currentTurn == Stone.BLACK ? white : black;
+        send(loser, "You ran out of time. You lose.", false);
+        send(winner, "Opponent ran out of time. You win.", false);
+        watchers(loser.getStone() + " ran out of time. " + winner.getStone() + " wins.");
+    }
+
+    /**
+     * Ustawia czas oczekiwania na powrót rozłączonego gracza; obowiązuje od następnego rozłączenia.
+     *
+     * @param millis Czas w milisekundach; 0 kończy grę wygraną przeciwnika od razu po rozłączeniu.
+     */
+    void setReconnectGrace(long millis) {
+        this.reconnectGraceMillis = millis;
+    }
+
+    /**
+     * Zwraca żeton sesji gracza.
+     *
+     * @param stone Kolor gracza.
+     * @return Żeton, z którym gracz może wznowić grę po zerwaniu połączenia.
+     */
+    long token(Stone stone) {
+        return stone == Stone.BLACK ? blackToken : whiteToken;
+    }
+
+    /**
+     * Zgłasza utratę połączenia z graczem. Niezakończona gra czeka na jego powrót przez czas
+     * łaski, a potem kończy się wygraną przeciwnika (lub bez zwycięzcy, jeśli przeciwnik
+     * też jest rozłączony). Rozłączony widz jest po prostu usuwany.
+     * Zgłoszenie od połączenia zastąpionego już przez nowe jest ignorowane.
+     *
+     * @param leaver Gracz lub widz, który się rozłączył.
+     */
+    public void disconnected(ClientConnection leaver) {
+        mailbox.execute(() -> {
+            Stone stone = leaver.getStone();
+            if (stone == Stone.EMPTY) {
+                spectators.remove(leaver);
+                delivered.remove(leaver);
+                return;
+            }
+            if (gameOver || leaver != player(stone)) return;
+            if (stone == Stone.BLACK) blackAway = true;
+            else whiteAway = true;
+            long grace = reconnectGraceMillis;
+            if (grace <= 0) {
+                abandon(stone);
+                return;
+            }
+            int seat = stone == Stone.BLACK ? ++blackSeat : ++whiteSeat;
+            ClientConnection opponent = player(stone.opposite());
+            send(opponent, "Opponent disconnected. Waiting for reconnection...", hasTurn(opponent.getStone()));
+            watchers(stone + " disconnected. Waiting for reconnection.");
+            TIMERS.schedule(() -> mailbox.execute(() -> {
+                if (!gameOver && seat == (stone == Stone.BLACK ? blackSeat : whiteSeat)) abandon(stone);
+            }), grace, TimeUnit.MILLISECONDS);
+        });
+    }
+
+    /**
+     * Kończy grę wygraną przeciwnika gracza, który się rozłączył i nie wrócił. Jeśli przeciwnik
+     * również jest rozłączony, partia kończy się bez zwycięzcy, niezależnie od tego,
+     * czyj czas łaski upłynął pierwszy.
+     *
+     * @param stone Kolor rozłączonego gracza.
+     */
+    private void abandon(Stone stone) {
+        if (stone == Stone.BLACK ? whiteAway : blackAway) {
+            endGame(Stone.EMPTY, ArchivedGame.Ending.DISCONNECT, 0, 0);
+            watchers("Both players disconnected. Game abandoned.");
+            return;
+        }
+        endGame(stone.opposite(), ArchivedGame.Ending.DISCONNECT, 0, 0);
+        ClientConnection winner = player(stone.opposite());
+        send(winner, "Opponent disconnected. You win.", false);
+        watchers(stone + " disconnected. " + winner.getStone() + " wins.");
+    }
+
+    /**
+     * Przyłącza ponownie gracza, który przedstawił żeton sesji. Nowe połączenie zastępuje
+     * poprzednie (zamykane, jeśli jeszcze jest otwarte), a gracz dostaje zmiany od posiadanej
+     * wersji planszy albo pełną planszę. Nieznany żeton lub zakończona gra zamyka połączenie.
+     *
+     * @param token      Żeton sesji gracza.
+     * @param version    Wersja planszy, którą ma klient, lub -1.
+     * @param connection Nowe połączenie gracza.
+     */
+    public void reconnect(long token, int version, ClientConnection connection) {
+        mailbox.execute(() -> {
+            Stone stone = token == blackToken ? Stone.BLACK : token == whiteToken ? Stone.WHITE : null;
+            if (stone == null || gameOver) {
+                connection.close();
+                return;
+            }
+            ClientConnection previous = player(stone);
+            if (stone == Stone.BLACK) {
+                black = connection;
+                blackSeat++;
+                blackAway = false;
+            } else {
+                white = connection;
+                whiteSeat++;
+                whiteAway = false;
+            }
+            delivered.remove(previous);
+            previous.close();
+
+            connection.attach(this, stone);
+            boolean restored = stone == Stone.BLACK ? blackRestored : whiteRestored;
+            if (version >= 0 && version <= deltas.version() && !restored) delivered.put(connection, version);
+            if (stone == Stone.BLACK) blackRestored = false;
+            else whiteRestored = false;
+            connection.start(connections);
+
+            boolean turn = hasTurn(stone);
+            send(connection, turn ? "Reconnected. Your turn." : "Reconnected. Waiting for opponent.", turn);
+            ClientConnection opponent = player(stone.opposite());
+            send(opponent, "Opponent reconnected.", hasTurn(opponent.getStone()));
+            watchers(stone + " reconnected.");
+        });
+    }
+
+    /**
+     * Zwraca bieżące połączenie gracza danego koloru.
+     *
+     * @param stone Kolor gracza (BLACK lub WHITE).
+     * @return Połączenie gracza.
+     */
+    private ClientConnection player(Stone stone) {
+        return stone == Stone.BLACK ? black : white;
+    }
+
+    /**
+     * Sprawdza, czy gracz może teraz wykonać ruch (w fazie punktacji mogą obaj).
+     *
+     * @param stone Kolor gracza.
+     * @return {@code true}, jeśli gracz ma turę.
+     */
+    private boolean hasTurn(Stone stone) {
+        return scoringPhase || stone == currentTurn;
+    }
+
+    /**
+     * Dodaje widza partii. Widz dostaje pełną planszę, a potem te same aktualizacje
+     * co pozostali widzowie; jego ruchy (poza prośbą o resynchronizację) są ignorowane.
+     *
+     * @param spectator Połączenie widza.
+     */
+    public void addSpectator(ClientConnection spectator) {
+        spectator.attach(this, Stone.EMPTY);
+        mailbox.execute(() -> {
+            spectators.add(spectator);
+            String msg = gameOver ? "Spectating. The game is over."
+                    : scoringPhase ? "Spectating. SCORING PHASE."
+                    : "Spectating. " + currentTurn + " to play.";
+            send(spectator, msg, false);
+            if (gameOver) {
+                spectators.remove(spectator);
+                delivered.remove(spectator);
+                spectator.finish();
+            }
+        });
+        spectator.start(connections);
+    }
+
+    /**
+     * Zwraca liczbę widzów partii; czeka na przetworzenie wcześniej zgłoszonych zdarzeń.
+     *
+     * @return Liczba połączonych widzów.
+     */
+    public int spectatorCount() {
+        return ask(spectators::size);
+    }
+
+    /**
+     * Ustawia akcję wywoływaną po zakończeniu gry (wynik, poddanie lub rozłączenie).
+     *
+     * @param listener Akcja do wywołania.
+     */
+    public void setFinishListener(Runnable listener) {
+        this.finishListener = listener;
+    }
+
+    /**
+     * Sprawdza, czy gra została zakończona.
+     *
+     * @return {@code true} po ogłoszeniu wyniku, poddaniu się lub rozłączeniu gracza.
+     */
+    public boolean isGameOver() {
+        return gameOver;
+    }
+
+    /**
+     * Wykonuje zapytanie w skrzynce sesji i czeka na wynik.
+     * Nie wolno jej wywoływać z zadań samej sesji.
+     *
+     * @param query Zapytanie odczytujące stan gry.
+     * @return Wynik zapytania.
+     */
+    private <T> T ask(Supplier<T> query) {
+        return CompletableFuture.supplyAsync(query, mailbox).join();
+    }
+
+    /**
+     * Oznacza grę jako zakończoną, zapisuje to w dzienniku, przekazuje partię do zapisu
+     * w archiwum i powiadamia słuchacza. Połączenia graczy i widzów są zamykane w następnym
+     * zadaniu skrzynki, czyli po wysłaniu stanów końcowych przez bieżące zadanie.
+     *
+     * @param winner     Zwycięzca.
+     * @param ending     Sposób zakończenia partii.
+     * @param blackScore Wynik czarnego (po punktacji) lub 0.
+     * @param whiteScore Wynik białego (po punktacji) lub 0.
+     */
+    private void endGame(Stone winner, ArchivedGame.Ending ending, float blackScore, float whiteScore) {
         gameOver = true;
-        ClientHandler winner = (loser.getStone() == Stone.BLACK) ? white : black;
-        loser.sendState(new GameState(board.toString(), "You resigned. You lose.", false));
-        winner.sendState(new GameState(board.toString(), "Opponent resigned. You win.", false));
+        if (journal != null) journal.append(journalId, GameJournal.END, Stone.EMPTY, 0, 0, 0);
+        GameArchive target = archive;
+        if (target != null) {
+            target.submit(new ArchivedGame(black.address(), white.address(), board.getSize(), komi, scoring,
+                    winner, ending, blackScore, whiteScore, Arrays.copyOf(moves, moveCount)));
+        }
+        if (finishListener != null) finishListener.run();
+        mailbox.execute(this::closeConnections);
+    }
+
+    /**
+     * Zamyka połączenia graczy i widzów zakończonej partii po wysłaniu oczekujących stanów
+     * i zapomina o nich, aby sesja i jej wątki nie żyły do rozłączenia klientów.
+     */
+    private void closeConnections() {
+        black.finish();
+        white.finish();
+        for (ClientConnection spectator : spectators) spectator.finish();
+        spectators.clear();
+        delivered.clear();
     }
 
     /**
@@ -213,8 +909,106 @@ public class GameSession {
      * @param blackTurn Czy czarny ma turę.
      */
     private void broadcast(String msg, boolean blackTurn) {
-        black.sendState(new GameState(board.toString(), msg, blackTurn));
-        white.sendState(new GameState(board.toString(), msg, !blackTurn));
+        send(black, msg, blackTurn);
+        send(white, msg, !blackTurn);
+        watchers(msg);
+    }
+
+    /**
+     * Wysyła ten sam stan wszystkim widzom; widzowie z aktualną wersją planszy
+     * dostają jeden wspólny, raz zakodowany obiekt.
+     *
+     * @param msg Treść komunikatu.
+     */
+    private void watchers(String msg) {
+        for (ClientConnection spectator : spectators) {
+            send(spectator, msg, false);
+        }
+    }
+
+    /**
+     * Wysyła stan gry do jednego odbiorcy. Jeśli poprzedni odbiorca dostał stan o tej samej
+     * wersji, bazie, komunikacie, turze i żetonie, ponownie używany jest ten sam zakodowany obiekt.
+     * Pierwszy stan wysłany graczowi niesie jego żeton sesji.
+     *
+     * @param to       Odbiorca.
+     * @param msg      Treść komunikatu.
+     * @param yourTurn Czy odbiorca ma turę.
+     */
+    private void send(ClientConnection to, String msg, boolean yourTurn) {
+        if (replaying) return;
+        int version = deltas.update(board, dead);
+        Integer since = delivered.put(to, version);
+        int base = since != null && deltas.hasChangesSince(since) ? since : GameState.KEYFRAME;
+        long token = since == null && to.getStone() != Stone.EMPTY && to == player(to.getStone())
+                ? token(to.getStone()) : 0;
+        GameState last = shared == null ? null : shared.state();
+        if (last == null || last.version != version || last.baseVersion != base || last.token != token
+                || last.yourTurn != yourTurn || !last.message.equals(msg)) {
+            shared = new EncodedState(state(msg, yourTurn, version, base, token));
+        }
+        to.sendState(shared);
+    }
+
+    /**
+     * Tworzy stan gry z bieżącym układem i rozmiarem planszy oraz szacowanym wynikiem.
+     * W trakcie partii szacunek pochodzi z przyrostowego licznika terytorium, więc nie wymaga
+     * pełnego przeliczenia; w fazie punktacji jest to wynik po zdjęciu oznaczonych kamieni.
+     * <p>
+     * Odbiorca, który ma wersję planszy nie starszą niż ostatnia klatka kluczowa, dostaje
+     * tylko zmienione pola (postawiony kamień, zbite lub zdjęte kamienie, oznaczenia);
+     * pozostali, w tym nowi odbiorcy i proszący o resynchronizację, dostają pełną planszę.
+     *
+     * @param msg      Treść komunikatu.
+     * @param yourTurn Czy odbiorca ma turę.
+     * @param version  Bieżąca wersja planszy.
+     * @param since    Wersja planszy odbiorcy lub {@link GameState#KEYFRAME}.
+     * @param token    Żeton sesji odbiorcy (tylko w pierwszym stanie) lub 0.
+     * @return Nowy obiekt {@link GameState}.
+     */
+    private GameState state(String msg, boolean yourTurn, int version, int since, long token) {
+        ScoringResult estimate;
+        if (dead != null) estimate = scoringPreview();
+        else if (scoring == ScoringRules.AREA) estimate = board.territory().estimateArea(komi);
+        else estimate = board.territory().estimate(blackPrisoners, whitePrisoners, komi);
+
+        int[] changes = since == GameState.KEYFRAME ? null : deltas.changesSince(since);
+        if (changes == null) {
+            return new GameState(board.toString(dead), msg, yourTurn, board.getSize(),
+                    estimate.blackScore, estimate.whiteScore, version, GameState.KEYFRAME, null, token);
+        }
+        return new GameState(null, msg, yourTurn, board.getSize(),
+                estimate.blackScore, estimate.whiteScore, version, since, changes);
+    }
+
+    /**
+     * Oblicza wynik, jaki dałoby zakończenie punktacji przy bieżących oznaczeniach martwych kamieni.
+     *
+     * @return Przewidywany wynik obu graczy.
+     */
+    private ScoringResult scoringPreview() {
+        long[] black = board.bits(Stone.BLACK).clone();
+        long[] white = board.bits(Stone.WHITE).clone();
+        int blackCaptured = 0;
+        int whiteCaptured = 0;
+        for (int w = 0; w < dead.length; w++) {
+            blackCaptured += Long.bitCount(black[w] & dead[w]);
+            whiteCaptured += Long.bitCount(white[w] & dead[w]);
+            black[w] &= ~dead[w];
+            white[w] &= ~dead[w];
+        }
+        return new ScoringEngine().score(board.geometry(), black, white,
+                blackPrisoners + whiteCaptured, whitePrisoners + blackCaptured, komi, scoring);
+    }
+
+    /**
+     * Sprawdza, czy w tej sesji liczeni są jeńcy (punktacja terytorialna).
+     * Przy punktacji obszarowej {@link RulesEngine} nie zgłasza zbitych kamieni.
+     *
+     * @return {@code true}, jeśli należy wywoływać {@link #addPrisoner(Stone)}.
+     */
+    public boolean countsPrisoners() {
+        return scoring.countsPrisoners();
     }
 
     /**
@@ -227,13 +1021,53 @@ public class GameSession {
         else whitePrisoners++;
     }
 
-    /** Zwraca poprzedni stan planszy. */
-    public Board getPreviousBoard() {
-        return previousBoard;
+    /**
+     * Zwraca zbiór dozwolonych ruchów gracza w bieżącej pozycji,
+     * z uwzględnieniem samobójstwa i reguły superko.
+     *
+     * @param stone Kolor gracza.
+     * @return Zbiór bitowy pól, bit {@code x * size + y} oznacza dozwolony ruch na (x, y).
+     */
+    public long[] legalMoves(Stone stone) {
+        return ask(() -> moveGenerator.legalMoves(board, stone, history));
     }
 
-    /** Ustawia poprzedni stan planszy. */
-    public void setPreviousBoard(Board b) {
-        previousBoard = b;
+    /**
+     * Sprawdza, czy układ planszy wystąpił już wcześniej w tej partii (superko).
+     *
+     * @param b Plansza po wykonaniu ruchu.
+     * @return {@code true}, jeśli pozycja się powtarza.
+     */
+    public boolean repeatsPosition(Board b) {
+        return history.contains(b);
+    }
+
+    /**
+     * Zapamiętuje pozycję powstałą po zaakceptowanym ruchu.
+     *
+     * @param b Plansza po wykonaniu ruchu.
+     */
+    public void recordPosition(Board b) {
+        latest = history.add(b);
+    }
+
+    /**
+     * Zwraca niezmienną migawkę bieżącej pozycji.
+     * Metoda nie korzysta ze skrzynki sesji, a migawkę można bezpiecznie przekazać innym wątkom.
+     *
+     * @return Ostatnia migawka planszy.
+     */
+    public BoardSnapshot snapshot() {
+        return latest;
+    }
+
+    /**
+     * Zwraca wszystkie pozycje partii od pustej planszy do bieżącej.
+     * Kolejne migawki współdzielą niezmienione zbiory bitowe, więc lista jest tania w przechowywaniu.
+     *
+     * @return Niezmienna lista migawek.
+     */
+    public List<BoardSnapshot> snapshots() {
+        return ask(() -> List.copyOf(history.snapshots()));
     }
-}
\ No newline at end of file
+}
@@ -6,11 +6,19 @@ import java.io.Serializable;
  * Reprezentuje migawkę stanu gry przesyłaną z serwera do klienta.
  * Klasa implementuje interfejs {@link Serializable}, co umożliwia jej
  * przesyłanie przez strumienie obiektowe (ObjectStreams).
+ * <p>
+ * Stan jest albo pełny (klatka kluczowa z całą planszą w {@link #board}), albo
+ * różnicowy: zawiera wtedy tylko pola zmienione od wersji {@link #baseVersion},
+ * które klient nakłada na swoją kopię planszy metodą {@link #applyTo(String)}.
  */
 public class GameState implements Serializable {
 
+    /** Wartość {@link #baseVersion} oznaczająca pełny stan planszy. */
+    public static final int KEYFRAME = -1;
+
     /** * Tekstowa reprezentacja planszy.
-     * Zawiera układ kamieni ('B', 'W', '.') ułożony w wiersze i kolumny.
+     * Zawiera układ kamieni ('B', 'W', '.') ułożony w wiersze i kolumny;
+     * w stanie różnicowym ma wartość {@code null}.
      */
     public final String board;
 
@@ -23,16 +31,146 @@ public class GameState implements Serializable {
      */
     public final boolean yourTurn;
 
+    /** * Rozmiar planszy (długość boku), na której toczy się partia.
+     */
+    public final int size;
+
+    /** * Szacowany bieżący wynik czarnego gracza (terytorium, jeńcy).
+     */
+    public final float blackEstimate;
+
+    /** * Szacowany bieżący wynik białego gracza (terytorium, jeńcy, komi).
+     */
+    public final float whiteEstimate;
+
+    /** * Wersja planszy opisywana przez ten stan.
+     */
+    public final int version;
+
+    /** * Wersja planszy, do której odnoszą się zmiany, lub {@link #KEYFRAME} dla pełnego stanu.
+     */
+    public final int baseVersion;
+
+    /** * Zmienione pola w stanie różnicowym: {@code (x * size + y) << 3 | kod},
+     * gdzie kod 0-4 odpowiada znakom '.', 'B', 'W', 'b', 'w'.
+     */
+    public final int[] changes;
+
     /**
-     * Konstruuje nowy obiekt stanu gry.
+     * Żeton sesji gracza, pozwalający wznowić grę po zerwaniu połączenia;
+     * przesyłany w pierwszym stanie po dołączeniu do partii, w pozostałych równy 0.
+     */
+    public final long token;
+
+    /**
+     * Konstruuje nowy obiekt stanu gry dla planszy 19x19.
      *
      * @param board Tekstowy opis układu planszy.
      * @param message Komunikat statusu dla klienta.
      * @param yourTurn Określa, czy jest tura gracza, do którego trafi ten stan.
      */
     public GameState(String board, String message, boolean yourTurn) {
+        this(board, message, yourTurn, 19);
+    }
+
+    /**
+     * Konstruuje nowy obiekt stanu gry.
+     *
+     * @param board Tekstowy opis układu planszy.
+     * @param message Komunikat statusu dla klienta.
+     * @param yourTurn Określa, czy jest tura gracza, do którego trafi ten stan.
+     * @param size Rozmiar planszy.
+     */
+    public GameState(String board, String message, boolean yourTurn, int size) {
+        this(board, message, yourTurn, size, 0, 0);
+    }
+
+    /**
+     * Konstruuje nowy obiekt stanu gry wraz z szacowanym wynikiem.
+     *
+     * @param board Tekstowy opis układu planszy.
+     * @param message Komunikat statusu dla klienta.
+     * @param yourTurn Określa, czy jest tura gracza, do którego trafi ten stan.
+     * @param size Rozmiar planszy.
+     * @param blackEstimate Szacowany wynik czarnego gracza.
+     * @param whiteEstimate Szacowany wynik białego gracza.
+     */
+    public GameState(String board, String message, boolean yourTurn, int size,
+                     float blackEstimate, float whiteEstimate) {
+        this(board, message, yourTurn, size, blackEstimate, whiteEstimate, 0, KEYFRAME, null);
+    }
+
+    /**
+     * Konstruuje nowy obiekt stanu gry z numerem wersji planszy.
+     *
+     * @param board Tekstowy opis układu planszy (pełny stan) lub {@code null} (stan różnicowy).
+     * @param message Komunikat statusu dla klienta.
+     * @param yourTurn Określa, czy jest tura gracza, do którego trafi ten stan.
+     * @param size Rozmiar planszy.
+     * @param blackEstimate Szacowany wynik czarnego gracza.
+     * @param whiteEstimate Szacowany wynik białego gracza.
+     * @param version Wersja planszy.
+     * @param baseVersion Wersja, od której liczone są zmiany, lub {@link #KEYFRAME}.
+     * @param changes Zmienione pola (tylko w stanie różnicowym).
+     */
+    public GameState(String board, String message, boolean yourTurn, int size,
+                     float blackEstimate, float whiteEstimate, int version, int baseVersion, int[] changes) {
+        this(board, message, yourTurn, size, blackEstimate, whiteEstimate, version, baseVersion, changes, 0);
+    }
+
+    /**
+     * Konstruuje nowy obiekt stanu gry z numerem wersji planszy i żetonem sesji.
+     *
+     * @param board Tekstowy opis układu planszy (pełny stan) lub {@code null} (stan różnicowy).
+     * @param message Komunikat statusu dla klienta.
+     * @param yourTurn Określa, czy jest tura gracza, do którego trafi ten stan.
+     * @param size Rozmiar planszy.
+     * @param blackEstimate Szacowany wynik czarnego gracza.
+     * @param whiteEstimate Szacowany wynik białego gracza.
+     * @param version Wersja planszy.
+     * @param baseVersion Wersja, od której liczone są zmiany, lub {@link #KEYFRAME}.
+     * @param changes Zmienione pola (tylko w stanie różnicowym).
+     * @param token Żeton sesji odbiorcy lub 0.
+     */
+    public GameState(String board, String message, boolean yourTurn, int size, float blackEstimate,
+                     float whiteEstimate, int version, int baseVersion, int[] changes, long token) {
         this.board = board;
         this.message = message;
         this.yourTurn = yourTurn;
+        this.size = size;
+        this.blackEstimate = blackEstimate;
+        this.whiteEstimate = whiteEstimate;
+        this.version = version;
+        this.baseVersion = baseVersion;
+        this.changes = changes;
+        this.token = token;
+    }
+
+    /**
+     * Sprawdza, czy stan zawiera tylko zmiany względem wcześniejszej wersji.
+     *
+     * @return {@code true} dla stanu różnicowego.
+     */
+    public boolean isDelta() {
+        return baseVersion != KEYFRAME;
+    }
+
+    /**
+     * Nakłada zmiany ze stanu różnicowego na tekstową planszę w wersji {@link #baseVersion}.
+     * Dla pełnego stanu zwraca po prostu {@link #board}.
+     *
+     * @param previous Plansza klienta w wersji {@link #baseVersion}.
+     * @return Plansza w wersji {@link #version}.
+     */
+    public String applyTo(String previous) {
+        if (!isDelta()) return board;
+        char[] cells = previous.toCharArray();
+        for (int change : changes) {
+            int i = change >>> 3;
+            int x = i / size;
+            int y = i % size;
+            cells[y * (2 * size + 1) + 2 * x] = DeltaTracker.CODES.charAt(change & 7);
+        }
+        return new String(cells);
     }
 }
\ No newline at end of file
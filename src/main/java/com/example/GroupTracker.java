@@ -0,0 +1,380 @@
+package com.example;
+
+import java.util.Arrays;
+
+/**
+ * Śledzi przynależność kamieni do łańcuchów oraz ich oddechy przyrostowo,
+ * w miarę stawiania i zbijania kamieni na planszy.
+ * <p>
+ * Łańcuch jest cykliczną listą jednokierunkową pól ({@code next}), a każde pole
+ * wskazuje reprezentanta swojego łańcucha ({@code head}). Dla reprezentanta
+ * przechowywane są tzw. pseudo-oddechy: liczba par (kamień, sąsiednie puste pole)
+ * oraz suma i suma kwadratów indeksów tych pustych pól. Łańcuch nie ma oddechów
+ * dokładnie wtedy, gdy liczba pseudo-oddechów wynosi zero, a ma dokładnie jeden oddech
+ * (atari), gdy wszystkie pseudo-oddechy wskazują to samo pole, czyli gdy
+ * {@code suma^2 == liczba * sumaKwadratów}. Obie odpowiedzi są dostępne w czasie O(1).
+ */
+final class GroupTracker {
+
+    /** Znacznik pola bez łańcucha (puste pole). */
+    static final int NONE = -1;
+
+    /** Śledzona plansza. */
+    private final Board board;
+
+    /** Początki list sąsiadów (z {@link BoardGeometry#adjacentStart}). */
+    private final int[] adjacentStart;
+
+    /** Listy sąsiadów (z {@link BoardGeometry#adjacent}). */
+    private final int[] adjacent;
+
+    /** Reprezentant łańcucha dla każdego pola lub {@link #NONE}. */
+    private final int[] head;
+
+    /** Następne pole w cyklicznej liście łańcucha. */
+    private final int[] next;
+
+    /** Liczba kamieni łańcucha (ważne dla reprezentanta). */
+    private final int[] stones;
+
+    /** Liczba pseudo-oddechów łańcucha (ważne dla reprezentanta). */
+    private final int[] libs;
+
+    /** Suma indeksów pseudo-oddechów (ważne dla reprezentanta). */
+    private final long[] libSum;
+
+    /** Suma kwadratów indeksów pseudo-oddechów (ważne dla reprezentanta). */
+    private final long[] libSumSq;
+
+    /** Bufor roboczy na stos przeszukiwania. */
+    private final int[] stack;
+
+    /**
+     * Buduje strukturę łańcuchów dla bieżącego stanu planszy.
+     *
+     * @param board Plansza, której łańcuchy mają być śledzone.
+     */
+    GroupTracker(Board board) {
+        this.board = board;
+        BoardGeometry geometry = board.geometry();
+        this.adjacentStart = geometry.adjacentStart;
+        this.adjacent = geometry.adjacent;
+        int points = geometry.points;
+        this.head = new int[points];
+        this.next = new int[points];
+        this.stones = new int[points];
+        this.libs = new int[points];
+        this.libSum = new long[points];
+        this.libSumSq = new long[points];
+        this.stack = new int[points];
+
+        Arrays.fill(head, NONE);
+        for (int i = 0; i < points; i++) {
+            if (board.get(i) != Stone.EMPTY && head[i] == NONE) {
+                build(i);
+            }
+        }
+    }
+
+    /**
+     * Zwraca reprezentanta łańcucha zawierającego pole.
+     *
+     * @param i Indeks pola.
+     * @return Indeks reprezentanta lub {@link #NONE} dla pustego pola.
+     */
+    int head(int i) {
+        return head[i];
+    }
+
+    /**
+     * Zwraca następne pole w łańcuchu (lista cykliczna).
+     *
+     * @param i Indeks pola zajętego przez kamień.
+     * @return Indeks następnego kamienia tego samego łańcucha.
+     */
+    int next(int i) {
+        return next[i];
+    }
+
+    /**
+     * Zwraca liczbę kamieni w łańcuchu.
+     *
+     * @param h Reprezentant łańcucha.
+     * @return Liczba kamieni.
+     */
+    int stones(int h) {
+        return stones[h];
+    }
+
+    /**
+     * Sprawdza, czy łańcuch ma co najmniej jeden oddech.
+     *
+     * @param h Reprezentant łańcucha.
+     * @return {@code true}, jeśli łańcuch ma oddech.
+     */
+    boolean hasLiberty(int h) {
+        return libs[h] > 0;
+    }
+
+    /**
+     * Sprawdza, czy łańcuch ma dokładnie jeden oddech.
+     *
+     * @param h Reprezentant łańcucha.
+     * @return {@code true}, jeśli łańcuch jest w atari.
+     */
+    boolean inAtari(int h) {
+        return libs[h] > 0 && libSum[h] * libSum[h] == libs[h] * libSumSq[h];
+    }
+
+    /**
+     * Zwraca jedyny oddech łańcucha będącego w atari.
+     *
+     * @param h Reprezentant łańcucha w atari.
+     * @return Indeks pola oddechu.
+     */
+    int atariPoint(int h) {
+        return (int) (libSum[h] / libs[h]);
+    }
+
+    /**
+     * Stawia kamień na pustym polu i aktualizuje łańcuchy oraz oddechy.
+     * Nie zbija kamieni przeciwnika.
+     *
+     * @param i     Indeks pustego pola.
+     * @param color Kolor stawianego kamienia.
+     */
+    void place(int i, Stone color) {
+        board.set(i, color);
+        head[i] = i;
+        next[i] = i;
+        stones[i] = 1;
+        libs[i] = 0;
+        libSum[i] = 0;
+        libSumSq[i] = 0;
+
+        for (int k = adjacentStart[i], end = adjacentStart[i + 1]; k < end; k++) {
+            connect(i, adjacent[k], color);
+        }
+    }
+
+    /**
+     * Zdejmuje z planszy cały łańcuch i oddaje jego pola jako oddechy sąsiednim łańcuchom.
+     *
+     * @param h Reprezentant łańcucha.
+     * @return Liczba zdjętych kamieni.
+     */
+    int capture(int h) {
+        int count = 0;
+        int s = h;
+        do {
+            board.set(s, Stone.EMPTY);
+            head[s] = NONE;
+            count++;
+            s = next[s];
+        } while (s != h);
+
+        s = h;
+        do {
+            for (int k = adjacentStart[s], end = adjacentStart[s + 1]; k < end; k++) {
+                release(s, adjacent[k]);
+            }
+            s = next[s];
+        } while (s != h);
+        return count;
+    }
+
+    /**
+     * Uwzględnia dowolną zmianę pola wykonaną bezpośrednio na planszy
+     * (np. {@link Board#set(int, int, Stone)}). Postawienie kamienia jest
+     * obsługiwane przyrostowo, a zdjęcie pojedynczego kamienia odbudowuje
+     * tylko łańcuchy stykające się z tym polem.
+     *
+     * @param i   Indeks zmienionego pola.
+     * @param old Poprzednia zawartość pola.
+     * @param now Nowa zawartość pola (już zapisana na planszy).
+     */
+    void changed(int i, Stone old, Stone now) {
+        if (old == now) return;
+        if (old == Stone.EMPTY) {
+            place(i, now);
+            return;
+        }
+        rebuildAround(i);
+    }
+
+    /**
+     * Odbudowuje łańcuchy zawierające pole {@code i} lub z nim sąsiadujące.
+     * Koszt jest proporcjonalny do rozmiaru tych łańcuchów.
+     *
+     * @param i Indeks zmienionego pola.
+     */
+    void rebuildAround(int i) {
+        detachAround(i);
+        attachAround(i);
+    }
+
+    /**
+     * Cofa ostatni ruch zapisany w dzienniku: zdejmuje postawiony kamień,
+     * przywraca zbite kamienie i odbudowuje tylko łańcuchy stykające się ze zmienionymi polami.
+     *
+     * @param log Dziennik zmian planszy (ostatnia ramka zostaje usunięta).
+     */
+    void undo(UndoLog log) {
+        int placed = log.lastPlaced();
+        Stone capturedColor = log.lastColor().opposite();
+        int captured = log.lastCapturedCount();
+
+        detachAround(placed);
+        for (int k = 0; k < captured; k++) detachAround(log.lastCaptured(k));
+
+        board.set(placed, Stone.EMPTY);
+        for (int k = 0; k < captured; k++) board.set(log.lastCaptured(k), capturedColor);
+
+        attachAround(placed);
+        for (int k = 0; k < captured; k++) attachAround(log.lastCaptured(k));
+        log.pop();
+    }
+
+    /**
+     * Odłącza łańcuchy zawierające pole {@code i} i jego sąsiadów.
+     */
+    private void detachAround(int i) {
+        detach(i);
+        for (int k = adjacentStart[i], end = adjacentStart[i + 1]; k < end; k++) {
+            detach(adjacent[k]);
+        }
+    }
+
+    /**
+     * Buduje łańcuchy dla odłączonych kamieni na polu {@code i} i polach sąsiednich.
+     */
+    private void attachAround(int i) {
+        rebuildIfDetached(i);
+        for (int k = adjacentStart[i], end = adjacentStart[i + 1]; k < end; k++) {
+            rebuildIfDetached(adjacent[k]);
+        }
+    }
+
+    /**
+     * Obsługuje sąsiada nowo postawionego kamienia: odbiera mu oddech
+     * lub dopisuje pole jako oddech nowego kamienia, a łańcuchy tego samego koloru łączy.
+     */
+    private void connect(int i, int n, Stone color) {
+        Stone s = board.get(n);
+        if (s == Stone.EMPTY) {
+            addLib(head[i], n);
+            return;
+        }
+        removeLib(head[n], i);
+        if (s == color && head[n] != head[i]) {
+            merge(head[i], head[n]);
+        }
+    }
+
+    /**
+     * Dodaje zwolnione pole {@code s} jako oddech łańcucha na polu {@code n}, jeśli tam stoi kamień.
+     */
+    private void release(int s, int n) {
+        if (head[n] != NONE) addLib(head[n], s);
+    }
+
+    /**
+     * Łączy dwa łańcuchy; mniejszy przyjmuje reprezentanta większego.
+     */
+    private void merge(int a, int b) {
+        if (stones[a] < stones[b]) {
+            int t = a;
+            a = b;
+            b = t;
+        }
+        int s = b;
+        do {
+            head[s] = a;
+            s = next[s];
+        } while (s != b);
+
+        int t = next[a];
+        next[a] = next[b];
+        next[b] = t;
+
+        stones[a] += stones[b];
+        libs[a] += libs[b];
+        libSum[a] += libSum[b];
+        libSumSq[a] += libSumSq[b];
+    }
+
+    private void addLib(int h, int lib) {
+        libs[h]++;
+        libSum[h] += lib;
+        libSumSq[h] += (long) lib * lib;
+    }
+
+    private void removeLib(int h, int lib) {
+        libs[h]--;
+        libSum[h] -= lib;
+        libSumSq[h] -= (long) lib * lib;
+    }
+
+    /**
+     * Odłącza wszystkie pola łańcucha zawierającego pole {@code i} (ustawia {@link #NONE}).
+     * Każda część odłączonego łańcucha sąsiaduje ze zmienionym polem, więc zostanie
+     * odbudowana w {@link #attachAround(int)}.
+     */
+    private void detach(int i) {
+        int h = head[i];
+        if (h == NONE) return;
+        int s = h;
+        do {
+            head[s] = NONE;
+            s = next[s];
+        } while (s != h);
+    }
+
+    /**
+     * Buduje łańcuch od pola {@code i}, jeśli stoi tam kamień bez przypisanego łańcucha.
+     */
+    private void rebuildIfDetached(int i) {
+        if (board.get(i) != Stone.EMPTY && head[i] == NONE) {
+            build(i);
+        }
+    }
+
+    /**
+     * Przeszukuje łańcuch od pola {@code start} i wylicza jego pseudo-oddechy.
+     */
+    private void build(int start) {
+        Stone color = board.get(start);
+        int h = start;
+        head[h] = h;
+        next[h] = h;
+        stones[h] = 0;
+        libs[h] = 0;
+        libSum[h] = 0;
+        libSumSq[h] = 0;
+
+        int sp = 0;
+        stack[sp++] = start;
+        while (sp > 0) {
+            int p = stack[--sp];
+            stones[h]++;
+            if (p != h) {
+                next[p] = next[h];
+                next[h] = p;
+            }
+            for (int k = adjacentStart[p], end = adjacentStart[p + 1]; k < end; k++) {
+                sp = visit(h, adjacent[k], color, sp);
+            }
+        }
+    }
+
+    private int visit(int h, int n, Stone color, int sp) {
+        Stone s = board.get(n);
+        if (s == Stone.EMPTY) {
+            addLib(h, n);
+        } else if (s == color && head[n] == NONE) {
+            head[n] = h;
+            stack[sp++] = n;
+        }
+        return sp;
+    }
+}
@@ -0,0 +1,259 @@
+package com.example;
+
+import java.util.Arrays;
+
+/**
+ * Wstępnie rozpoznaje martwe kamienie na początku fazy punktacji.
+ * <p>
+ * Najpierw algorytm Bensona wyznacza łańcuchy bezwarunkowo żywe, czyli takie,
+ * których nie da się zbić nawet wtedy, gdy przeciwnik gra bez przerwy.
+ * Pozostałe łańcuchy ocenia szybka heurystyka: blok złożony z kamieni danego koloru
+ * i połączonych z nimi pustych pól musi zawierać co najmniej dwa pola „przestrzeni oczu”.
+ * Obszar pustych pól bloku jest do niej wliczany, gdy nie styka się z kamieniami przeciwnika
+ * albo gdy stykające się z nim kamienie przeciwnika są słabe (nie są bezwarunkowo żywe),
+ * a blok otacza obszar co najmniej tak szczelnie jak przeciwnik (dzięki temu żywy mur
+ * z martwym najeźdźcą w środku oraz obie grupy w seki pozostają żywe). Bloki bez przestrzeni
+ * oczu uznawane są za martwe. Wynik jest jedynie propozycją, którą gracze mogą poprawić.
+ */
+final class LifeAndDeath {
+
+    /** Najmniejsza przestrzeń oczu, przy której blok jest uznawany za żywy. */
+    private static final int MIN_EYE_SPACE = 2;
+
+    /** Znacznik pola nienależącego do żadnego obszaru. */
+    private static final int NONE = -1;
+
+    /**
+     * Wyznacza proponowany zbiór martwych kamieni obu kolorów.
+     *
+     * @param board Plansza na końcu partii.
+     * @return Zbiór bitowy martwych kamieni (bit {@code x * size + y}).
+     */
+    long[] deadStones(Board board) {
+        BoardGeometry geometry = board.geometry();
+        long[] dead = geometry.newSet();
+        long[] blackAlive = unconditionallyAlive(board, Stone.BLACK);
+        long[] whiteAlive = unconditionallyAlive(board, Stone.WHITE);
+        markDead(board, Stone.BLACK, blackAlive, whiteAlive, dead);
+        markDead(board, Stone.WHITE, whiteAlive, blackAlive, dead);
+        return dead;
+    }
+
+    /**
+     * Wyznacza kamienie danego koloru bezwarunkowo żywe według algorytmu Bensona.
+     * <p>
+     * Obszary to maksymalne spójne zbiory pól bez kamieni koloru {@code color}.
+     * Obszar jest witalny dla łańcucha, gdy każde jego puste pole jest oddechem tego łańcucha.
+     * Algorytm na przemian odrzuca łańcuchy mające mniej niż dwa witalne obszary
+     * oraz obszary sąsiadujące z odrzuconym łańcuchem, aż do ustalenia się zbiorów.
+     *
+     * @param board Plansza.
+     * @param color Kolor badanych łańcuchów.
+     * @return Zbiór bitowy kamieni bezwarunkowo żywych.
+     */
+    long[] unconditionallyAlive(Board board, Stone color) {
+        BoardGeometry geometry = board.geometry();
+        GroupTracker groups = board.groups();
+        int points = geometry.points;
+
+        int[] region = new int[points];
+        Arrays.fill(region, NONE);
+        int[] stack = new int[points];
+        int[] stamp = new int[points];
+        int[] hits = new int[points];
+        int[] touched = new int[points];
+        Arrays.fill(stamp, NONE);
+
+        int[][] neighbours = new int[points][];
+        int[][] vital = new int[points][];
+        int regions = 0;
+
+        for (int start = 0; start < points; start++) {
+            if (board.get(start) == color || region[start] != NONE) continue;
+
+            int r = regions++;
+            int empties = 0;
+            int touchedCount = 0;
+            int sp = 0;
+            stack[sp++] = start;
+            region[start] = r;
+            while (sp > 0) {
+                int p = stack[--sp];
+                boolean empty = board.get(p) == Stone.EMPTY;
+                if (empty) empties++;
+                for (int k = geometry.adjacentStart[p], end = geometry.adjacentStart[p + 1]; k < end; k++) {
+                    int n = geometry.adjacent[k];
+                    if (board.get(n) != color) {
+                        if (region[n] == NONE) {
+                            region[n] = r;
+                            stack[sp++] = n;
+                        }
+                        continue;
+                    }
+                    int h = groups.head(n);
+                    if (stamp[h] != r) {
+                        stamp[h] = r;
+                        hits[h] = 0;
+                        touched[touchedCount++] = h;
+                    }
+                    if (empty && !adjacentToChainBefore(geometry, groups, p, k, h)) {
+                        hits[h]++;
+                    }
+                }
+            }
+
+            neighbours[r] = Arrays.copyOf(touched, touchedCount);
+            int vitalCount = 0;
+            for (int k = 0; k < touchedCount; k++) {
+                if (hits[touched[k]] == empties) touched[vitalCount++] = touched[k];
+            }
+            vital[r] = Arrays.copyOf(touched, vitalCount);
+        }
+
+        boolean[] chainAlive = new boolean[points];
+        for (int i = 0; i < points; i++) {
+            if (board.get(i) == color) chainAlive[groups.head(i)] = true;
+        }
+        boolean[] regionAlive = new boolean[regions];
+        Arrays.fill(regionAlive, true);
+        int[] vitalRegions = new int[points];
+
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            Arrays.fill(vitalRegions, 0);
+            for (int r = 0; r < regions; r++) {
+                if (!regionAlive[r]) continue;
+                for (int h : vital[r]) vitalRegions[h]++;
+            }
+            for (int h = 0; h < points; h++) {
+                if (chainAlive[h] && vitalRegions[h] < 2) {
+                    chainAlive[h] = false;
+                    changed = true;
+                }
+            }
+            for (int r = 0; r < regions; r++) {
+                if (!regionAlive[r]) continue;
+                for (int h : neighbours[r]) {
+                    if (!chainAlive[h]) {
+                        regionAlive[r] = false;
+                        changed = true;
+                        break;
+                    }
+                }
+            }
+        }
+
+        long[] alive = geometry.newSet();
+        for (int i = 0; i < points; i++) {
+            if (board.get(i) == color && chainAlive[groups.head(i)]) {
+                alive[i >>> 6] |= 1L << i;
+            }
+        }
+        return alive;
+    }
+
+    /**
+     * Sprawdza, czy łańcuch {@code h} sąsiaduje z polem {@code p} przez sąsiada
+     * wymienionego wcześniej niż pozycja {@code k} listy sąsiedztwa (aby nie liczyć pola dwukrotnie).
+     */
+    private static boolean adjacentToChainBefore(BoardGeometry geometry, GroupTracker groups, int p, int k, int h) {
+        for (int j = geometry.adjacentStart[p]; j < k; j++) {
+            if (groups.head(geometry.adjacent[j]) == h) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Oznacza jako martwe łańcuchy koloru {@code color}, które nie są bezwarunkowo żywe
+     * i leżą w bloku o przestrzeni oczu mniejszej niż {@link #MIN_EYE_SPACE}.
+     * Zbiór {@code opponentAlive} to bezwarunkowo żywe kamienie przeciwnika.
+     */
+    private void markDead(Board board, Stone color, long[] alive, long[] opponentAlive, long[] dead) {
+        BoardGeometry geometry = board.geometry();
+        int points = geometry.points;
+        Stone opponent = color.opposite();
+
+        boolean[] inBlock = new boolean[points];
+        boolean[] seenEmpty = new boolean[points];
+        int[] block = new int[points];
+        int[] stack = new int[points];
+
+        for (int start = 0; start < points; start++) {
+            if (board.get(start) != color || inBlock[start] || (alive[start >>> 6] & 1L << start) != 0) continue;
+
+            int size = 0;
+            int sp = 0;
+            stack[sp++] = start;
+            inBlock[start] = true;
+            while (sp > 0) {
+                int p = stack[--sp];
+                block[size++] = p;
+                for (int k = geometry.adjacentStart[p], end = geometry.adjacentStart[p + 1]; k < end; k++) {
+                    int n = geometry.adjacent[k];
+                    if (!inBlock[n] && board.get(n) != opponent) {
+                        inBlock[n] = true;
+                        stack[sp++] = n;
+                    }
+                }
+            }
+
+            if (eyeSpace(board, geometry, block, size, color, opponentAlive, seenEmpty, stack) >= MIN_EYE_SPACE) {
+                continue;
+            }
+
+            for (int k = 0; k < size; k++) {
+                int p = block[k];
+                if (board.get(p) == color && (alive[p >>> 6] & 1L << p) == 0) {
+                    dead[p >>> 6] |= 1L << p;
+                }
+            }
+        }
+    }
+
+    /**
+     * Sumuje rozmiary obszarów pustych pól bloku koloru {@code color}, które nie stykają się
+     * z kamieniami przeciwnika lub stykają się wyłącznie z jego słabymi kamieniami, a przy tym
+     * co najmniej tyle pól obszaru sąsiaduje z kolorem {@code color}, co z przeciwnikiem.
+     */
+    private static int eyeSpace(Board board, BoardGeometry geometry, int[] block, int size, Stone color,
+                                long[] opponentAlive, boolean[] seen, int[] stack) {
+        Stone opponent = color.opposite();
+        int total = 0;
+        for (int b = 0; b < size; b++) {
+            int start = block[b];
+            if (board.get(start) != Stone.EMPTY || seen[start]) continue;
+
+            int area = 0;
+            int nextToOwn = 0;
+            int nextToOpponent = 0;
+            boolean touchesStrong = false;
+            int sp = 0;
+            stack[sp++] = start;
+            seen[start] = true;
+            while (sp > 0) {
+                int p = stack[--sp];
+                area++;
+                boolean own = false;
+                boolean other = false;
+                for (int k = geometry.adjacentStart[p], end = geometry.adjacentStart[p + 1]; k < end; k++) {
+                    int n = geometry.adjacent[k];
+                    Stone s = board.get(n);
+                    if (s == color) {
+                        own = true;
+                    } else if (s == opponent) {
+                        other = true;
+                        if ((opponentAlive[n >>> 6] & 1L << n) != 0) touchesStrong = true;
+                    } else if (!seen[n]) {
+                        seen[n] = true;
+                        stack[sp++] = n;
+                    }
+                }
+                if (own) nextToOwn++;
+                if (other) nextToOpponent++;
+            }
+            if (nextToOpponent == 0 || !touchesStrong && nextToOwn >= nextToOpponent) total += area;
+        }
+        return total;
+    }
+}
@@ -0,0 +1,334 @@
+package com.example;
+
+import java.io.IOException;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Poczekalnia serwera: kojarzy łączących się graczy w pary i przechowuje trwające sesje.
+ * <p>
+ * Gracze są łączeni w kolejności przybycia; pierwszy z pary gra czarnymi.
+ * Aktywne sesje trzymane są we współbieżnym rejestrze, z którego każda sesja
+ * usuwa się sama po zakończeniu gry, dzięki czemu jeden proces serwera
+ * może obsługiwać dowolnie wiele partii jednocześnie. Żetony sesji graczy trwających partii
+ * pozwalają rozłączonemu graczowi wrócić do swojej sesji. Poczekalnia z {@link GameJournal}
+ * zapisuje w nim nowe partie i przy tworzeniu odtwarza partie przerwane awarią serwera.
+ */
+public class Lobby {
+
+    /** Rozmiar planszy nowych partii. */
+    private final int size;
+
+    /** Komi nowych partii. */
+    private final float komi;
+
+    /** Zasady punktacji nowych partii. */
+    private final ScoringRules scoring;
+
+    /** Wykonawca pętli odbioru ruchów wszystkich graczy. */
+    private final Executor connections;
+
+    /** Aktywne sesje według identyfikatora. */
+    private final Map<Long, GameSession> sessions = new ConcurrentHashMap<>();
+
+    /** Dziennik partii lub {@code null}. */
+    private final GameJournal journal;
+
+    /** Archiwum zakończonych partii lub {@code null}. */
+    private volatile GameArchive archive;
+
+    /** Sesje trwających partii według żetonów ich graczy. */
+    private final Map<Long, GameSession> tokens = new ConcurrentHashMap<>();
+
+    /** Czas oczekiwania na powrót rozłączonego gracza w nowych partiach lub -1 (domyślny sesji). */
+    private volatile long reconnectGraceMillis = -1;
+
+    /** Generator identyfikatorów sesji. */
+    private final AtomicLong nextId = new AtomicLong();
+
+    /** Gracz oczekujący na przeciwnika lub {@code null}. */
+    private ClientConnection waiting;
+
+    /**
+     * Tworzy poczekalnię zakładającą partie o podanych ustawieniach;
+     * każde połączenie obsługiwane jest w osobnym wątku wirtualnym.
+     *
+     * @param size    Rozmiar planszy (9, 13 lub 19).
+     * @param komi    Punkty dodatkowe białego gracza.
+     * @param scoring Zasady punktacji.
+     */
+    public Lobby(int size, float komi, ScoringRules scoring) {
+        this(size, komi, scoring, Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("client-", 1).factory()));
+    }
+
+    /**
+     * Tworzy poczekalnię zakładającą partie o podanych ustawieniach.
+     *
+     * @param size        Rozmiar planszy (9, 13 lub 19).
+     * @param komi        Punkty dodatkowe białego gracza.
+     * @param scoring     Zasady punktacji.
+     * @param connections Wykonawca pętli odbioru ruchów graczy.
+     */
+    public Lobby(int size, float komi, ScoringRules scoring, Executor connections) {
+        this(size, komi, scoring, connections, null);
+    }
+
+    /**
+     * Tworzy poczekalnię zapisującą partie w dzienniku i odtwarza niezakończone partie z dziennika.
+     * Odtworzone partie czekają na powrót graczy z ich żetonami sesji.
+     *
+     * @param size        Rozmiar planszy (9, 13 lub 19).
+     * @param komi        Punkty dodatkowe białego gracza.
+     * @param scoring     Zasady punktacji.
+     * @param connections Wykonawca pętli odbioru ruchów graczy.
+     * @param journal     Dziennik partii lub {@code null}.
+     */
+    public Lobby(int size, float komi, ScoringRules scoring, Executor connections, GameJournal journal) {
+        this(size, komi, scoring, connections, journal, null);
+    }
+
+    /**
+     * Tworzy poczekalnię zapisującą partie w dzienniku i archiwum, po czym odtwarza niezakończone
+     * partie z dziennika. Partia, która podczas odtwarzania okaże się zakończona (dziennik nie zdążył
+     * zapisać jej końca), trafia do archiwum.
+     *
+     * @param size        Rozmiar planszy (9, 13 lub 19).
+     * @param komi        Punkty dodatkowe białego gracza.
+     * @param scoring     Zasady punktacji.
+     * @param connections Wykonawca pętli odbioru ruchów graczy.
+     * @param journal     Dziennik partii lub {@code null}.
+     * @param archive     Archiwum zakończonych partii lub {@code null}.
+     */
+    public Lobby(int size, float komi, ScoringRules scoring, Executor connections, GameJournal journal,
+                 GameArchive archive) {
+        if (!GameSession.isSupportedSize(size)) {
+            throw new IllegalArgumentException("Unsupported board size: " + size);
+        }
+        this.size = size;
+        this.komi = komi;
+        this.scoring = scoring;
+        this.connections = connections;
+        this.journal = journal;
+        this.archive = archive;
+        if (journal != null) recover();
+    }
+
+    /**
+     * Dodaje gracza połączonego blokującym gniazdem do poczekalni (widza do obserwowanej partii,
+     * a gracza wznawiającego grę do jego sesji). Uzgodnienie protokołu odbywa się w zadaniu
+     * wykonawcy połączeń, więc klient, który połączy się i nic nie wyśle, nie wstrzymuje
+     * przyjmowania kolejnych graczy.
+     *
+     * @param socket Gniazdo nowego gracza.
+     */
+    public void join(Socket socket) {
+        connections.execute(() -> open(socket));
+    }
+
+    /**
+     * Uzgadnia protokół z klientem blokującego gniazda i kieruje go do poczekalni, obserwowanej
+     * partii lub wznawianej sesji. Gniazdo klienta, którego nie udało się obsłużyć, jest zamykane.
+     *
+     * @param socket Gniazdo nowego gracza.
+     */
+    private void open(Socket socket) {
+        try {
+            ClientHandler handler = new ClientHandler(socket);
+            if (handler.resumeToken() != 0) {
+                if (!resume(handler.resumeToken(), handler.resumeVersion(), handler)) {
+                    throw new IOException("Unknown session token");
+                }
+            } else if (handler.watchedGame() < 0) {
+                handler.awaitOpponent(this, connections);
+                join(handler);
+            } else if (!watch(handler.watchedGame(), handler)) {
+                throw new IOException("No such game: " + handler.watchedGame());
+            }
+        } catch (IOException e) {
+            System.err.println("Could not open connection: " + e.getMessage());
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+                // gniazdo i tak jest porzucane
+            }
+        }
+    }
+
+    /**
+     * Dodaje gracza do poczekalni. Jeśli ktoś już czeka, obaj rozpoczynają nową partię.
+     *
+     * @param connection Połączenie nowego gracza.
+     */
+    public void join(ClientConnection connection) {
+        ClientConnection opponent;
+        synchronized (this) {
+            if (waiting == null || !waiting.isOpen()) {
+                waiting = connection;
+                return;
+            }
+            opponent = waiting;
+            waiting = null;
+        }
+        startSession(opponent, connection);
+    }
+
+    /**
+     * Usuwa z poczekalni gracza, który rozłączył się, czekając na przeciwnika.
+     *
+     * @param connection Połączenie gracza.
+     */
+    public synchronized void leave(ClientConnection connection) {
+        if (waiting == connection) waiting = null;
+    }
+
+    /**
+     * Dołącza widza do trwającej partii.
+     *
+     * @param id        Identyfikator partii.
+     * @param spectator Połączenie widza.
+     * @return {@code false}, jeśli partia nie istnieje albo już się zakończyła.
+     */
+    public boolean watch(long id, ClientConnection spectator) {
+        GameSession session = sessions.get(id);
+        if (session == null) return false;
+        session.addSpectator(spectator);
+        return true;
+    }
+
+    /**
+     * Przyłącza gracza, który wrócił po zerwaniu połączenia, do jego trwającej partii.
+     *
+     * @param token      Żeton sesji otrzymany na początku partii.
+     * @param version    Wersja planszy, którą ma klient, lub -1.
+     * @param connection Nowe połączenie gracza.
+     * @return {@code false}, jeśli żeton jest nieznany albo partia już się zakończyła.
+     */
+    public boolean resume(long token, int version, ClientConnection connection) {
+        GameSession session = tokens.get(token);
+        if (session == null) return false;
+        session.reconnect(token, version, connection);
+        return true;
+    }
+
+    /**
+     * Ustawia archiwum, do którego trafiają zakończone partie (także trwające już sesje).
+     *
+     * @param archive Archiwum partii.
+     */
+    public void setArchive(GameArchive archive) {
+        this.archive = archive;
+        for (GameSession session : sessions.values()) session.setArchive(archive);
+    }
+
+    /**
+     * Ustawia czas oczekiwania na powrót rozłączonego gracza w nowych partiach.
+     *
+     * @param millis Czas w milisekundach; 0 kończy grę od razu po rozłączeniu.
+     */
+    void setReconnectGrace(long millis) {
+        this.reconnectGraceMillis = millis;
+    }
+
+    /**
+     * Sprawdza, czy w poczekalni jest gracz oczekujący na przeciwnika.
+     *
+     * @return {@code true}, jeśli następny dołączający gracz rozpocznie partię.
+     */
+    synchronized boolean hasWaitingPlayer() {
+        return waiting != null && waiting.isOpen();
+    }
+
+    /**
+     * Zwraca liczbę trwających partii.
+     *
+     * @return Liczba sesji w rejestrze.
+     */
+    public int activeSessions() {
+        return sessions.size();
+    }
+
+    /**
+     * Zwraca trwającą sesję o podanym identyfikatorze.
+     *
+     * @param id Identyfikator sesji.
+     * @return Sesja lub {@code null}, jeśli nie istnieje albo już się zakończyła.
+     */
+    public GameSession session(long id) {
+        return sessions.get(id);
+    }
+
+    /**
+     * Tworzy sesję dla pary graczy, rejestruje ją i uruchamia.
+     */
+    private void startSession(ClientConnection blackPlayer, ClientConnection whitePlayer) {
+        long id = nextId.incrementAndGet();
+        GameSession session = new GameSession(blackPlayer, whitePlayer, size, komi, scoring);
+        if (reconnectGraceMillis >= 0) session.setReconnectGrace(reconnectGraceMillis);
+        if (journal != null) {
+            journal.started(id, size, komi, scoring, session.token(Stone.BLACK), session.token(Stone.WHITE));
+            session.setJournal(journal, id);
+        }
+        register(id, session);
+        System.out.println("Game " + id + " started");
+        session.start(connections);
+    }
+
+    /**
+     * Odtwarza z dziennika partie, które nie zakończyły się przed awarią serwera,
+     * i rejestruje je pod dawnymi identyfikatorami. Partie zakończone w trakcie odtwarzania
+     * zapisują swój koniec w dzienniku i archiwum, ale nie są rejestrowane. Partie zapisane
+     * niekompletnie (bez żetonów graczy) są w dzienniku oznaczane jako zakończone.
+     */
+    private void recover() {
+        Map<Long, List<GameJournal.Record>> games = new LinkedHashMap<>();
+        for (GameJournal.Record record : journal.recovered()) {
+            games.computeIfAbsent(record.game, g -> new ArrayList<>()).add(record);
+            if (record.game > nextId.get()) nextId.set(record.game);
+        }
+        for (Map.Entry<Long, List<GameJournal.Record>> game : games.entrySet()) {
+            List<GameJournal.Record> records = game.getValue();
+            if (records.size() < 3) {
+                journal.abandon(game.getKey());
+                continue;
+            }
+            GameJournal.Record start = records.get(0);
+            GameSession session = new GameSession(start.x, Float.intBitsToFloat((int) start.value),
+                    ScoringRules.values()[start.y], records.get(1).value, records.get(2).value);
+            session.setJournal(journal, game.getKey());
+            if (archive != null) session.setArchive(archive);
+            for (GameJournal.Record record : records.subList(3, records.size())) session.replay(record);
+            if (session.isGameOver()) {
+                System.out.println("Game " + game.getKey() + " finished during recovery");
+                continue;
+            }
+            if (reconnectGraceMillis >= 0) session.setReconnectGrace(reconnectGraceMillis);
+            register(game.getKey(), session);
+            System.out.println("Game " + game.getKey() + " recovered (" + (records.size() - 3) + " moves)");
+            session.resume(connections);
+        }
+    }
+
+    /**
+     * Rejestruje sesję pod identyfikatorem i żetonami graczy; zakończona gra usuwa ją z rejestru.
+     */
+    private void register(long id, GameSession session) {
+        long blackToken = session.token(Stone.BLACK);
+        long whiteToken = session.token(Stone.WHITE);
+        if (archive != null) session.setArchive(archive);
+        sessions.put(id, session);
+        tokens.put(blackToken, session);
+        tokens.put(whiteToken, session);
+        session.setFinishListener(() -> {
+            sessions.remove(id);
+            tokens.remove(blackToken);
+            tokens.remove(whiteToken);
+        });
+    }
+}
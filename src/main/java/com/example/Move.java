@@ -5,10 +5,11 @@ import java.io.Serializable;
 /**
  * Reprezentuje akcję wykonaną przez gracza i przesłaną do serwera.
  * Klasa implementuje {@link Serializable}, aby umożliwić przesyłanie danych przez sieć.
- * Obiekt ten może reprezentować trzy rodzaje akcji:
+ * Obiekt ten może reprezentować cztery rodzaje akcji:
  * Postawienie kamienia (użycie pól x, y)
  * Akcję specjalną (pass, resign)
  * Potwierdzenie zakończenia fazy punktacji (doneScoring)
+ * Prośbę o ponowne przesłanie pełnej planszy (resync)
  *
  */
 public class Move implements Serializable {
@@ -20,6 +21,9 @@ public class Move implements Serializable {
     public boolean resign;
     public boolean doneScoring;
 
+    /** Prośba klienta o pełny stan planszy, gdy jego kopia rozminęła się z serwerem. */
+    public boolean resync;
+
     /**
      * Konstruktor pomocniczy dla standardowych akcji gry.
      * Domyślnie ustawia {@code doneScoring} na {@code false}.
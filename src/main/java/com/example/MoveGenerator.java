@@ -0,0 +1,136 @@
+package com.example;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Wyznacza zbiór wszystkich dozwolonych ruchów danego koloru bez kopiowania planszy.
+ * Wynik jest zbiorem bitowym w układzie planszy: bit o numerze {@code x * size + y}
+ * oznacza, że kamień można postawić na polu (x, y).
+ * <p>
+ * Większość pól rozstrzygana jest słowami bitowymi (puste pole z pustym sąsiadem
+ * jest zawsze dozwolone), a pozostałe w czasie O(1) na podstawie oddechów łańcuchów
+ * ze struktury {@link GroupTracker}. Informacja o zbiciach jest liczona raz na łańcuch
+ * w atari, a nie osobno dla każdego kandydata.
+ */
+public class MoveGenerator {
+
+    /**
+     * Wyznacza dozwolone ruchy z uwzględnieniem samobójstwa, bez historii pozycji (superko).
+     *
+     * @param board Aktualna plansza.
+     * @param stone Kolor gracza wykonującego ruch.
+     * @return Zbiór bitowy dozwolonych pól.
+     */
+    public long[] legalMoves(Board board, Stone stone) {
+        return legalMoves(board, stone, null);
+    }
+
+    /**
+     * Wyznacza dozwolone ruchy z uwzględnieniem samobójstwa oraz pozycyjnej reguły superko.
+     *
+     * @param board   Aktualna plansza.
+     * @param stone   Kolor gracza wykonującego ruch.
+     * @param history Historia pozycji partii lub {@code null}, jeśli superko ma być pominięte.
+     * @return Zbiór bitowy dozwolonych pól.
+     */
+    long[] legalMoves(Board board, Stone stone, PositionHistory history) {
+        BoardGeometry geometry = board.geometry();
+        GroupTracker groups = board.groups();
+        Stone opponent = stone.opposite();
+
+        /**
+         * Puste pola z co najmniej jednym pustym sąsiadem.
+         */
+        long[] empty = geometry.newSet();
+        board.empty(empty);
+        long[] legal = geometry.newSet();
+        geometry.neighbours(empty, legal);
+        for (int w = 0; w < legal.length; w++) legal[w] &= empty[w];
+
+        /**
+         * Jedyne oddechy łańcuchów przeciwnika w atari są dozwolone (zbicie).
+         * Przy sprawdzaniu superko zapamiętywany jest też skrót zbijanych kamieni.
+         */
+        long[] captureKey = history != null ? new long[geometry.points] : null;
+        long[] opponentBits = board.bits(opponent);
+        for (int w = 0; w < opponentBits.length; w++) {
+            for (long bits = opponentBits[w]; bits != 0; bits &= bits - 1) {
+                int i = (w << 6) + Long.numberOfTrailingZeros(bits);
+                if (groups.head(i) != i || !groups.inAtari(i)) continue;
+
+                int p = groups.atariPoint(i);
+                legal[p >>> 6] |= 1L << p;
+                if (captureKey != null) {
+                    int s = i;
+                    do {
+                        captureKey[p] ^= geometry.zobrist(opponent, s);
+                        s = groups.next(s);
+                    } while (s != i);
+                }
+            }
+        }
+
+        /**
+         * Pozostałe puste pola są dozwolone, jeśli łączą się z własnym łańcuchem,
+         * który ma jeszcze inny oddech.
+         */
+        for (int w = 0; w < empty.length; w++) {
+            for (long bits = empty[w] & ~legal[w]; bits != 0; bits &= bits - 1) {
+                int p = (w << 6) + Long.numberOfTrailingZeros(bits);
+                for (int k = geometry.adjacentStart[p], end = geometry.adjacentStart[p + 1]; k < end; k++) {
+                    int n = geometry.adjacent[k];
+                    if (board.get(n) == stone && !groups.inAtari(groups.head(n))) {
+                        legal[w] |= 1L << p;
+                        break;
+                    }
+                }
+            }
+        }
+
+        if (history != null) {
+            removeRepetitions(board, stone, history, legal, captureKey);
+        }
+        return legal;
+    }
+
+    /**
+     * Usuwa ruchy powtarzające wcześniejszą pozycję. Skrót pozycji po ruchu jest wyliczany
+     * bez wykonywania ruchu; ruch jest wykonywany i cofany tylko wtedy, gdy skrót występuje w historii.
+     */
+    private void removeRepetitions(Board board, Stone stone, PositionHistory history,
+                                   long[] legal, long[] captureKey) {
+        BoardGeometry geometry = board.geometry();
+        RulesEngine rules = null;
+        for (int w = 0; w < legal.length; w++) {
+            for (long bits = legal[w]; bits != 0; bits &= bits - 1) {
+                int p = (w << 6) + Long.numberOfTrailingZeros(bits);
+                long key = board.zobrist() ^ geometry.zobrist(stone, p) ^ captureKey[p];
+                if (!history.mayContain(key)) continue;
+
+                if (rules == null) rules = new RulesEngine();
+                rules.play(board, p / geometry.size, p % geometry.size, stone);
+                boolean repeated = history.contains(board);
+                rules.undo(board);
+                if (repeated) legal[w] &= ~(1L << p);
+            }
+        }
+    }
+
+    /**
+     * Zamienia zbiór bitowy pól na listę punktów (na potrzeby publicznego API i interfejsu).
+     *
+     * @param set  Zbiór bitowy w układzie planszy.
+     * @param size Rozmiar planszy.
+     * @return Lista punktów w kolejności rosnących indeksów.
+     */
+    public static List<Point> toPoints(long[] set, int size) {
+        List<Point> points = new ArrayList<>(BoardGeometry.count(set));
+        for (int w = 0; w < set.length; w++) {
+            for (long bits = set[w]; bits != 0; bits &= bits - 1) {
+                points.add(Point.of((w << 6) + Long.numberOfTrailingZeros(bits), size));
+            }
+        }
+        return points;
+    }
+}
@@ -0,0 +1,363 @@
+package com.example;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Połączenie z graczem obsługiwane przez wątek selektora {@link NioServer}.
+ * Pierwsze bajty od klienta wybierają protokół: powitanie {@link WireProtocol} (ramki binarne)
+ * lub nagłówek serializacji Javy (ramki {@link Frames}); dopiero wtedy gracz trafia do poczekalni.
+ * Odebrane bajty trafiają do bezpośredniego bufora, z którego wydzielane są pełne ramki;
+ * wysyłane stany czekają w {@link OutboundQueue} (gdzie niewysłane stany są scalane) i są
+ * przenoszone do kolejki ramek dopiero wtedy, gdy selektor zapisał poprzednie ramki w całości.
+ * Metody {@link #read()} i {@link #flush()} wywołuje wyłącznie wątek selektora.
+ */
+final class NioConnection implements ClientConnection {
+
+    /** Protokół jeszcze nieuzgodniony. */
+    private static final int UNKNOWN = 0;
+
+    /** Ramki binarne {@link WireProtocol}. */
+    private static final int BINARY = 1;
+
+    /** Ramki z serializacją Javy {@link Frames}. */
+    private static final int SERIALIZED = 2;
+
+    /** Kanał połączenia (tryb nieblokujący). */
+    private final SocketChannel channel;
+
+    /** Wątek selektora obsługujący to połączenie. */
+    private final NioServer.Worker worker;
+
+    /** Poczekalnia, do której połączenie trafia po uzgodnieniu protokołu. */
+    private final Lobby lobby;
+
+    /** Uzgodniony protokół. */
+    private volatile int protocol = UNKNOWN;
+
+    /** Bufor odczytu; mieści co najmniej jedną pełną ramkę klienta. */
+    private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(Frames.HEADER + Frames.MAX_CLIENT_FRAME);
+
+    /** Ramki w trakcie wysyłania (powitanie i stany pobrane z {@link #pending}). */
+    private final Queue<ByteBuffer> outbound = new ConcurrentLinkedQueue<>();
+
+    /** Stany gry oczekujące na wysłanie. */
+    private final OutboundQueue pending = new OutboundQueue();
+
+    /** Czy zlecono już wątkowi selektora opróżnienie kolejki. */
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+
+    /** Czy połączenie zostało zamknięte. */
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    /** Klucz rejestracji w selektorze (używany tylko w wątku selektora). */
+    private SelectionKey key;
+
+    /** Sesja gry, do której trafiają ruchy, lub {@code null} w poczekalni. */
+    private volatile GameSession session;
+
+    /** Kolor kamieni gracza. */
+    private volatile Stone stone;
+
+    NioConnection(SocketChannel channel, NioServer.Worker worker, Lobby lobby) {
+        this.channel = channel;
+        this.worker = worker;
+        this.lobby = lobby;
+    }
+
+    /**
+     * Rejestruje kanał w selektorze; wywoływane w wątku selektora.
+     *
+     * @param selector Selektor wątku obsługującego połączenie.
+     */
+    void register(Selector selector) {
+        try {
+            key = channel.register(selector, SelectionKey.OP_READ, this);
+            flush();
+        } catch (ClosedChannelException e) {
+            disconnect();
+        }
+    }
+
+    /**
+     * Przypisuje połączenie do sesji; od tej chwili odebrane ruchy trafiają do niej.
+     *
+     * @param session Sesja gry.
+     * @param stone   Kolor kamieni gracza.
+     */
+    @Override
+    public void attach(GameSession session, Stone stone) {
+        this.session = session;
+        this.stone = stone;
+    }
+
+    /**
+     * Nie wymaga osobnego wątku: odbiór prowadzi selektor od chwili przyjęcia połączenia.
+     *
+     * @param executor Pomijany.
+     */
+    @Override
+    public void start(Executor executor) {
+    }
+
+    /**
+     * Zwraca kolor kamienia przypisany do tego gracza.
+     *
+     * @return Kolor gracza lub {@code null} przed przypisaniem do sesji.
+     */
+    @Override
+    public Stone getStone() {
+        return stone;
+    }
+
+    /**
+     * Zleca wątkowi selektora wysłanie współdzielonej ramki stanu. Nie blokuje wywołującego.
+     *
+     * @param state Stan gry przygotowany do wysłania.
+     */
+    @Override
+    public void sendState(EncodedState state) {
+        if (closed.get()) return;
+        if (!pending.offer(state)) {
+            System.out.println("Client too slow, disconnecting: " + stone);
+            worker.execute(this::disconnect);
+            return;
+        }
+        scheduleFlush();
+    }
+
+    /**
+     * Dodaje gotową ramkę do kolejki i zleca jej wysłanie wątkowi selektora.
+     */
+    private void enqueue(ByteBuffer frame) {
+        outbound.add(frame);
+        scheduleFlush();
+    }
+
+    private void scheduleFlush() {
+        if (flushScheduled.compareAndSet(false, true)) {
+            worker.execute(this::flush);
+        }
+    }
+
+    /**
+     * Sprawdza, czy kanał jest otwarty (rozłączenie klienta wykrywa selektor).
+     *
+     * @return {@code true}, dopóki kanał jest otwarty.
+     */
+    @Override
+    public boolean isOpen() {
+        return channel.isOpen();
+    }
+
+    /**
+     * Zwraca adres zdalnego klienta.
+     *
+     * @return Adres gniazda klienta.
+     */
+    @Override
+    public String address() {
+        return String.valueOf(channel.socket().getRemoteSocketAddress());
+    }
+
+    /** Zamyka kanał bez powiadamiania sesji. */
+    @Override
+    public void close() {
+        closed.set(true);
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+            // kanał i tak jest porzucany
+        }
+    }
+
+    /** Zamyka kanał, gdy selektor wyśle stany czekające w kolejce. */
+    @Override
+    public void finish() {
+        pending.finish();
+        scheduleFlush();
+    }
+
+    /**
+     * Odczytuje dostępne bajty i przekazuje sesji wszystkie kompletne ramki z ruchami.
+     */
+    void read() {
+        try {
+            if (channel.read(readBuffer) < 0) {
+                disconnect();
+                return;
+            }
+            readBuffer.flip();
+            if (protocol == UNKNOWN && !negotiate()) {
+                readBuffer.compact();
+                return;
+            }
+            boolean binary = protocol == BINARY;
+            int header = binary ? WireProtocol.HEADER : Frames.HEADER;
+            while (readBuffer.remaining() >= header) {
+                int at = readBuffer.position();
+                int length = binary ? readBuffer.getShort(at) & 0xFFFF : readBuffer.getInt(at);
+                if (length <= 0 || length > Frames.MAX_CLIENT_FRAME) {
+                    throw new IOException("Invalid frame length: " + length);
+                }
+                if (readBuffer.remaining() < header + length) break;
+                readBuffer.position(at + header);
+                byte[] payload = new byte[length];
+                readBuffer.get(payload);
+                deliver(binary ? WireProtocol.decode(payload) : Frames.decode(payload));
+            }
+            readBuffer.compact();
+        } catch (IOException | ClassNotFoundException e) {
+            disconnect();
+        }
+    }
+
+    /**
+     * Rozpoznaje protokół z pierwszych bajtów klienta, odpowiada na powitanie binarne
+     * i dodaje gracza do poczekalni (widza do obserwowanej partii, a wracającego gracza do jego sesji).
+     *
+     * @return {@code false}, jeśli odebrano za mało bajtów, by rozpoznać protokół.
+     * @throws IOException Jeśli klient nie mówi żadnym ze znanych protokołów.
+     */
+    private boolean negotiate() throws IOException {
+        if (readBuffer.remaining() < 2) return false;
+        int at = readBuffer.position();
+        int b0 = readBuffer.get(at) & 0xFF;
+        int b1 = readBuffer.get(at + 1) & 0xFF;
+
+        if (b0 == WireProtocol.MAGIC_0 && b1 == WireProtocol.WATCH_MAGIC) {
+            if (readBuffer.remaining() < WireProtocol.WATCH_HELLO) return false;
+            int version = readBuffer.get(at + 2) & 0xFF;
+            if (version < WireProtocol.VERSION) throw new IOException("Unsupported protocol version: " + version);
+            long game = readBuffer.getLong(at + 3);
+            readBuffer.position(at + WireProtocol.WATCH_HELLO);
+            protocol = BINARY;
+            enqueue(ByteBuffer.wrap(WireProtocol.hello()));
+            if (!lobby.watch(game, this)) throw new IOException("No such game: " + game);
+            return true;
+        } else if (b0 == WireProtocol.MAGIC_0 && b1 == WireProtocol.RESUME_MAGIC) {
+            if (readBuffer.remaining() < WireProtocol.RESUME_HELLO) return false;
+            int version = readBuffer.get(at + 2) & 0xFF;
+            if (version < WireProtocol.VERSION) throw new IOException("Unsupported protocol version: " + version);
+            long token = readBuffer.getLong(at + 3);
+            int boardVersion = readBuffer.getInt(at + 11);
+            readBuffer.position(at + WireProtocol.RESUME_HELLO);
+            protocol = BINARY;
+            enqueue(ByteBuffer.wrap(WireProtocol.hello()));
+            if (!lobby.resume(token, boardVersion, this)) throw new IOException("Unknown session token");
+            return true;
+        } else if (b0 == WireProtocol.MAGIC_0 && b1 == WireProtocol.MAGIC_1) {
+            if (readBuffer.remaining() < 3) return false;
+            int version = readBuffer.get(at + 2) & 0xFF;
+            if (version < WireProtocol.VERSION) throw new IOException("Unsupported protocol version: " + version);
+            readBuffer.position(at + 3);
+            protocol = BINARY;
+            enqueue(ByteBuffer.wrap(WireProtocol.hello()));
+        } else if ((b0 << 8 | b1) == WireProtocol.SERIALIZATION_MAGIC) {
+            if (readBuffer.remaining() < Frames.STREAM_HEADER.length) return false;
+            readBuffer.position(at + Frames.STREAM_HEADER.length);
+            protocol = SERIALIZED;
+        } else {
+            throw new IOException("Unknown protocol");
+        }
+        lobby.join(this);
+        return true;
+    }
+
+    /**
+     * Zapisuje oczekujące ramki przez bufor pośredni selektora. Jeśli kanał nie przyjmie
+     * wszystkiego, połączenie czeka na gotowość do zapisu ({@code OP_WRITE}); nowe stany
+     * czekają wtedy w {@link #pending}, gdzie są scalane. Po opróżnieniu kolejki zamykanej
+     * metodą {@link #finish()} kanał jest zamykany.
+     */
+    void flush() {
+        flushScheduled.set(false);
+        if (key == null || !key.isValid()) return;
+        ByteBuffer staging = worker.writeBuffer;
+        try {
+            while (!outbound.isEmpty() || refill()) {
+                staging.clear();
+                for (ByteBuffer frame : outbound) {
+                    if (!staging.hasRemaining()) break;
+                    ByteBuffer chunk = frame.duplicate();
+                    if (chunk.remaining() > staging.remaining()) {
+                        chunk.limit(chunk.position() + staging.remaining());
+                    }
+                    staging.put(chunk);
+                }
+                staging.flip();
+                consume(channel.write(staging));
+                if (staging.hasRemaining()) {
+                    key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                    return;
+                }
+            }
+            key.interestOps(SelectionKey.OP_READ);
+            if (pending.drained()) close();
+        } catch (IOException | UncheckedIOException e) {
+            disconnect();
+        }
+    }
+
+    /**
+     * Przenosi oczekujące stany do kolejki ramek, kodując je w uzgodnionym protokole.
+     *
+     * @return {@code true}, jeśli pojawiły się ramki do wysłania.
+     */
+    private boolean refill() {
+        boolean added = false;
+        for (EncodedState state = pending.poll(); state != null; state = pending.poll()) {
+            outbound.add(protocol == BINARY ? state.binaryFrame() : state.serializedFrame());
+            added = true;
+        }
+        return added;
+    }
+
+    /**
+     * Usuwa z kolejki {@code written} bajtów, które kanał już przyjął.
+     */
+    private void consume(int written) {
+        while (written > 0) {
+            ByteBuffer head = outbound.peek();
+            int n = Math.min(written, head.remaining());
+            head.position(head.position() + n);
+            written -= n;
+            if (!head.hasRemaining()) outbound.poll();
+        }
+    }
+
+    private void deliver(Object message) {
+        GameSession s = session;
+        if (s != null && message instanceof Move) {
+            s.handleMove((Move) message, this);
+        }
+    }
+
+    /**
+     * Zamyka połączenie po błędzie lub rozłączeniu klienta i powiadamia sesję
+     * (albo usuwa gracza czekającego na przeciwnika z poczekalni).
+     */
+    private void disconnect() {
+        if (closed.getAndSet(true)) return;
+        pending.close();
+        if (key != null) key.cancel();
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+            // kanał i tak jest porzucany
+        }
+        System.out.println("Client disconnected: " + stone);
+        GameSession s = session;
+        if (s != null) s.disconnected(this);
+        else lobby.leave(this);
+    }
+}
@@ -0,0 +1,172 @@
+package com.example;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Nieblokujący transport serwera oparty na kanałach {@code java.nio}.
+ * <p>
+ * Połączenia przyjmowane są w wątku wywołującym {@link #serve()} i rozdzielane po kolei
+ * między niewielką pulę wątków selektorów. Każdy selektor obsługuje odczyt i zapis
+ * wszystkich swoich połączeń, więc liczba wątków nie zależy od liczby graczy.
+ * Połączenie trafia do poczekalni po rozpoznaniu protokołu z pierwszych bajtów klienta.
+ * Wiadomości przesyłane są w ramkach {@link WireProtocol} lub {@link Frames}; odczyt odbywa się do bezpośredniego
+ * bufora połączenia, a zapis przez bezpośredni bufor pośredni wspólny dla selektora.
+ */
+public class NioServer implements Closeable {
+
+    /** Poczekalnia, do której trafiają nowe połączenia. */
+    private final Lobby lobby;
+
+    /** Wątki selektorów. */
+    private final Worker[] workers;
+
+    /** Kanał nasłuchujący. */
+    private ServerSocketChannel server;
+
+    /**
+     * Tworzy serwer z podaną liczbą wątków selektorów.
+     *
+     * @param lobby     Poczekalnia kojarząca graczy w pary.
+     * @param selectors Liczba wątków selektorów (co najmniej 1).
+     * @throws IOException Jeśli nie można otworzyć selektora.
+     */
+    public NioServer(Lobby lobby, int selectors) throws IOException {
+        if (selectors < 1) {
+            throw new IllegalArgumentException("At least one selector thread is required");
+        }
+        this.lobby = lobby;
+        this.workers = new Worker[selectors];
+        for (int k = 0; k < selectors; k++) {
+            workers[k] = new Worker("selector-" + k);
+        }
+    }
+
+    /**
+     * Otwiera kanał nasłuchujący i uruchamia wątki selektorów.
+     *
+     * @param port Numer portu (0 oznacza dowolny wolny port).
+     * @return Numer portu, na którym serwer nasłuchuje.
+     * @throws IOException Jeśli nie można otworzyć portu.
+     */
+    public int bind(int port) throws IOException {
+        server = ServerSocketChannel.open();
+        server.bind(new InetSocketAddress(port));
+        for (Worker w : workers) w.thread.start();
+        return ((InetSocketAddress) server.getLocalAddress()).getPort();
+    }
+
+    /**
+     * Przyjmuje połączenia do czasu zamknięcia serwera i przekazuje je do poczekalni.
+     */
+    public void serve() {
+        int next = 0;
+        while (server.isOpen()) {
+            SocketChannel channel;
+            try {
+                channel = server.accept();
+                channel.configureBlocking(false);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            } catch (ClosedChannelException e) {
+                return;
+            } catch (IOException e) {
+                System.err.println("Accept failed: " + e.getMessage());
+                continue;
+            }
+            Worker worker = workers[next++ % workers.length];
+            NioConnection connection = new NioConnection(channel, worker, lobby);
+            worker.execute(() -> connection.register(worker.selector));
+        }
+    }
+
+    /**
+     * Zamyka kanał nasłuchujący i wszystkie selektory wraz z ich połączeniami.
+     *
+     * @throws IOException Jeśli zamknięcie kanału się nie powiedzie.
+     */
+    @Override
+    public void close() throws IOException {
+        if (server != null) server.close();
+        for (Worker w : workers) w.close();
+    }
+
+    /**
+     * Wątek selektora obsługujący odczyt i zapis przydzielonych mu połączeń.
+     * Zmiany rejestracji i zainteresowań zlecane z innych wątków trafiają do kolejki zadań
+     * wykonywanej w wątku selektora.
+     */
+    static final class Worker implements Runnable {
+
+        /** Selektor połączeń tego wątku. */
+        final Selector selector;
+
+        /** Wątek selektora. */
+        final Thread thread;
+
+        /** Bezpośredni bufor pośredni dla zapisów wszystkich połączeń selektora. */
+        final ByteBuffer writeBuffer = ByteBuffer.allocateDirect(Frames.HEADER + Frames.MAX_SERVER_FRAME);
+
+        /** Zadania do wykonania w wątku selektora. */
+        private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+
+        Worker(String name) throws IOException {
+            this.selector = Selector.open();
+            this.thread = Thread.ofPlatform().name(name).daemon().unstarted(this);
+        }
+
+        /**
+         * Zleca zadanie do wykonania w wątku selektora i budzi selektor.
+         *
+         * @param task Zadanie.
+         */
+        void execute(Runnable task) {
+            tasks.add(task);
+            selector.wakeup();
+        }
+
+        /** Zamyka selektor i wszystkie jego kanały. */
+        void close() {
+            execute(() -> {
+                for (SelectionKey key : selector.keys()) {
+                    ((NioConnection) key.attachment()).close();
+                }
+                try {
+                    selector.close();
+                } catch (IOException ignored) {
+                    // selektor i tak jest porzucany
+                }
+            });
+        }
+
+        @Override
+        public void run() {
+            while (selector.isOpen()) {
+                try {
+                    selector.select();
+                } catch (IOException | ClosedSelectorException e) {
+                    return;
+                }
+                for (Runnable task = tasks.poll(); task != null; task = tasks.poll()) {
+                    task.run();
+                }
+                if (!selector.isOpen()) return;
+
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    NioConnection connection = (NioConnection) key.attachment();
+                    if (key.isValid() && key.isReadable()) connection.read();
+                    if (key.isValid() && key.isWritable()) connection.flush();
+                }
+            }
+        }
+    }
+}
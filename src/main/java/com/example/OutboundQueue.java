@@ -0,0 +1,231 @@
+package com.example;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Ograniczona kolejka stanów gry oczekujących na wysłanie do jednego klienta.
+ * <p>
+ * Sesja tylko dodaje stany i nigdy nie czeka na sieć; kolejkę opróżnia osobny pisarz
+ * (wątek połączenia blokującego lub selektor). Nowy stan zastępuje stany jeszcze niewysłane:
+ * pełna plansza usuwa wszystkie poprzednie, a zmiany liczone od wersji ostatniego stanu w kolejce
+ * są z nim scalane. Wolny klient dostaje więc jeden aktualny stan zamiast wszystkich pośrednich.
+ * Jeśli najstarszy niewysłany stan czeka dłużej niż dopuszczalne opóźnienie albo kolejka jest pełna,
+ * {@link #offer(EncodedState)} zwraca {@code false} i połączenie powinno zostać zamknięte.
+ * Domyślne limity ustalają właściwości systemowe {@code go.outboundCapacity}
+ * i {@code go.maxLagMillis}.
+ */
+final class OutboundQueue {
+
+    /** Domyślna największa liczba stanów, których nie udało się scalić. */
+    static final int CAPACITY = Integer.getInteger("go.outboundCapacity", 32);
+
+    /** Domyślne dopuszczalne opóźnienie klienta w milisekundach. */
+    static final long MAX_LAG_MILLIS = Long.getLong("go.maxLagMillis", 10_000);
+
+    /** Stan w kolejce wraz z chwilą, od której klient na niego czeka. */
+    private static final class Entry {
+        final EncodedState state;
+        final long since;
+
+        Entry(EncodedState state, long since) {
+            this.state = state;
+            this.since = since;
+        }
+    }
+
+    /** Blokada kolejki (krótka, nigdy nie obejmuje operacji sieciowych). */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /** Sygnał dla pisarza czekającego na stan. */
+    private final Condition notEmpty = lock.newCondition();
+
+    /** Stany oczekujące na wysłanie, od najstarszego. */
+    private final ArrayDeque<Entry> entries = new ArrayDeque<>();
+
+    /** Największa liczba niescalonych stanów. */
+    private final int capacity;
+
+    /** Dopuszczalny czas oczekiwania najstarszego stanu w nanosekundach. */
+    private final long maxLagNanos;
+
+    /** Czy kolejka została zamknięta. */
+    private boolean closed;
+
+    /** Czy kolejka przyjmuje już tylko odbiór stanów, które w niej czekają. */
+    private boolean finishing;
+
+    /** Tworzy kolejkę z domyślnymi limitami. */
+    OutboundQueue() {
+        this(CAPACITY, TimeUnit.MILLISECONDS.toNanos(MAX_LAG_MILLIS));
+    }
+
+    /**
+     * Tworzy kolejkę z podanymi limitami.
+     *
+     * @param capacity    Największa liczba niescalonych stanów.
+     * @param maxLagNanos Dopuszczalny czas oczekiwania najstarszego stanu.
+     */
+    OutboundQueue(int capacity, long maxLagNanos) {
+        this.capacity = capacity;
+        this.maxLagNanos = maxLagNanos;
+    }
+
+    /**
+     * Dodaje stan do kolejki, scalając go z niewysłanymi stanami. Nigdy nie blokuje.
+     *
+     * @param state Stan do wysłania.
+     * @return {@code false}, jeśli klient przekroczył dopuszczalne opóźnienie lub pojemność kolejki.
+     */
+    boolean offer(EncodedState state) {
+        long now = System.nanoTime();
+        lock.lock();
+        try {
+            if (closed || finishing) return true;
+            Entry head = entries.peekFirst();
+            if (head != null && now - head.since > maxLagNanos) return false;
+
+            GameState next = state.state();
+            Entry tail = entries.peekLast();
+            if (!next.isDelta() && head != null) {
+                long token = next.token;
+                for (Entry entry : entries) {
+                    if (token == 0) token = entry.state.state().token;
+                }
+                if (token != next.token) state = new EncodedState(withToken(next, token));
+                entries.clear();
+                entries.add(new Entry(state, head.since));
+            } else if (tail != null && next.baseVersion == tail.state.state().version) {
+                entries.pollLast();
+                entries.add(new Entry(new EncodedState(merge(tail.state.state(), next)), tail.since));
+            } else if (entries.size() >= capacity) {
+                return false;
+            } else {
+                entries.add(new Entry(state, now));
+            }
+            notEmpty.signal();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Pobiera najstarszy stan bez czekania.
+     *
+     * @return Stan lub {@code null}, jeśli kolejka jest pusta.
+     */
+    EncodedState poll() {
+        lock.lock();
+        try {
+            Entry head = entries.pollFirst();
+            return head == null ? null : head.state;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Pobiera najstarszy stan, czekając, aż się pojawi.
+     *
+     * @return Stan lub {@code null} po zamknięciu kolejki albo po opróżnieniu kolejki
+     *         zamykanej metodą {@link #finish()}.
+     * @throws InterruptedException Jeśli wątek pisarza został przerwany.
+     */
+    EncodedState take() throws InterruptedException {
+        lock.lock();
+        try {
+            while (entries.isEmpty() && !closed && !finishing) notEmpty.await();
+            Entry head = entries.pollFirst();
+            return head == null ? null : head.state;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Zwraca liczbę stanów oczekujących na wysłanie.
+     *
+     * @return Długość kolejki.
+     */
+    int size() {
+        lock.lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Zamyka kolejkę po opróżnieniu: oczekujące stany zostaną jeszcze wysłane, nowe są pomijane,
+     * a pisarz dostaje {@code null}, gdy kolejka się opróżni.
+     */
+    void finish() {
+        lock.lock();
+        try {
+            finishing = true;
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Sprawdza, czy kolejka zamykana metodą {@link #finish()} została już opróżniona.
+     *
+     * @return {@code true}, jeśli nie ma już czego wysłać przed zamknięciem połączenia.
+     */
+    boolean drained() {
+        lock.lock();
+        try {
+            return finishing && entries.isEmpty();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Zamyka kolejkę: porzuca oczekujące stany i budzi pisarza. */
+    void close() {
+        lock.lock();
+        try {
+            closed = true;
+            entries.clear();
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Łączy stan z następującym po nim stanem różnicowym w jeden stan
+     * o komunikacie, turze i wyniku nowszego (żeton sesji pochodzi ze starszego).
+     */
+    private static GameState merge(GameState older, GameState newer) {
+        if (!older.isDelta()) {
+            return new GameState(newer.applyTo(older.board), newer.message, newer.yourTurn, newer.size,
+                    newer.blackEstimate, newer.whiteEstimate, newer.version, GameState.KEYFRAME, null, older.token);
+        }
+        boolean[] replaced = new boolean[newer.size * newer.size];
+        for (int change : newer.changes) replaced[change >>> 3] = true;
+        int[] changes = new int[older.changes.length + newer.changes.length];
+        int count = 0;
+        for (int change : older.changes) {
+            if (!replaced[change >>> 3]) changes[count++] = change;
+        }
+        for (int change : newer.changes) changes[count++] = change;
+        return new GameState(null, newer.message, newer.yourTurn, newer.size, newer.blackEstimate,
+                newer.whiteEstimate, newer.version, older.baseVersion, Arrays.copyOf(changes, count));
+    }
+
+    /**
+     * Dołącza do pełnego stanu żeton sesji z zastąpionego stanu, aby klient go nie utracił.
+     */
+    private static GameState withToken(GameState state, long token) {
+        return new GameState(state.board, state.message, state.yourTurn, state.size, state.blackEstimate,
+                state.whiteEstimate, state.version, GameState.KEYFRAME, null, token);
+    }
+}
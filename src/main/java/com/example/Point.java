@@ -1,19 +1,19 @@
 package com.example;
 
-import java.util.Objects;
-
 /**
  * Reprezentuje pojedynczy punkt.
- * Klasa przechowuje współrzędne całkowitoliczbowe X oraz Y.
+ * Klasa przechowuje współrzędne całkowitoliczbowe X oraz Y i służy wyłącznie
+ * jako typ brzegowy publicznego API. Silniki gry posługują się spakowanym
+ * indeksem pola {@code x * size + y} (zob. {@link #index(int)} i {@link #of(int, int)}).
  * Dzięki nadpisaniu metod {@link #equals(Object)} oraz {@link #hashCode()},
  * obiekty tej klasy mogą być poprawnie używane jako klucze w mapach lub
  * elementy w zbiorach (np. {@link java.util.HashSet}).
  *
  */
-public class Point {
+public final class Point {
 
-    public int x;
-    public int y;
+    public final int x;
+    public final int y;
 
     /**
      * Tworzy nowy punkt o określonych współrzędnych.
@@ -26,6 +26,27 @@ public class Point {
         this.y = y;
     }
 
+    /**
+     * Tworzy punkt ze spakowanego indeksu pola.
+     *
+     * @param index Indeks pola {@code x * size + y}.
+     * @param size  Rozmiar planszy.
+     * @return Punkt o odpowiadających współrzędnych.
+     */
+    public static Point of(int index, int size) {
+        return new Point(index / size, index % size);
+    }
+
+    /**
+     * Zwraca spakowany indeks pola dla planszy o podanym rozmiarze.
+     *
+     * @param size Rozmiar planszy.
+     * @return Indeks pola {@code x * size + y}.
+     */
+    public int index(int size) {
+        return x * size + y;
+    }
+
     /**
      * Porównuje ten punkt z innym obiektem.
      * Punkty są uznawane za równe, jeśli obie ich współrzędne (x oraz y) są identyczne.
@@ -44,11 +65,22 @@ public class Point {
     /**
      * Generuje kod skrótu (hash code) dla punktu na podstawie jego współrzędnych.
      * Spójność z metodą {@link #equals(Object)} zapewnia poprawne działanie w kolekcjach typu hash.
+     * Wartość liczona jest bez tworzenia tablicy argumentów i opakowań {@code Integer}.
      *
      * @return Wartość hash wyliczona dla pary współrzędnych (x, y).
      */
     @Override
     public int hashCode() {
-        return Objects.hash(x, y);
+        return 31 * x + y;
+    }
+
+    /**
+     * Zwraca tekstowy opis punktu.
+     *
+     * @return Współrzędne w postaci {@code (x, y)}.
+     */
+    @Override
+    public String toString() {
+        return "(" + x + ", " + y + ")";
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,126 @@
+package com.example;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Historia pozycji jednej partii na potrzeby pozycyjnej reguły superko.
+ * Pozycje są indeksowane 64-bitowymi skrótami Zobrista w tablicy z adresowaniem
+ * otwartym, więc sprawdzenie powtórzenia kosztuje O(1) i nie wymaga kopii planszy.
+ * Każda pozycja jest też zapamiętana jako niezmienna migawka {@link BoardSnapshot}
+ * (współdzieląca niezmienione zbiory bitowe z poprzednią), co pozwala porównać planszę
+ * dokładnie, gdy skrót się powtórzy, i udostępnić pełną historię partii.
+ */
+final class PositionHistory {
+
+    /** Skróty zapamiętanych pozycji. */
+    private long[] keys = new long[64];
+
+    /** Numer pozycji (powiększony o 1) dla każdego slotu; 0 oznacza wolny slot. */
+    private int[] plies = new int[64];
+
+    /** Liczba zajętych slotów. */
+    private int count;
+
+    /** Kolejne pozycje partii, począwszy od pustej planszy. */
+    private final List<BoardSnapshot> snapshots = new ArrayList<>();
+
+    /**
+     * Tworzy historię zaczynającą się od pustej planszy.
+     *
+     * @param size Rozmiar planszy.
+     */
+    PositionHistory(int size) {
+        add(new Board(size));
+    }
+
+    /**
+     * Sprawdza, czy układ planszy wystąpił już wcześniej w partii.
+     *
+     * @param board Plansza po wykonaniu ruchu.
+     * @return {@code true}, jeśli pozycja się powtarza.
+     */
+    boolean contains(Board board) {
+        long key = board.zobrist();
+        int mask = keys.length - 1;
+        for (int slot = mix(key) & mask; plies[slot] != 0; slot = (slot + 1) & mask) {
+            if (keys[slot] == key && snapshots.get(plies[slot] - 1).matches(board)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Sprawdza wyłącznie skrót pozycji, bez dokładnego porównania planszy.
+     * Wynik {@code false} jest pewny; wynik {@code true} wymaga potwierdzenia
+     * metodą {@link #contains(Board)}.
+     *
+     * @param key Skrót Zobrista pozycji.
+     * @return {@code true}, jeśli w historii jest pozycja o takim skrócie.
+     */
+    boolean mayContain(long key) {
+        int mask = keys.length - 1;
+        for (int slot = mix(key) & mask; plies[slot] != 0; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Zapamiętuje pozycję powstałą po zaakceptowanym ruchu.
+     *
+     * @param board Plansza po wykonaniu ruchu.
+     * @return Migawka zapisanej pozycji.
+     */
+    BoardSnapshot add(Board board) {
+        BoardSnapshot snapshot = board.snapshot(snapshots.isEmpty() ? null : last());
+        snapshots.add(snapshot);
+        insert(snapshot.zobrist(), snapshots.size() - 1);
+        return snapshot;
+    }
+
+    /**
+     * Zwraca ostatnią zapamiętaną pozycję.
+     *
+     * @return Migawka bieżącej pozycji.
+     */
+    BoardSnapshot last() {
+        return snapshots.get(snapshots.size() - 1);
+    }
+
+    /**
+     * Zwraca niemodyfikowalny widok wszystkich pozycji partii.
+     *
+     * @return Lista migawek, od pustej planszy do bieżącej pozycji.
+     */
+    List<BoardSnapshot> snapshots() {
+        return Collections.unmodifiableList(snapshots);
+    }
+
+    private void insert(long key, int ply) {
+        if (2 * (count + 1) > keys.length) grow();
+        int mask = keys.length - 1;
+        int slot = mix(key) & mask;
+        while (plies[slot] != 0) slot = (slot + 1) & mask;
+        keys[slot] = key;
+        plies[slot] = ply + 1;
+        count++;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        int[] oldPlies = plies;
+        keys = new long[oldKeys.length * 2];
+        plies = new int[oldPlies.length * 2];
+        count = 0;
+        for (int k = 0; k < oldKeys.length; k++) {
+            if (oldPlies[k] != 0) insert(oldKeys[k], oldPlies[k] - 1);
+        }
+    }
+
+    private static int mix(long key) {
+        return (int) (key ^ (key >>> 32));
+    }
+}
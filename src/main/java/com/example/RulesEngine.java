@@ -1,7 +1,5 @@
 package com.example;
 
-import java.util.*;
-
 /**
  * Odpowiada za sprawdzanie poprawności ruchów
  * oraz egzekwowanie reguł gry Go.
@@ -14,179 +12,129 @@ public class RulesEngine {
      * @param board   Aktualna plansza.
      * @param move    Ruch wykonywany przez gracza.
      * @param stone   Kamień gracza wykonującego ruch.
-     * @param session Sesja gry (obsługa reguły Ko i jeńców).
+     * @param session Sesja gry (historia pozycji dla reguły superko i jeńcy).
      * @return true, jeśli ruch jest poprawny, w przeciwnym razie false.
      */
     public boolean applyMove(Board board, Move move, Stone stone, GameSession session) {
-        int x = move.x;
-        int y = move.y;
-
-        /**
-         * Sprawdzenie, czy ruch mieści się w granicach planszy
-         * oraz czy pole jest puste.
-         */
-        if (!board.inBounds(x, y)) return false;
-        if (board.get(x, y) != Stone.EMPTY) return false;
-
-        /**
-         * Zapisanie stanu planszy przed ruchem
-         * (potrzebne do cofnięcia ruchu i reguły Ko).
-         */
-        Board beforeMove = board.copy();
-
-        /**
-         * Postawienie kamienia na planszy.
-         */
-        board.set(x, y, stone);
-
-        /**
-         * Licznik zbitych kamieni przeciwnika.
-         */
-        int captured = 0;
-
-        /**
-         * Sprawdzenie i ewentualne zbicie łańcuchów przeciwnika.
-         */
-        for (int[] n : neighbors(x, y)) {
-            int nx = n[0], ny = n[1];
-            if (!board.inBounds(nx, ny)) continue;
-
-            if (board.get(nx, ny) == stone.opposite()) {
-                Set<Point> chain = collectChain(board, nx, ny);
-                if (!hasLiberty(board, chain)) {
-                    removeChain(board, chain);
-                    captured += chain.size();
-                }
-            }
-        }
 
         /**
-         * Sprawdzenie samobójstwa kamienia
-         * (dozwolone tylko, jeśli coś zostało zbite).
+         * Wykonanie ruchu (granice planszy, zajęte pole, samobójstwo).
          */
-        Set<Point> myChain = collectChain(board, x, y);
-        if (!hasLiberty(board, myChain) && captured == 0) {
-            restoreBoard(board, beforeMove);
-            return false;
-        }
+        int captured = play(board, move.x, move.y, stone);
+        if (captured < 0) return false;
 
         /**
-         * Sprawdzenie reguły Ko.
+         * Sprawdzenie pozycyjnej reguły superko (obejmuje zwykłe Ko):
+         * układ planszy po ruchu nie może powtórzyć żadnej wcześniejszej pozycji.
          */
-        Board prev = session.getPreviousBoard();
-        if (prev != null && board.equals(prev)) {
-            restoreBoard(board, beforeMove);
+        if (session.repeatsPosition(board)) {
+            undo(board);
             return false;
         }
 
         /**
-         * Zapamiętanie poprzedniego stanu planszy
-         * do sprawdzania reguły Ko w następnym ruchu.
+         * Zapamiętanie nowej pozycji w historii partii.
          */
-        session.setPreviousBoard(beforeMove);
+        session.recordPosition(board);
 
         /**
-         * Dodanie jeńców do odpowiedniego gracza.
+         * Dodanie jeńców do odpowiedniego gracza (tylko przy punktacji terytorialnej).
          */
-        for (int i = 0; i < captured; i++) {
-            session.addPrisoner(stone);
+        if (session.countsPrisoners()) {
+            for (int k = 0; k < captured; k++) {
+                session.addPrisoner(stone);
+            }
         }
 
         return true;
     }
 
     /**
-     * Zbiera cały łańcuch połączonych kamieni tego samego koloru.
+     * Stawia kamień i zbija łańcuchy przeciwnika pozbawione oddechów.
+     * Zmienione pola są zapisywane w dzienniku planszy, dzięki czemu ruch można
+     * cofnąć metodą {@link #undo(Board)}. Metoda nie sprawdza reguły superko.
      *
      * @param board Plansza gry.
-     * @param x     Współrzędna początkowa X.
-     * @param y     Współrzędna początkowa Y.
-     * @return Zbiór punktów należących do jednego łańcucha.
+     * @param x     Współrzędna X ruchu.
+     * @param y     Współrzędna Y ruchu.
+     * @param stone Kolor stawianego kamienia.
+     * @return Liczba zbitych kamieni lub -1, jeśli ruch jest niedozwolony
+     * (poza planszą, na zajętym polu lub samobójczy).
      */
-    private Set<Point> collectChain(Board board, int x, int y) {
-        Stone color = board.get(x, y);
-        Set<Point> chain = new HashSet<>();
-        Queue<Point> q = new LinkedList<>();
+    public int play(Board board, int x, int y, Stone stone) {
 
-        Point start = new Point(x, y);
-        chain.add(start);
-        q.add(start);
+        /**
+         * Sprawdzenie, czy ruch mieści się w granicach planszy
+         * oraz czy pole jest puste.
+         */
+        if (!board.inBounds(x, y)) return -1;
+        if (board.get(x, y) != Stone.EMPTY) return -1;
 
-        while (!q.isEmpty()) {
-            Point p = q.poll();
-            for (int[] n : neighbors(p.x, p.y)) {
-                int nx = n[0], ny = n[1];
-                Point np = new Point(nx, ny);
+        /**
+         * Postawienie kamienia na planszy; łańcuchy i oddechy
+         * są aktualizowane przyrostowo, a pole trafia do dziennika.
+         */
+        GroupTracker groups = board.groups();
+        UndoLog log = board.undoLog();
+        BoardGeometry geometry = board.geometry();
+        int i = geometry.index(x, y);
+        log.begin(i, stone);
+        groups.place(i, stone);
 
-                if (board.inBounds(nx, ny)
-                        && board.get(nx, ny) == color
-                        && !chain.contains(np)) {
-                    chain.add(np);
-                    q.add(np);
-                }
-            }
+        /**
+         * Sprawdzenie i ewentualne zbicie łańcuchów przeciwnika.
+         */
+        int captured = 0;
+        for (int k = geometry.adjacentStart[i], end = geometry.adjacentStart[i + 1]; k < end; k++) {
+            captured += captureIfDead(board, groups, log, geometry.adjacent[k], stone.opposite());
         }
-        return chain;
-    }
 
-    /**
-     * Sprawdza, czy dany łańcuch ma przynajmniej jeden oddech.
-     *
-     * @param board Plansza gry.
-     * @param chain Łańcuch kamieni.
-     * @return true, jeśli łańcuch ma oddech.
-     */
-    private boolean hasLiberty(Board board, Set<Point> chain) {
-        for (Point p : chain) {
-            for (int[] n : neighbors(p.x, p.y)) {
-                int nx = n[0], ny = n[1];
-                if (board.inBounds(nx, ny)
-                        && board.get(nx, ny) == Stone.EMPTY) {
-                    return true;
-                }
-            }
+        /**
+         * Sprawdzenie samobójstwa kamienia
+         * (dozwolone tylko, jeśli coś zostało zbite).
+         */
+        if (captured == 0 && !groups.hasLiberty(groups.head(i))) {
+            groups.undo(log);
+            return -1;
         }
-        return false;
+        return captured;
     }
 
     /**
-     * Usuwa wszystkie kamienie należące do danego łańcucha.
+     * Cofa ostatni ruch wykonany metodą {@link #play(Board, int, int, Stone)}:
+     * zdejmuje postawiony kamień i przywraca zbite kamienie.
+     * Wynik jest poprawny, o ile plansza nie była w międzyczasie zmieniana w inny sposób.
      *
      * @param board Plansza gry.
-     * @param chain Łańcuch do usunięcia.
+     * @return {@code true}, jeśli cofnięto ruch; {@code false}, gdy dziennik jest pusty.
      */
-    private void removeChain(Board board, Set<Point> chain) {
-        for (Point p : chain) {
-            board.set(p.x, p.y, Stone.EMPTY);
-        }
-    }
-
-    /**
-     * Zwraca listę sąsiadów danego pola
-     * (góra, dół, lewo, prawo).
-     *
-     * @param x Współrzędna X.
-     * @param y Współrzędna Y.
-     * @return Lista sąsiednich pól.
-     */
-    private List<int[]> neighbors(int x, int y) {
-        List<int[]> list = new ArrayList<>();
-        list.add(new int[]{x + 1, y});
-        list.add(new int[]{x - 1, y});
-        list.add(new int[]{x, y + 1});
-        list.add(new int[]{x, y - 1});
-        return list;
+    public boolean undo(Board board) {
+        UndoLog log = board.undoLog();
+        if (log.depth() == 0) return false;
+        board.groups().undo(log);
+        return true;
     }
 
     /**
-     * Przywraca planszę do wcześniejszego stanu.
+     * Zbija łańcuch przeciwnika na wskazanym polu, jeśli stracił ostatni oddech.
      *
-     * @param board    Plansza do przywrócenia.
-     * @param snapshot Poprzedni zapis planszy.
+     * @param board    Plansza gry.
+     * @param groups   Struktura łańcuchów planszy.
+     * @param log      Dziennik zmian, do którego trafiają zbite pola.
+     * @param n        Indeks pola sąsiadującego z postawionym kamieniem.
+     * @param opponent Kolor przeciwnika.
+     * @return Liczba zbitych kamieni.
      */
-    private void restoreBoard(Board board, Board snapshot) {
-        for (int x = 0; x < board.getSize(); x++)
-            for (int y = 0; y < board.getSize(); y++)
-                board.set(x, y, snapshot.get(x, y));
+    private int captureIfDead(Board board, GroupTracker groups, UndoLog log, int n, Stone opponent) {
+        if (board.get(n) != opponent) return 0;
+        int h = groups.head(n);
+        if (groups.hasLiberty(h)) return 0;
+
+        int s = h;
+        do {
+            log.captured(s);
+            s = groups.next(s);
+        } while (s != h);
+        return groups.capture(h);
     }
-}
\ No newline at end of file
+}
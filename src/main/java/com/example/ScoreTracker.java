@@ -0,0 +1,225 @@
+package com.example;
+
+import java.util.Arrays;
+
+/**
+ * Przyrostowo śledzi obszary pustych pól oraz kolory kamieni, z którymi się stykają,
+ * dzięki czemu bieżące terytorium obu graczy jest znane w trakcie partii.
+ * <p>
+ * Każda zmiana pola planszy jedynie oznacza je jako „brudne” (O(1)). Przy odczycie
+ * wyniku przeliczane są tylko obszary zawierające zmienione pola lub z nimi sąsiadujące;
+ * pozostałe obszary i ich wkład w sumy terytorium pozostają bez zmian.
+ * Obszar jest cykliczną listą pól ({@code next}) z reprezentantem ({@code region}),
+ * podobnie jak łańcuchy w {@link GroupTracker}.
+ */
+final class ScoreTracker {
+
+    /** Znacznik pola zajętego przez kamień (brak obszaru). */
+    private static final int NONE = -1;
+
+    /** Flaga styku obszaru z czarnym kamieniem. */
+    private static final int TOUCHES_BLACK = 1;
+
+    /** Flaga styku obszaru z białym kamieniem. */
+    private static final int TOUCHES_WHITE = 2;
+
+    /** Śledzona plansza. */
+    private final Board board;
+
+    /** Geometria planszy (tablica sąsiedztwa). */
+    private final BoardGeometry geometry;
+
+    /** Reprezentant obszaru dla każdego pustego pola lub {@link #NONE}. */
+    private final int[] region;
+
+    /** Następne pole w cyklicznej liście obszaru. */
+    private final int[] next;
+
+    /** Liczba pól obszaru (ważne dla reprezentanta). */
+    private final int[] regionSize;
+
+    /** Flagi kolorów stykających się z obszarem (ważne dla reprezentanta). */
+    private final int[] border;
+
+    /** Zbiór bitowy pól zmienionych od ostatniego przeliczenia. */
+    private final long[] dirty;
+
+    /** Bufor roboczy na pola do ponownego zbadania. */
+    private final int[] seeds;
+
+    /** Bufor roboczy na stos przeszukiwania. */
+    private final int[] stack;
+
+    /** Suma pól obszarów stykających się wyłącznie z czarnymi kamieniami. */
+    private int blackTerritory;
+
+    /** Suma pól obszarów stykających się wyłącznie z białymi kamieniami. */
+    private int whiteTerritory;
+
+    /**
+     * Wyznacza obszary dla bieżącego stanu planszy.
+     *
+     * @param board Plansza, której terytorium ma być śledzone.
+     */
+    ScoreTracker(Board board) {
+        this.board = board;
+        this.geometry = board.geometry();
+        int points = geometry.points;
+        this.region = new int[points];
+        this.next = new int[points];
+        this.regionSize = new int[points];
+        this.border = new int[points];
+        this.dirty = geometry.newSet();
+        this.seeds = new int[2 * points];
+        this.stack = new int[points];
+
+        Arrays.fill(region, NONE);
+        for (int i = 0; i < points; i++) {
+            if (board.get(i) == Stone.EMPTY && region[i] == NONE) {
+                flood(i);
+            }
+        }
+    }
+
+    /**
+     * Oznacza pole jako zmienione. Wywoływane przez planszę przy każdej zmianie pola.
+     *
+     * @param i Indeks zmienionego pola.
+     */
+    void touch(int i) {
+        dirty[i >>> 6] |= 1L << i;
+    }
+
+    /**
+     * Zwraca bieżące terytorium czarnego gracza.
+     *
+     * @return Liczba pustych pól otoczonych wyłącznie przez czarne kamienie.
+     */
+    int blackTerritory() {
+        refresh();
+        return blackTerritory;
+    }
+
+    /**
+     * Zwraca bieżące terytorium białego gracza.
+     *
+     * @return Liczba pustych pól otoczonych wyłącznie przez białe kamienie.
+     */
+    int whiteTerritory() {
+        refresh();
+        return whiteTerritory;
+    }
+
+    /**
+     * Szacuje wynik partii tak, jak policzyłby go {@link ScoringEngine}, bez usuwania martwych kamieni.
+     *
+     * @param blackPrisoners Liczba jeńców czarnego gracza.
+     * @param whitePrisoners Liczba jeńców białego gracza.
+     * @param komi           Punkty dodatkowe dla białego gracza.
+     * @return Szacowany wynik obu graczy.
+     */
+    ScoringResult estimate(int blackPrisoners, int whitePrisoners, float komi) {
+        refresh();
+        return new ScoringResult(blackTerritory + blackPrisoners, whiteTerritory + whitePrisoners + komi);
+    }
+
+    /**
+     * Szacuje wynik partii przy punktacji obszarowej (kamienie i otoczone puste pola).
+     *
+     * @param komi Punkty dodatkowe dla białego gracza.
+     * @return Szacowany wynik obu graczy.
+     */
+    ScoringResult estimateArea(float komi) {
+        refresh();
+        return new ScoringResult(blackTerritory + board.count(Stone.BLACK),
+                whiteTerritory + board.count(Stone.WHITE) + komi);
+    }
+
+    /**
+     * Przelicza obszary zawierające zmienione pola lub z nimi sąsiadujące.
+     */
+    private void refresh() {
+        int seedCount = 0;
+        for (int w = 0; w < dirty.length; w++) {
+            for (long bits = dirty[w]; bits != 0; bits &= bits - 1) {
+                int d = (w << 6) + Long.numberOfTrailingZeros(bits);
+                seedCount = dissolve(d, seedCount);
+                seeds[seedCount++] = d;
+                for (int k = geometry.adjacentStart[d], end = geometry.adjacentStart[d + 1]; k < end; k++) {
+                    seedCount = dissolve(geometry.adjacent[k], seedCount);
+                }
+            }
+            dirty[w] = 0L;
+        }
+
+        for (int k = 0; k < seedCount; k++) {
+            int s = seeds[k];
+            if (board.get(s) == Stone.EMPTY && region[s] == NONE) {
+                flood(s);
+            }
+        }
+    }
+
+    /**
+     * Usuwa obszar zawierający pole {@code i} (jeśli istnieje), odejmuje jego wkład z sum
+     * i dopisuje jego pola do listy pól do ponownego zbadania.
+     *
+     * @return Nowa liczba pól do zbadania.
+     */
+    private int dissolve(int i, int seedCount) {
+        int r = region[i];
+        if (r == NONE) return seedCount;
+        contribute(r, -1);
+
+        int p = r;
+        do {
+            region[p] = NONE;
+            seeds[seedCount++] = p;
+            p = next[p];
+        } while (p != r);
+        return seedCount;
+    }
+
+    /**
+     * Wyznacza obszar pustych pól od pola {@code start} i dodaje jego wkład do sum.
+     */
+    private void flood(int start) {
+        int r = start;
+        region[r] = r;
+        next[r] = r;
+        regionSize[r] = 0;
+        border[r] = 0;
+
+        int sp = 0;
+        stack[sp++] = start;
+        while (sp > 0) {
+            int p = stack[--sp];
+            regionSize[r]++;
+            if (p != r) {
+                next[p] = next[r];
+                next[r] = p;
+            }
+            for (int k = geometry.adjacentStart[p], end = geometry.adjacentStart[p + 1]; k < end; k++) {
+                int n = geometry.adjacent[k];
+                Stone s = board.get(n);
+                if (s == Stone.EMPTY) {
+                    if (region[n] == NONE) {
+                        region[n] = r;
+                        stack[sp++] = n;
+                    }
+                } else {
+                    border[r] |= s == Stone.BLACK ? TOUCHES_BLACK : TOUCHES_WHITE;
+                }
+            }
+        }
+        contribute(r, 1);
+    }
+
+    /**
+     * Dodaje (sign = 1) lub odejmuje (sign = -1) wkład obszaru w terytorium gracza.
+     */
+    private void contribute(int r, int sign) {
+        if (border[r] == TOUCHES_BLACK) blackTerritory += sign * regionSize[r];
+        else if (border[r] == TOUCHES_WHITE) whiteTerritory += sign * regionSize[r];
+    }
+}
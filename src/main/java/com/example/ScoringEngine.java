@@ -1,14 +1,20 @@
 package com.example;
 
-import java.util.*;
+import java.util.Arrays;
 
 /**
  * Silnik odpowiedzialny za obliczanie końcowego wyniku partii.
- * Wykorzystuje algorytm wypełniania do identyfikacji terytoriów
- * otoczonych przez poszczególne kolory kamieni.
+ * Przy punktacji terytorialnej wykorzystuje algorytm wypełniania do identyfikacji terytoriów
+ * otoczonych przez poszczególne kolory kamieni; punktacja obszarowa jest liczona
+ * na zbiorach bitowych, po 64 pola naraz.
+ * Bufory robocze (znaczniki odwiedzin i stos) są przydzielane raz na wątek,
+ * dlatego silnik może być używany równolegle, np. przez {@link BatchScorer}.
  */
 public class ScoringEngine {
 
+    /** Bufory robocze bieżącego wątku. */
+    private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
     /**
      * Oblicza końcowy wynik gry na podstawie aktualnego stanu planszy.
      * Wynik uwzględnia terytorium (puste pola otoczone wyłącznie przez jeden kolor),
@@ -22,21 +28,144 @@ public class ScoringEngine {
      * @return Obiekt {@link ScoringResult} zawierający końcową punktację obu graczy.
      */
     public ScoringResult score(Board board, int blackPrisoners, int whitePrisoners, float komi) {
+        return score(board.geometry(), board.bits(Stone.BLACK), board.bits(Stone.WHITE),
+                blackPrisoners, whitePrisoners, komi);
+    }
+
+    /**
+     * Oblicza końcowy wynik gry dla niezmiennej migawki planszy.
+     *
+     * @param position       Końcowa pozycja partii.
+     * @param blackPrisoners Liczba białych kamieni zbitych przez czarnego gracza.
+     * @param whitePrisoners Liczba czarnych kamieni zbitych przez białego gracza.
+     * @param komi           Punkty dodatkowe dla białego gracza (wyrównanie szans).
+     * @return Obiekt {@link ScoringResult} zawierający końcową punktację obu graczy.
+     */
+    public ScoringResult score(BoardSnapshot position, int blackPrisoners, int whitePrisoners, float komi) {
+        return score(position, blackPrisoners, whitePrisoners, komi, ScoringRules.TERRITORY);
+    }
+
+    /**
+     * Oblicza końcowy wynik gry według wskazanych zasad punktacji.
+     *
+     * @param board          Aktualny stan planszy {@link Board}.
+     * @param blackPrisoners Liczba białych kamieni zbitych przez czarnego gracza (pomijana przy {@link ScoringRules#AREA}).
+     * @param whitePrisoners Liczba czarnych kamieni zbitych przez białego gracza (pomijana przy {@link ScoringRules#AREA}).
+     * @param komi           Punkty dodatkowe dla białego gracza.
+     * @param rules          Zasady punktacji.
+     * @return Obiekt {@link ScoringResult} zawierający końcową punktację obu graczy.
+     */
+    public ScoringResult score(Board board, int blackPrisoners, int whitePrisoners, float komi, ScoringRules rules) {
+        return score(board.geometry(), board.bits(Stone.BLACK), board.bits(Stone.WHITE),
+                blackPrisoners, whitePrisoners, komi, rules);
+    }
+
+    /**
+     * Oblicza końcowy wynik gry dla niezmiennej migawki planszy według wskazanych zasad punktacji.
+     *
+     * @param position       Końcowa pozycja partii.
+     * @param blackPrisoners Liczba białych kamieni zbitych przez czarnego gracza (pomijana przy {@link ScoringRules#AREA}).
+     * @param whitePrisoners Liczba czarnych kamieni zbitych przez białego gracza (pomijana przy {@link ScoringRules#AREA}).
+     * @param komi           Punkty dodatkowe dla białego gracza.
+     * @param rules          Zasady punktacji.
+     * @return Obiekt {@link ScoringResult} zawierający końcową punktację obu graczy.
+     */
+    public ScoringResult score(BoardSnapshot position, int blackPrisoners, int whitePrisoners, float komi,
+                               ScoringRules rules) {
+        return score(BoardGeometry.of(position.getSize()), position.bits(Stone.BLACK), position.bits(Stone.WHITE),
+                blackPrisoners, whitePrisoners, komi, rules);
+    }
+
+    /**
+     * Wybiera sposób liczenia wyniku na zbiorach bitowych kamieni.
+     *
+     * @param geometry       Geometria planszy.
+     * @param black          Zbiór bitowy czarnych kamieni.
+     * @param white          Zbiór bitowy białych kamieni.
+     * @param blackPrisoners Liczba jeńców czarnego gracza.
+     * @param whitePrisoners Liczba jeńców białego gracza.
+     * @param komi           Punkty dodatkowe dla białego gracza.
+     * @param rules          Zasady punktacji.
+     * @return Wynik obu graczy.
+     */
+    ScoringResult score(BoardGeometry geometry, long[] black, long[] white,
+                        int blackPrisoners, int whitePrisoners, float komi, ScoringRules rules) {
+        if (rules == ScoringRules.AREA) return scoreArea(geometry, black, white, komi);
+        return score(geometry, black, white, blackPrisoners, whitePrisoners, komi);
+    }
+
+    /**
+     * Liczy punktację obszarową: kamienie gracza oraz puste pola osiągalne (przez puste pola)
+     * wyłącznie z jego kamieni. Zasięg obu kolorów rozszerzany jest równolegle na całych słowach
+     * zbiorów bitowych, więc każdy krok przetwarza 64 pola naraz i nie wymaga znaczników odwiedzin.
+     */
+    private ScoringResult scoreArea(BoardGeometry geometry, long[] black, long[] white, float komi) {
+        long[] empty = geometry.newSet();
+        for (int w = 0; w < empty.length; w++) {
+            empty[w] = ~(black[w] | white[w]) & geometry.mask(w);
+        }
+        long[] blackReach = reach(geometry, black, empty);
+        long[] whiteReach = reach(geometry, white, empty);
+
+        int blackArea = BoardGeometry.count(black);
+        int whiteArea = BoardGeometry.count(white);
+        for (int w = 0; w < empty.length; w++) {
+            blackArea += Long.bitCount(blackReach[w] & ~whiteReach[w]);
+            whiteArea += Long.bitCount(whiteReach[w] & ~blackReach[w]);
+        }
+        return new ScoringResult(blackArea, whiteArea + komi);
+    }
+
+    /**
+     * Wyznacza puste pola osiągalne z kamieni zbioru {@code stones} po pustych polach.
+     * W każdym kroku do zasięgu dołączani są sąsiedzi ostatnio dodanych pól.
+     */
+    private static long[] reach(BoardGeometry geometry, long[] stones, long[] empty) {
+        long[] reached = geometry.newSet();
+        long[] frontier = stones.clone();
+        long[] next = geometry.newSet();
+        boolean grew = true;
+        while (grew) {
+            grew = false;
+            geometry.neighbours(frontier, next);
+            for (int w = 0; w < next.length; w++) {
+                long added = next[w] & empty[w] & ~reached[w];
+                reached[w] |= added;
+                frontier[w] = added;
+                grew |= added != 0;
+            }
+        }
+        return reached;
+    }
+
+    /**
+     * Liczy terytorium na zbiorach bitowych kamieni z użyciem buforów bieżącego wątku.
+     *
+     * @param geometry       Geometria planszy.
+     * @param black          Zbiór bitowy czarnych kamieni.
+     * @param white          Zbiór bitowy białych kamieni.
+     * @param blackPrisoners Liczba jeńców czarnego gracza.
+     * @param whitePrisoners Liczba jeńców białego gracza.
+     * @param komi           Punkty dodatkowe dla białego gracza.
+     * @return Wynik obu graczy.
+     */
+    ScoringResult score(BoardGeometry geometry, long[] black, long[] white,
+                                int blackPrisoners, int whitePrisoners, float komi) {
 
-        boolean[][] visited = new boolean[board.getSize()][board.getSize()];
+        Scratch scratch = SCRATCH.get();
+        scratch.begin(geometry.points);
+        Territory t = scratch.territory;
         int blackTerritory = 0;
         int whiteTerritory = 0;
 
-        for (int x = 0; x < board.getSize(); x++) {
-            for (int y = 0; y < board.getSize(); y++) {
-                if (board.get(x, y) == Stone.EMPTY && !visited[x][y]) {
-                    Territory t = floodTerritory(board, x, y, visited);
+        for (int i = 0; i < geometry.points; i++) {
+            if (colorAt(black, white, i) == Stone.EMPTY && !scratch.visited(i)) {
+                floodTerritory(geometry, black, white, i, scratch, t);
 
-                    if (t.owner == Stone.BLACK)
-                        blackTerritory += t.size;
-                    else if (t.owner == Stone.WHITE)
-                        whiteTerritory += t.size;
-                }
+                if (t.owner == Stone.BLACK)
+                    blackTerritory += t.size;
+                else if (t.owner == Stone.WHITE)
+                    whiteTerritory += t.size;
             }
         }
 
@@ -49,77 +178,106 @@ public class ScoringEngine {
     /**
      * Analizuje spójny obszar pustych pól, aby określić jego przynależność.
      * Obszar jest uznawany za terytorium danego koloru tylko wtedy, gdy styka się
-     * wyłącznie z kamieniami tego samego koloru.
+     * wyłącznie z kamieniami tego samego koloru. Przeszukiwanie korzysta z tablicy
+     * sąsiedztwa planszy i buforów wątku, więc nie tworzy obiektów.
      *
-     * @param board   Plansza do analizy.
-     * @param sx      Współrzędna początkowa X.
-     * @param sy      Współrzędna początkowa Y.
-     * @param visited Tablica pól już odwiedzonych podczas bieżącej sesji punktowania.
-     * @return Obiekt {@link Territory} zawierający kolor właściciela obszaru i jego rozmiar.
+     * @param geometry Geometria planszy.
+     * @param black    Zbiór bitowy czarnych kamieni.
+     * @param white    Zbiór bitowy białych kamieni.
+     * @param start    Indeks pola początkowego.
+     * @param scratch  Bufory robocze (znaczniki odwiedzin i stos) bieżącego wątku.
+     * @param result   Obiekt {@link Territory}, do którego trafia kolor właściciela obszaru i jego rozmiar.
      */
-    private Territory floodTerritory(Board board, int sx, int sy, boolean[][] visited) {
-        Set<Stone> borderingColors = new HashSet<>();
+    private void floodTerritory(BoardGeometry geometry, long[] black, long[] white, int start,
+                                Scratch scratch, Territory result) {
+        int[] stack = scratch.stack;
+        boolean touchesBlack = false;
+        boolean touchesWhite = false;
         int count = 0;
 
-        Queue<Point> q = new LinkedList<>();
-        q.add(new Point(sx, sy));
-        visited[sx][sy] = true;
+        int sp = 0;
+        stack[sp++] = start;
+        scratch.visit(start);
 
-        while (!q.isEmpty()) {
-            Point p = q.poll();
+        while (sp > 0) {
+            int p = stack[--sp];
             count++;
 
-            for (int[] n : neighbors(p.x, p.y)) {
-                int nx = n[0], ny = n[1];
-                if (!board.inBounds(nx, ny)) continue;
-
-                Stone s = board.get(nx, ny);
+            for (int k = geometry.adjacentStart[p], end = geometry.adjacentStart[p + 1]; k < end; k++) {
+                int n = geometry.adjacent[k];
+                Stone s = colorAt(black, white, n);
                 if (s == Stone.EMPTY) {
-                    if (!visited[nx][ny]) {
-                        visited[nx][ny] = true;
-                        q.add(new Point(nx, ny));
+                    if (!scratch.visited(n)) {
+                        scratch.visit(n);
+                        stack[sp++] = n;
                     }
+                } else if (s == Stone.BLACK) {
+                    touchesBlack = true;
                 } else {
-                    borderingColors.add(s);
+                    touchesWhite = true;
                 }
             }
         }
 
-        if (borderingColors.size() != 1) {
-            return new Territory(Stone.EMPTY, 0);
+        if (touchesBlack == touchesWhite) {
+            result.owner = Stone.EMPTY;
+            result.size = 0;
+        } else {
+            result.owner = touchesBlack ? Stone.BLACK : Stone.WHITE;
+            result.size = count;
         }
+    }
 
-        return new Territory(borderingColors.iterator().next(), count);
+    private static Stone colorAt(long[] black, long[] white, int i) {
+        long bit = 1L << i;
+        if ((black[i >>> 6] & bit) != 0) return Stone.BLACK;
+        if ((white[i >>> 6] & bit) != 0) return Stone.WHITE;
+        return Stone.EMPTY;
     }
 
     /**
      * Pomocnicza klasa wewnętrzna reprezentująca wyliczony obszar terytorium.
+     * Jeden obiekt jest używany ponownie dla wszystkich obszarów w danym wątku.
      */
     private static class Territory {
         /** Właściciel terytorium. */
         Stone owner;
         /** Liczba pól. */
         int size;
-
-        Territory(Stone owner, int size) {
-            this.owner = owner;
-            this.size = size;
-        }
     }
 
     /**
-     * Generuje listę współrzędnych sąsiadujących dla punktu.
-     *
-     * @param x Współrzędna X pola.
-     * @param y Współrzędna Y pola.
-     * @return Lista tablic dwuelementowych zawierających współrzędne sąsiadów.
+     * Bufory robocze jednego wątku. Odwiedziny oznaczane są numerem bieżącego przebiegu,
+     * więc kolejne plansze nie wymagają czyszczenia tablicy.
      */
-    private List<int[]> neighbors(int x, int y) {
-        List<int[]> list = new ArrayList<>();
-        list.add(new int[]{x + 1, y});
-        list.add(new int[]{x - 1, y});
-        list.add(new int[]{x, y + 1});
-        list.add(new int[]{x, y - 1});
-        return list;
+    private static class Scratch {
+        /** Numer przebiegu, w którym pole zostało odwiedzone. */
+        int[] mark = new int[0];
+        /** Stos przeszukiwania. */
+        int[] stack = new int[0];
+        /** Numer bieżącego przebiegu. */
+        int epoch;
+        /** Wielokrotnie używany wynik analizy obszaru. */
+        final Territory territory = new Territory();
+
+        void begin(int points) {
+            if (mark.length < points) {
+                mark = new int[points];
+                stack = new int[points];
+                epoch = 0;
+            }
+            if (++epoch == Integer.MAX_VALUE) {
+                Arrays.fill(mark, 0);
+                epoch = 1;
+            }
+        }
+
+        boolean visited(int i) {
+            return mark[i] == epoch;
+        }
+
+        void visit(int i) {
+            mark[i] = epoch;
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,54 @@
+package com.example;
+
+/**
+ * Opisuje jedną zakończoną partię do ponownego policzenia:
+ * końcową pozycję, liczbę jeńców obu graczy, komi oraz zasady punktacji.
+ * Obiekt jest niezmienny, więc może być przetwarzany w dowolnym wątku.
+ */
+public final class ScoringJob {
+
+    /** Końcowa pozycja partii. */
+    public final BoardSnapshot position;
+
+    /** Liczba jeńców czarnego gracza. */
+    public final int blackPrisoners;
+
+    /** Liczba jeńców białego gracza. */
+    public final int whitePrisoners;
+
+    /** Komi obowiązujące w partii. */
+    public final float komi;
+
+    /** Zasady punktacji. */
+    public final ScoringRules rules;
+
+    /**
+     * Tworzy opis partii liczonej punktacją terytorialną.
+     *
+     * @param position       Końcowa pozycja partii.
+     * @param blackPrisoners Liczba jeńców czarnego gracza.
+     * @param whitePrisoners Liczba jeńców białego gracza.
+     * @param komi           Punkty dodatkowe dla białego gracza.
+     */
+    public ScoringJob(BoardSnapshot position, int blackPrisoners, int whitePrisoners, float komi) {
+        this(position, blackPrisoners, whitePrisoners, komi, ScoringRules.TERRITORY);
+    }
+
+    /**
+     * Tworzy opis partii do policzenia według wskazanych zasad.
+     *
+     * @param position       Końcowa pozycja partii.
+     * @param blackPrisoners Liczba jeńców czarnego gracza.
+     * @param whitePrisoners Liczba jeńców białego gracza.
+     * @param komi           Punkty dodatkowe dla białego gracza.
+     * @param rules          Zasady punktacji.
+     */
+    public ScoringJob(BoardSnapshot position, int blackPrisoners, int whitePrisoners, float komi,
+                      ScoringRules rules) {
+        this.position = position;
+        this.blackPrisoners = blackPrisoners;
+        this.whitePrisoners = whitePrisoners;
+        this.komi = komi;
+        this.rules = rules;
+    }
+}
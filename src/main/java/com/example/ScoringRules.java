@@ -0,0 +1,23 @@
+package com.example;
+
+/**
+ * Określa sposób liczenia punktów na koniec partii.
+ */
+public enum ScoringRules {
+
+    /** Punktacja terytorialna (japońska): otoczone puste pola oraz jeńcy. */
+    TERRITORY,
+
+    /** Punktacja obszarowa (chińska): własne kamienie oraz otoczone puste pola. */
+    AREA;
+
+    /**
+     * Sprawdza, czy zasady wymagają liczenia jeńców.
+     * Przy punktacji obszarowej jeńcy nie wpływają na wynik.
+     *
+     * @return {@code true} dla punktacji terytorialnej.
+     */
+    public boolean countsPrisoners() {
+        return this == TERRITORY;
+    }
+}
@@ -0,0 +1,79 @@
+package com.example;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Skrzynka zadań jednego aktora: wykonuje zadania po kolei, w kolejności ich zgłoszenia,
+ * nigdy dwa naraz, ale bez własnego wątku — na wspólnej puli wykonawców.
+ * <p>
+ * Zgłoszenie zadania to dopisanie do kolejki bez blokad; jeśli skrzynka była bezczynna,
+ * do puli trafia zadanie opróżniające. Po {@link #BATCH} zadaniach opróżnianie oddaje wątek
+ * puli i zgłasza się ponownie, aby jedna aktywna sesja nie zagłodziła pozostałych.
+ * Każde zadanie widzi efekty poprzednich (przekazanie przez kolejkę i flagę atomową),
+ * więc stan aktora nie wymaga dodatkowej synchronizacji.
+ */
+final class SerialExecutor implements Executor {
+
+    /** Największa liczba zadań wykonywanych za jednym przydziałem wątku puli. */
+    private static final int BATCH = 64;
+
+    /** Wspólna pula wykonująca zadania wielu skrzynek. */
+    private final Executor pool;
+
+    /** Zadania oczekujące na wykonanie. */
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+
+    /** Czy zadanie opróżniające jest zgłoszone lub trwa. */
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+
+    /**
+     * Tworzy skrzynkę korzystającą z podanej puli.
+     *
+     * @param pool Pula wykonawców współdzielona przez wiele skrzynek.
+     */
+    SerialExecutor(Executor pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Zgłasza zadanie do wykonania po wszystkich wcześniej zgłoszonych.
+     *
+     * @param task Zadanie.
+     */
+    @Override
+    public void execute(Runnable task) {
+        tasks.add(task);
+        if (scheduled.compareAndSet(false, true)) {
+            pool.execute(this::drain);
+        }
+    }
+
+    /**
+     * Wykonuje do {@link #BATCH} oczekujących zadań. Wyjątek zadania zgłaszany jest obsłudze
+     * nieprzechwyconych wyjątków wątku (tak jak błąd każdego innego zadania puli), a kolejne
+     * zadania wykonują się dalej. Błąd ({@link Error}) przerywa opróżnianie, ale skrzynka
+     * i tak zwalnia flagę i zgłasza się ponownie, więc nie zawiesza się na zawsze.
+     */
+    private void drain() {
+        try {
+            for (int k = 0; k < BATCH; k++) {
+                Runnable task = tasks.poll();
+                if (task == null) break;
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    Thread thread = Thread.currentThread();
+                    thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+                }
+            }
+        } finally {
+            scheduled.set(false);
+            if (!tasks.isEmpty() && scheduled.compareAndSet(false, true)) {
+                pool.execute(this::drain);
+            }
+        }
+    }
+}
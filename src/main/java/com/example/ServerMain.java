@@ -1,6 +1,10 @@
 package com.example;
 
+import java.io.IOException;
 import java.net.*;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * Główna klasa serwera gry Go.
@@ -16,28 +20,153 @@ public class ServerMain {
      * Punkt wejścia aplikacji serwerowej.
      * Metoda wykonuje następujące kroki:
      * Otwiera gniazdo serwerowe na porcie 12345.
-     * Wstrzymuje wykonanie (blokuje wątek) do momentu połączenia się pierwszego gracza.
-     * Ponownie blokuje wątek do momentu połączenia się drugiego gracza.
-     * Tworzy obiekt {@link GameSession}, który przejmuje dalszą obsługę logiki gry.
+     * W pętli przyjmuje kolejne połączenia i przekazuje graczy do {@link Lobby},
+     * która w wątku połączenia uzgadnia protokół (w czasie {@code go.handshakeMillis}),
+     * łączy graczy w pary i uruchamia dla każdej pary osobny {@link GameSession}.
      *
-     * @param args Argumenty linii komend (nieużywane).
+     * Właściwość systemowa {@code go.threads} wybiera sposób obsługi połączeń:
+     * {@code virtual} (domyślnie, wątek wirtualny na połączenie) lub {@code platform}
+     * (wątek systemowy na połączenie). Właściwość {@code go.transport} wybiera transport:
+     * {@code blocking} (domyślnie, strumienie obiektowe) lub {@code nio} (ramki obsługiwane przez
+     * pulę selektorów {@link NioServer}, której wielkość ustala {@code go.selectors}).
+     * Właściwości {@code go.outboundCapacity} i {@code go.maxLagMillis} ograniczają kolejkę stanów
+     * wychodzących każdego połączenia ({@link OutboundQueue}); zbyt wolny klient jest rozłączany.
+     * Właściwość {@code go.moveTimeoutSeconds} ustala czas na ruch (domyślnie bez limitu),
+     * a {@code go.reconnectSeconds} czas oczekiwania na powrót rozłączonego gracza (domyślnie 30 s).
+     * Właściwość {@code go.journal} wskazuje katalog dziennika partii ({@link GameJournal},
+     * domyślnie {@code journal}; pusta wartość wyłącza dziennik). Po restarcie serwer odtwarza z niego
+     * niezakończone partie; {@code go.journalSyncMillis} ustala odstęp wypychania dziennika na dysk.
+     * Zakończone partie trafiają do archiwum ({@link GameArchive}) w katalogu {@code go.archive}
+     * (domyślnie {@code archive}; pusta wartość wyłącza archiwum).
+     *
+     * @param args Argumenty linii komend: opcjonalny rozmiar planszy (9, 13 lub 19, domyślnie 19),
+     *             komi (domyślnie 6.5) oraz zasady punktacji ({@code territory} lub {@code area}).
      */
     public static void main(String[] args) {
-        try (ServerSocket serverSocket = new ServerSocket(PORT)) {
-            System.out.println("Server started, waiting for players on port " + PORT + "...");
+        int size;
+        try {
+            size = args.length > 0 ? Integer.parseInt(args[0]) : GameSession.DEFAULT_SIZE;
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid board size: " + args[0] + " (use 9, 13 or 19)");
+            return;
+        }
+        if (!GameSession.isSupportedSize(size)) {
+            System.err.println("Unsupported board size: " + size + " (use 9, 13 or 19)");
+            return;
+        }
+        float komi;
+        try {
+            komi = args.length > 1 ? Float.parseFloat(args[1]) : GameSession.KOMI;
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid komi: " + args[1] + " (use a number such as 6.5)");
+            return;
+        }
+        ScoringRules scoring;
+        try {
+            scoring = args.length > 2 ? ScoringRules.valueOf(args[2].toUpperCase()) : ScoringRules.TERRITORY;
+        } catch (IllegalArgumentException e) {
+            System.err.println("Unknown scoring rules: " + args[2] + " (use territory or area)");
+            return;
+        }
+
+        String threads = System.getProperty("go.threads", "virtual");
+        ExecutorService connections = connectionExecutor(threads);
+        if (connections == null) {
+            System.err.println("Unknown thread mode: " + threads + " (use virtual or platform)");
+            return;
+        }
+
+        GameJournal journal = null;
+        String journalDir = System.getProperty("go.journal", "journal");
+        if (!journalDir.isEmpty()) {
+            try {
+                journal = new GameJournal(Path.of(journalDir));
+                Runtime.getRuntime().addShutdownHook(new Thread(journal::close));
+            } catch (IOException e) {
+                System.err.println("Could not open game journal: " + e.getMessage());
+                return;
+            }
+        }
+
+        GameArchive archive = null;
+        String archiveDir = System.getProperty("go.archive", "archive");
+        if (!archiveDir.isEmpty()) {
+            try {
+                GameArchive opened = new GameArchive(Path.of(archiveDir));
+                Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                    try {
+                        opened.close();
+                    } catch (IOException e) {
+                        System.err.println("Could not close game archive: " + e.getMessage());
+                    }
+                }));
+                archive = opened;
+            } catch (IOException e) {
+                System.err.println("Could not open game archive: " + e.getMessage());
+                return;
+            }
+        }
+
+        Lobby lobby = new Lobby(size, komi, scoring, connections, journal, archive);
+        String transport = System.getProperty("go.transport", "blocking");
+        if (transport.equals("nio")) {
+            serveNio(lobby, Integer.getInteger("go.selectors", Runtime.getRuntime().availableProcessors()));
+            return;
+        }
+        if (!transport.equals("blocking")) {
+            System.err.println("Unknown transport: " + transport + " (use blocking or nio)");
+            return;
+        }
 
-            Socket p1 = serverSocket.accept();
-            System.out.println("Player 1 connected from: " + p1.getInetAddress());
+        try (ServerSocket serverSocket = new ServerSocket(PORT)) {
+            System.out.println("Server started (" + size + "x" + size + ", " + threads
+                    + " threads), waiting for players on port " + PORT + "...");
 
-            Socket p2 = serverSocket.accept();
-            System.out.println("Player 2 connected from: " + p2.getInetAddress());
+            while (true) {
+                Socket player = serverSocket.accept();
+                System.out.println("Player connected from: " + player.getInetAddress()
+                        + " (active games: " + lobby.activeSessions() + ")");
+                lobby.join(player);
+            }
 
-            GameSession session = new GameSession(p1, p2);
-            session.start();
+        } catch (Exception e) {
+            System.err.println("Server error: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
 
+    /**
+     * Uruchamia serwer z nieblokującym transportem NIO.
+     *
+     * @param lobby     Poczekalnia dla nowych połączeń.
+     * @param selectors Liczba wątków selektorów.
+     */
+    private static void serveNio(Lobby lobby, int selectors) {
+        try (NioServer server = new NioServer(lobby, selectors)) {
+            server.bind(PORT);
+            System.out.println("Server started (nio, " + selectors + " selectors), waiting for players on port "
+                    + PORT + "...");
+            server.serve();
         } catch (Exception e) {
             System.err.println("Server error: " + e.getMessage());
             e.printStackTrace();
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Tworzy wykonawcę obsługi połączeń dla podanego trybu.
+     *
+     * @param mode {@code virtual} lub {@code platform}.
+     * @return Wykonawca uruchamiający każde połączenie w osobnym wątku lub {@code null} dla nieznanego trybu.
+     */
+    static ExecutorService connectionExecutor(String mode) {
+        switch (mode) {
+            case "virtual":
+                return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("client-", 1).factory());
+            case "platform":
+                return Executors.newThreadPerTaskExecutor(Thread.ofPlatform().name("client-", 1).factory());
+            default:
+                return null;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.example;
+
+import java.util.Arrays;
+
+/**
+ * Dziennik zmian planszy umożliwiający dokładne cofanie ruchów.
+ * Dla każdego ruchu zapisywane są wyłącznie zmienione pola: postawiony kamień
+ * oraz zbite kamienie przeciwnika. Dane trzymane są w tablicach typu {@code int},
+ * więc zapis ruchu nie tworzy nowych obiektów.
+ */
+final class UndoLog {
+
+    /** Przesunięcie bitowe koloru w pierwszym wpisie ramki. */
+    private static final int COLOR_SHIFT = 16;
+
+    /** Maska indeksu pola w pierwszym wpisie ramki. */
+    private static final int INDEX_MASK = (1 << COLOR_SHIFT) - 1;
+
+    /** Kolejne wpisy: pierwszy wpis ramki to kamień postawiony, dalsze to zbite pola. */
+    private int[] cells = new int[64];
+
+    /** Liczba zajętych wpisów w {@link #cells}. */
+    private int size;
+
+    /** Pozycje początków kolejnych ramek (ruchów) w {@link #cells}. */
+    private int[] frames = new int[16];
+
+    /** Liczba zapisanych ruchów. */
+    private int depth;
+
+    /**
+     * Rozpoczyna zapis nowego ruchu.
+     *
+     * @param placed Indeks pola, na którym postawiono kamień.
+     * @param color  Kolor postawionego kamienia.
+     */
+    void begin(int placed, Stone color) {
+        if (depth == frames.length) frames = Arrays.copyOf(frames, depth * 2);
+        frames[depth++] = size;
+        push(placed | (color.ordinal() << COLOR_SHIFT));
+    }
+
+    /**
+     * Dopisuje zbite pole do bieżącego ruchu.
+     *
+     * @param i Indeks pola, z którego zdjęto kamień przeciwnika.
+     */
+    void captured(int i) {
+        push(i);
+    }
+
+    /**
+     * Zwraca liczbę zapisanych ruchów.
+     *
+     * @return Głębokość dziennika.
+     */
+    int depth() {
+        return depth;
+    }
+
+    /**
+     * Zwraca indeks pola postawionego kamienia w ostatnim ruchu.
+     *
+     * @return Indeks pola.
+     */
+    int lastPlaced() {
+        return cells[frames[depth - 1]] & INDEX_MASK;
+    }
+
+    /**
+     * Zwraca kolor kamienia postawionego w ostatnim ruchu.
+     *
+     * @return Kolor kamienia.
+     */
+    Stone lastColor() {
+        return Stone.values()[cells[frames[depth - 1]] >>> COLOR_SHIFT];
+    }
+
+    /**
+     * Zwraca liczbę kamieni zbitych w ostatnim ruchu.
+     *
+     * @return Liczba zbitych kamieni.
+     */
+    int lastCapturedCount() {
+        return size - frames[depth - 1] - 1;
+    }
+
+    /**
+     * Zwraca zbite pole ostatniego ruchu.
+     *
+     * @param k Numer zbitego kamienia (od zera).
+     * @return Indeks pola.
+     */
+    int lastCaptured(int k) {
+        return cells[frames[depth - 1] + 1 + k];
+    }
+
+    /**
+     * Usuwa ostatni ruch z dziennika.
+     */
+    void pop() {
+        size = frames[--depth];
+    }
+
+    private void push(int v) {
+        if (size == cells.length) cells = Arrays.copyOf(cells, size * 2);
+        cells[size++] = v;
+    }
+}
@@ -0,0 +1,82 @@
+package com.example;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Miejsce gracza bez połączenia, zajmowane w sesji odtworzonej z dziennika
+ * do czasu powrotu gracza z jego żetonem sesji. Stany wysyłane na to miejsce są pomijane.
+ */
+final class VacantSeat implements ClientConnection {
+
+    /** Kolor kamieni miejsca. */
+    private Stone stone;
+
+    /**
+     * Zapamiętuje kolor miejsca.
+     *
+     * @param session Sesja gry (pomijana).
+     * @param stone   Kolor kamieni gracza.
+     */
+    @Override
+    public void attach(GameSession session, Stone stone) {
+        this.stone = stone;
+    }
+
+    /**
+     * Nic nie robi: puste miejsce nie odbiera ruchów.
+     *
+     * @param executor Pomijany.
+     */
+    @Override
+    public void start(Executor executor) {
+    }
+
+    /**
+     * Zwraca kolor miejsca.
+     *
+     * @return Kolor gracza.
+     */
+    @Override
+    public Stone getStone() {
+        return stone;
+    }
+
+    /**
+     * Pomija stan; gracz dostanie pełną planszę po ponownym połączeniu.
+     *
+     * @param state Stan gry.
+     */
+    @Override
+    public void sendState(EncodedState state) {
+    }
+
+    /**
+     * Puste miejsce nie ma otwartego połączenia.
+     *
+     * @return Zawsze {@code false}.
+     */
+    @Override
+    public boolean isOpen() {
+        return false;
+    }
+
+    /**
+     * Puste miejsce nie ma adresu.
+     *
+     * @return Pusty napis.
+     */
+    @Override
+    public String address() {
+        return "";
+    }
+
+    /** Nic nie robi: nie ma czego zamykać. */
+    @Override
+    public void close() {
+    }
+
+    /** Nic nie robi: nie ma czego zamykać. */
+    @Override
+    public void finish() {
+    }
+}
@@ -0,0 +1,307 @@
+package com.example;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Zwarty, binarny protokół przesyłania {@link Move} i {@link GameState}.
+ * <p>
+ * Po nawiązaniu połączenia klient wysyła {@code 'G' 'O' wersja}, a serwer odpowiada tymi samymi
+ * trzema bajtami z wersją, której będzie używał. Klient, który zamiast tego wyśle nagłówek
+ * serializacji Javy ({@code 0xACED}), jest obsługiwany po staremu przez strumienie obiektowe.
+ * Widz zamiast powitania wysyła {@code 'G' 'W' wersja} i 8-bajtowy numer obserwowanej partii,
+ * a gracz wracający po zerwaniu połączenia {@code 'G' 'R' wersja}, 8-bajtowy żeton sesji
+ * i 4-bajtową wersję planszy, którą ma (lub -1).
+ * <p>
+ * Każda wiadomość to ramka: 2 bajty długości (bez nich samych), 1 bajt typu i treść.
+ * Ruch zajmuje 5 bajtów (typ oraz współrzędne spakowane jako {@code x << 8 | y}).
+ * Stan gry zawiera flagi, rozmiar, wersję planszy, szacunki wyniku, komunikat w UTF-8
+ * oraz planszę zapisaną po 2 bity na pole; w fazie punktacji dochodzi mapa bitowa martwych kamieni.
+ * Stan różnicowy zamiast planszy zawiera wersję bazową i listę zmienionych pól po 2 bajty na pole.
+ */
+final class WireProtocol {
+
+    /** Pierwszy bajt powitania protokołu binarnego. */
+    static final int MAGIC_0 = 'G';
+
+    /** Drugi bajt powitania protokołu binarnego. */
+    static final int MAGIC_1 = 'O';
+
+    /** Drugi bajt powitania widza. */
+    static final int WATCH_MAGIC = 'W';
+
+    /** Długość powitania widza (z numerem partii). */
+    static final int WATCH_HELLO = 11;
+
+    /** Drugi bajt powitania gracza wznawiającego grę. */
+    static final int RESUME_MAGIC = 'R';
+
+    /** Długość powitania gracza wznawiającego grę (z żetonem i wersją planszy). */
+    static final int RESUME_HELLO = 15;
+
+    /** Najnowsza obsługiwana wersja protokołu. */
+    static final int VERSION = 2;
+
+    /** Pierwsze dwa bajty strumienia serializacji Javy (dotychczasowy protokół). */
+    static final int SERIALIZATION_MAGIC = 0xACED;
+
+    /** Rozmiar nagłówka ramki (długość). */
+    static final int HEADER = 2;
+
+    /** Typ ramki: postawienie kamienia. */
+    static final byte PLAY = 1;
+
+    /** Typ ramki: pas. */
+    static final byte PASS = 2;
+
+    /** Typ ramki: poddanie się. */
+    static final byte RESIGN = 3;
+
+    /** Typ ramki: zakończenie oznaczania martwych kamieni. */
+    static final byte DONE_SCORING = 4;
+
+    /** Typ ramki: prośba o pełny stan planszy. */
+    static final byte RESYNC = 5;
+
+    /** Typ ramki: pełny stan gry. */
+    static final byte STATE = 16;
+
+    /** Typ ramki: stan gry ze zmianami względem wcześniejszej wersji planszy. */
+    static final byte DELTA = 17;
+
+    /** Flaga stanu: odbiorca ma turę. */
+    private static final int YOUR_TURN = 1;
+
+    /** Flaga stanu: za planszą następuje mapa martwych kamieni. */
+    private static final int HAS_DEAD = 2;
+
+    /** Flaga stanu: na końcu ramki jest żeton sesji. */
+    private static final int HAS_TOKEN = 4;
+
+    private WireProtocol() {
+    }
+
+    /**
+     * Zwraca powitanie wysyłane przez klienta i potwierdzenie wysyłane przez serwer.
+     *
+     * @return Trzy bajty: {@code 'G' 'O' VERSION}.
+     */
+    static byte[] hello() {
+        return new byte[]{(byte) MAGIC_0, (byte) MAGIC_1, (byte) VERSION};
+    }
+
+    /**
+     * Zwraca powitanie widza chcącego obserwować partię.
+     *
+     * @param game Numer partii w poczekalni serwera.
+     * @return Jedenaście bajtów: {@code 'G' 'W' VERSION} i numer partii.
+     */
+    static byte[] watch(long game) {
+        return ByteBuffer.allocate(WATCH_HELLO)
+                .put((byte) MAGIC_0).put((byte) WATCH_MAGIC).put((byte) VERSION).putLong(game).array();
+    }
+
+    /**
+     * Zwraca powitanie gracza wznawiającego grę po zerwaniu połączenia.
+     *
+     * @param token   Żeton sesji otrzymany na początku partii.
+     * @param version Wersja planszy, którą ma klient, lub -1.
+     * @return Piętnaście bajtów: {@code 'G' 'R' VERSION}, żeton i wersja.
+     */
+    static byte[] resume(long token, int version) {
+        return ByteBuffer.allocate(RESUME_HELLO)
+                .put((byte) MAGIC_0).put((byte) RESUME_MAGIC).put((byte) VERSION).putLong(token).putInt(version).array();
+    }
+
+    /**
+     * Koduje ruch jako kompletną ramkę.
+     *
+     * @param move Ruch gracza.
+     * @return Ramka o długości 5 bajtów.
+     */
+    static byte[] encodeMove(Move move) {
+        byte type = move.resync ? RESYNC : move.doneScoring ? DONE_SCORING
+                : move.resign ? RESIGN : move.pass ? PASS : PLAY;
+        int packed = type == PLAY ? (move.x & 0xFF) << 8 | (move.y & 0xFF) : 0;
+        return new byte[]{0, 3, type, (byte) (packed >>> 8), (byte) packed};
+    }
+
+    /**
+     * Koduje stan gry jako kompletną ramkę.
+     *
+     * @param state Stan gry: pełny ({@link Board#toString(long[])}) lub różnicowy.
+     * @return Ramka z nagłówkiem długości.
+     */
+    static byte[] encodeState(GameState state) {
+        if (state.isDelta()) return encodeDelta(state);
+        int size = state.size;
+        int points = size * size;
+        byte[] message = state.message.getBytes(StandardCharsets.UTF_8);
+        byte[] stones = new byte[(2 * points + 7) / 8];
+        byte[] dead = new byte[(points + 7) / 8];
+        boolean hasDead = false;
+
+        String board = state.board;
+        int p = 0;
+        for (int k = 0, n = board.length(); k < n && p < points; k++) {
+            char c = board.charAt(k);
+            if (c == ' ' || c == '\n') continue;
+            int y = p / size;
+            int x = p % size;
+            int i = x * size + y;
+            int code = c == 'B' || c == 'b' ? 1 : c == 'W' || c == 'w' ? 2 : 0;
+            stones[i >>> 2] |= (byte) (code << ((i & 3) << 1));
+            if (c == 'b' || c == 'w') {
+                dead[i >>> 3] |= (byte) (1 << (i & 7));
+                hasDead = true;
+            }
+            p++;
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(HEADER + 16 + message.length + stones.length);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeShort(0);
+            out.writeByte(STATE);
+            out.writeByte((state.yourTurn ? YOUR_TURN : 0) | (hasDead ? HAS_DEAD : 0)
+                    | (state.token != 0 ? HAS_TOKEN : 0));
+            out.writeByte(size);
+            out.writeInt(state.version);
+            out.writeFloat(state.blackEstimate);
+            out.writeFloat(state.whiteEstimate);
+            out.writeShort(message.length);
+            out.write(message);
+            out.write(stones);
+            if (hasDead) out.write(dead);
+            if (state.token != 0) out.writeLong(state.token);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return frame(bytes);
+    }
+
+    private static byte[] encodeDelta(GameState state) {
+        byte[] message = state.message.getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(HEADER + 24 + message.length + 2 * state.changes.length);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeShort(0);
+            out.writeByte(DELTA);
+            out.writeByte(state.yourTurn ? YOUR_TURN : 0);
+            out.writeByte(state.size);
+            out.writeInt(state.version);
+            out.writeInt(state.baseVersion);
+            out.writeFloat(state.blackEstimate);
+            out.writeFloat(state.whiteEstimate);
+            out.writeShort(message.length);
+            out.write(message);
+            out.writeShort(state.changes.length);
+            for (int change : state.changes) out.writeShort(change);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return frame(bytes);
+    }
+
+    private static byte[] frame(ByteArrayOutputStream bytes) {
+        byte[] frame = bytes.toByteArray();
+        int length = frame.length - HEADER;
+        frame[0] = (byte) (length >>> 8);
+        frame[1] = (byte) length;
+        return frame;
+    }
+
+    /**
+     * Dekoduje treść ramki (bez nagłówka długości).
+     *
+     * @param body Typ i treść ramki.
+     * @return Obiekt {@link Move} lub {@link GameState}.
+     * @throws IOException Jeśli ramka jest nieznanego typu lub uszkodzona.
+     */
+    static Object decode(byte[] body) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(body));
+        byte type = in.readByte();
+        switch (type) {
+            case PLAY:
+                return new Move(in.readUnsignedByte(), in.readUnsignedByte(), false, false);
+            case PASS:
+                return new Move(-1, -1, true, false);
+            case RESIGN:
+                return new Move(-1, -1, false, true);
+            case DONE_SCORING:
+                return new Move(-1, -1, false, false, true);
+            case RESYNC:
+                Move resync = new Move(-1, -1, false, false);
+                resync.resync = true;
+                return resync;
+            case STATE:
+                return decodeState(in);
+            case DELTA:
+                return decodeDelta(in);
+            default:
+                throw new IOException("Unknown frame type: " + type);
+        }
+    }
+
+    /**
+     * Odczytuje jedną ramkę ze strumienia blokującego.
+     *
+     * @param in Strumień wejściowy.
+     * @return Obiekt {@link Move} lub {@link GameState}.
+     * @throws IOException W przypadku błędu odczytu lub uszkodzonej ramki.
+     */
+    static Object read(DataInputStream in) throws IOException {
+        int length = in.readUnsignedShort();
+        if (length == 0) throw new IOException("Empty frame");
+        byte[] body = new byte[length];
+        in.readFully(body);
+        return decode(body);
+    }
+
+    private static GameState decodeState(DataInputStream in) throws IOException {
+        int flags = in.readUnsignedByte();
+        int size = in.readUnsignedByte();
+        int version = in.readInt();
+        float blackEstimate = in.readFloat();
+        float whiteEstimate = in.readFloat();
+        byte[] message = new byte[in.readUnsignedShort()];
+        in.readFully(message);
+        int points = size * size;
+        byte[] stones = new byte[(2 * points + 7) / 8];
+        in.readFully(stones);
+        byte[] dead = new byte[(points + 7) / 8];
+        if ((flags & HAS_DEAD) != 0) in.readFully(dead);
+        long token = (flags & HAS_TOKEN) != 0 ? in.readLong() : 0;
+
+        StringBuilder board = new StringBuilder(size * (2 * size + 1));
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                int i = x * size + y;
+                int code = stones[i >>> 2] >>> ((i & 3) << 1) & 3;
+                boolean marked = (dead[i >>> 3] >>> (i & 7) & 1) != 0;
+                board.append(code == 1 ? (marked ? 'b' : 'B') : code == 2 ? (marked ? 'w' : 'W') : '.');
+                board.append(' ');
+            }
+            board.append('\n');
+        }
+        return new GameState(board.toString(), new String(message, StandardCharsets.UTF_8),
+                (flags & YOUR_TURN) != 0, size, blackEstimate, whiteEstimate, version, GameState.KEYFRAME, null, token);
+    }
+
+    private static GameState decodeDelta(DataInputStream in) throws IOException {
+        int flags = in.readUnsignedByte();
+        int size = in.readUnsignedByte();
+        int version = in.readInt();
+        int baseVersion = in.readInt();
+        float blackEstimate = in.readFloat();
+        float whiteEstimate = in.readFloat();
+        byte[] message = new byte[in.readUnsignedShort()];
+        in.readFully(message);
+        int[] changes = new int[in.readUnsignedShort()];
+        for (int k = 0; k < changes.length; k++) {
+            changes[k] = in.readUnsignedShort();
+            if ((changes[k] >>> 3) >= size * size) throw new IOException("Point out of board: " + (changes[k] >>> 3));
+        }
+        return new GameState(null, new String(message, StandardCharsets.UTF_8),
+                (flags & YOUR_TURN) != 0, size, blackEstimate, whiteEstimate, version, baseVersion, changes);
+    }
+}
@@ -0,0 +1,47 @@
+package com.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Testy jednostkowe równoległego liczenia wyników partii.
+ */
+class BatchScorerTest {
+
+    @Test
+    void testParallelResultsMatchSequentialScoring() {
+        Random random = new Random(9);
+        RulesEngine rules = new RulesEngine();
+        List<ScoringJob> jobs = new ArrayList<>();
+        List<Board> boards = new ArrayList<>();
+
+        for (int g = 0; g < 2000; g++) {
+            int size = g % 3 == 0 ? 9 : g % 3 == 1 ? 13 : 19;
+            Board board = new Board(size);
+            Stone turn = Stone.BLACK;
+            for (int k = 0; k < 60; k++) {
+                if (rules.play(board, random.nextInt(size), random.nextInt(size), turn) >= 0) {
+                    turn = turn.opposite();
+                }
+            }
+            boards.add(board);
+            jobs.add(new ScoringJob(board.snapshot(), g % 5, g % 7, 6.5f));
+        }
+
+        BatchScorer.BatchResult batch = new BatchScorer().scoreAll(jobs.stream());
+        ScoringEngine engine = new ScoringEngine();
+
+        assertEquals(jobs.size(), batch.results().size());
+        for (int g = 0; g < jobs.size(); g++) {
+            ScoringResult expected = engine.score(boards.get(g), g % 5, g % 7, 6.5f);
+            assertEquals(expected.blackScore, batch.results().get(g).blackScore);
+            assertEquals(expected.whiteScore, batch.results().get(g).whiteScore);
+        }
+        assertTrue(batch.gamesPerSecond() > 0);
+    }
+}
@@ -113,4 +113,82 @@ class BoardTest {
 
         assertEquals(expected, board.toString());
     }
+
+    @Test
+    void testCountStones() {
+        Board board = new Board(19);
+        board.set(0, 0, Stone.BLACK);
+        board.set(18, 18, Stone.BLACK);
+        board.set(9, 9, Stone.WHITE);
+
+        assertEquals(2, board.count(Stone.BLACK));
+        assertEquals(1, board.count(Stone.WHITE));
+        assertEquals(361 - 3, board.count(Stone.EMPTY));
+    }
+
+    @Test
+    void testNeighbourShiftMatchesCoordinates() {
+        for (int size : new int[]{9, 13, 19}) {
+            Board board = new Board(size);
+            BoardGeometry g = board.geometry();
+
+            for (int x = 0; x < size; x++) {
+                for (int y = 0; y < size; y++) {
+                    long[] src = g.newSet();
+                    int i = g.index(x, y);
+                    src[i >>> 6] |= 1L << i;
+
+                    long[] dst = g.newSet();
+                    g.neighbours(src, dst);
+
+                    int expected = 0;
+                    int[][] dirs = {{1, 0}, {-1, 0}, {0, 1}, {0, -1}};
+                    for (int[] d : dirs) {
+                        if (board.inBounds(x + d[0], y + d[1])) {
+                            int n = g.index(x + d[0], y + d[1]);
+                            assertTrue((dst[n >>> 6] & (1L << n)) != 0);
+                            expected++;
+                        }
+                    }
+                    assertEquals(expected, BoardGeometry.count(dst));
+                }
+            }
+        }
+    }
+
+    @Test
+    void testAdjacencyTableDegrees() {
+        BoardGeometry g = new Board(9).geometry();
+
+        assertEquals(2, g.adjacentStart[g.index(0, 0) + 1] - g.adjacentStart[g.index(0, 0)]);
+        assertEquals(3, g.adjacentStart[g.index(0, 4) + 1] - g.adjacentStart[g.index(0, 4)]);
+        assertEquals(4, g.adjacentStart[g.index(4, 4) + 1] - g.adjacentStart[g.index(4, 4)]);
+        assertEquals(g.adjacent.length, g.adjacentStart[g.points]);
+    }
+
+    @Test
+    void testWordsPerColourScaleWithSize() {
+        assertEquals(2, new Board(9).geometry().words);
+        assertEquals(3, new Board(13).geometry().words);
+        assertEquals(6, new Board(19).geometry().words);
+    }
+
+    @Test
+    void testSnapshotSharesUnchangedColour() {
+        Board board = new Board(19);
+        board.set(3, 3, Stone.BLACK);
+        board.set(15, 15, Stone.WHITE);
+        BoardSnapshot first = board.snapshot();
+
+        board.set(4, 4, Stone.BLACK);
+        BoardSnapshot second = board.snapshot(first);
+
+        assertSame(first.bits(Stone.WHITE), second.bits(Stone.WHITE));
+        assertNotSame(first.bits(Stone.BLACK), second.bits(Stone.BLACK));
+        assertEquals(Stone.EMPTY, first.get(4, 4));
+        assertEquals(Stone.BLACK, second.get(4, 4));
+        assertEquals(board.toString(), second.toString());
+        assertEquals(board, second.toBoard());
+        assertTrue(second.matches(board));
+    }
 }
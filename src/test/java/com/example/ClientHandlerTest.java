@@ -0,0 +1,56 @@
+package com.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.lang.ref.WeakReference;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Test długiej partii w protokole serializacji: połączenie nie może przechowywać wysłanych stanów.
+ */
+class ClientHandlerTest {
+
+    private static final int MOVES = 5000;
+
+    @Test
+    void testSerializedStreamDoesNotRetainSentStates() throws Exception {
+        try (ServerSocket server = new ServerSocket(0);
+             Socket client = new Socket("localhost", server.getLocalPort());
+             Socket accepted = server.accept()) {
+            ObjectOutputStream clientOut = new ObjectOutputStream(client.getOutputStream());
+            clientOut.flush();
+            ClientHandler handler = new ClientHandler(accepted);
+            handler.attach(mock(GameSession.class), Stone.BLACK);
+            handler.start(task -> Thread.ofVirtual().start(task));
+            ObjectInputStream clientIn = new ObjectInputStream(client.getInputStream());
+            client.setSoTimeout(5000);
+
+            List<WeakReference<GameState>> early = new ArrayList<>();
+            Board board = new Board(19);
+            for (int k = 0; k < MOVES; k++) {
+                board.set(k % 19, (k / 19) % 19, k % 2 == 0 ? Stone.BLACK : Stone.WHITE);
+                GameState state = new GameState(board.toString(), "Move " + k, false, 19, 0, 0,
+                        k, GameState.KEYFRAME, null);
+                if (k < 100) early.add(new WeakReference<>(state));
+                handler.sendState(new EncodedState(state));
+                assertEquals(k, ((GameState) clientIn.readObject()).version);
+            }
+
+            for (int attempt = 0; attempt < 20 && early.stream().anyMatch(ref -> ref.get() != null); attempt++) {
+                System.gc();
+                Thread.sleep(50);
+            }
+            assertTrue(early.stream().allMatch(ref -> ref.get() == null),
+                    "states sent early in the game are still reachable");
+            handler.close();
+        }
+    }
+}
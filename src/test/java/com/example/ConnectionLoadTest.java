@@ -0,0 +1,113 @@
+package com.example;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.io.ObjectOutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Test obciążeniowy: porównuje pamięć i liczbę wątków systemowych potrzebnych
+ * do utrzymania wielu bezczynnych połączeń w wątkach systemowych i wirtualnych.
+ * Uruchamiany tylko na żądanie:
+ * {@code mvn test -Dtest=ConnectionLoadTest -Dgo.loadtest=true [-Dgo.loadtest.connections=5000]}.
+ */
+@EnabledIfSystemProperty(named = "go.loadtest", matches = "true")
+class ConnectionLoadTest {
+
+    private static final int CONNECTIONS = Integer.getInteger("go.loadtest.connections", 2000);
+
+    @Test
+    void testVirtualThreadsUseFewerResourcesPerConnection() throws Exception {
+        Usage platform = measure("platform");
+        Usage virtual = measure("virtual");
+
+        System.out.printf("%d idle connections%n", CONNECTIONS);
+        System.out.printf("platform: %s%n", platform);
+        System.out.printf("virtual:  %s%n", virtual);
+
+        assertTrue(virtual.threadsPerConnection() < platform.threadsPerConnection());
+    }
+
+    /** Otwiera {@link #CONNECTIONS} połączeń z blokującą pętlą odbioru i mierzy przyrost zasobów. */
+    private Usage measure(String mode) throws Exception {
+        GameSession session = mock(GameSession.class);
+        List<Socket> sockets = new ArrayList<>(2 * CONNECTIONS);
+        ExecutorService executor = ServerMain.connectionExecutor(mode);
+
+        try (ServerSocket server = new ServerSocket(0, CONNECTIONS)) {
+            Usage before = Usage.now();
+            for (int k = 0; k < CONNECTIONS; k++) {
+                Socket client = new Socket("localhost", server.getLocalPort());
+                new ObjectOutputStream(client.getOutputStream()).flush();
+                Socket accepted = server.accept();
+                sockets.add(client);
+                sockets.add(accepted);
+                executor.execute(new ClientHandler(accepted, Stone.BLACK, session));
+            }
+            Thread.sleep(500);
+            return Usage.now().minus(before);
+        } finally {
+            for (Socket s : sockets) s.close();
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+        }
+    }
+
+    /** Zużycie zasobów procesu: sterta, pamięć rezydentna i wątki systemowe. */
+    private static final class Usage {
+        final long heap;
+        final long rss;
+        final int threads;
+
+        Usage(long heap, long rss, int threads) {
+            this.heap = heap;
+            this.rss = rss;
+            this.threads = threads;
+        }
+
+        static Usage now() throws Exception {
+            System.gc();
+            Runtime rt = Runtime.getRuntime();
+            return new Usage(rt.totalMemory() - rt.freeMemory(), residentBytes(),
+                    ManagementFactory.getThreadMXBean().getThreadCount());
+        }
+
+        Usage minus(Usage base) {
+            return new Usage(heap - base.heap, rss - base.rss, threads - base.threads);
+        }
+
+        double threadsPerConnection() {
+            return (double) threads / CONNECTIONS;
+        }
+
+        /** Pamięć rezydentna procesu (Linux) lub 0, jeśli niedostępna. */
+        private static long residentBytes() throws Exception {
+            Path status = Path.of("/proc/self/status");
+            if (!Files.exists(status)) return 0;
+            for (String line : Files.readAllLines(status)) {
+                if (line.startsWith("VmRSS:")) {
+                    return 1024 * Long.parseLong(line.replaceAll("[^0-9]", ""));
+                }
+            }
+            return 0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("heap %d B/conn, rss %d B/conn, %d OS threads (%.2f/conn)",
+                    heap / CONNECTIONS, rss / CONNECTIONS, threads, threadsPerConnection());
+        }
+    }
+}
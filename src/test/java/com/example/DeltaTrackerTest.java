@@ -0,0 +1,81 @@
+package com.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Testy jednostkowe wersjonowania planszy i stanów różnicowych.
+ */
+class DeltaTrackerTest {
+
+    private static GameState delta(Board board, int[] changes, int since, int version) {
+        return new GameState(null, "", false, board.getSize(), 0, 0, version, since, changes);
+    }
+
+    @Test
+    void testCaptureSendsOnlyChangedPoints() {
+        RulesEngine rules = new RulesEngine();
+        Board board = new Board(9);
+        DeltaTracker deltas = new DeltaTracker(board.geometry());
+        rules.play(board, 1, 0, Stone.BLACK);
+        rules.play(board, 0, 0, Stone.WHITE);
+        int before = deltas.update(board, null);
+        String text = board.toString();
+
+        rules.play(board, 0, 1, Stone.BLACK);
+        int after = deltas.update(board, null);
+
+        int[] changes = deltas.changesSince(before);
+        assertEquals(before + 1, after);
+        assertEquals(2, changes.length);
+        assertEquals(board.toString(), delta(board, changes, before, after).applyTo(text));
+        assertEquals(0, deltas.changesSince(after).length);
+        assertEquals(after, deltas.update(board, null));
+    }
+
+    @Test
+    void testDeadMarksAreVersioned() {
+        Board board = new Board(9);
+        board.set(2, 2, Stone.WHITE);
+        board.set(6, 6, Stone.BLACK);
+        DeltaTracker deltas = new DeltaTracker(board.geometry());
+        int before = deltas.update(board, null);
+        String text = board.toString();
+
+        long[] dead = board.geometry().newSet();
+        int i = board.geometry().index(2, 2);
+        dead[i >>> 6] |= 1L << i;
+        int after = deltas.update(board, dead);
+
+        assertArrayEquals(new int[]{i << 3 | 4}, deltas.changesSince(before));
+        assertEquals(board.toString(dead), delta(board, deltas.changesSince(before), before, after).applyTo(text));
+    }
+
+    @Test
+    void testOldVersionsNeedKeyframe() {
+        RulesEngine rules = new RulesEngine();
+        Board board = new Board(19);
+        DeltaTracker deltas = new DeltaTracker(board.geometry());
+        Random random = new Random(3);
+        Stone turn = Stone.BLACK;
+        int first = deltas.update(board, null);
+        String text = board.toString();
+        int version = first;
+
+        for (int k = 0; k < DeltaTracker.KEYFRAME_INTERVAL - 1; k++) {
+            while (rules.play(board, random.nextInt(19), random.nextInt(19), turn) < 0) { }
+            turn = turn.opposite();
+            version = deltas.update(board, null);
+        }
+        assertEquals(board.toString(), delta(board, deltas.changesSince(first), first, version).applyTo(text));
+
+        while (rules.play(board, random.nextInt(19), random.nextInt(19), turn) < 0) { }
+        int keyframe = deltas.update(board, null);
+        assertNull(deltas.changesSince(first));
+        assertNull(deltas.changesSince(version));
+        assertEquals(0, deltas.changesSince(keyframe).length);
+    }
+}
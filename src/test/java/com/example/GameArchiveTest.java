@@ -0,0 +1,248 @@
+package com.example;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Testy archiwum partii: kodowanie ruchów, indeks, odtwarzanie i naprawa niedokończonego zapisu.
+ */
+class GameArchiveTest {
+
+    @TempDir
+    Path dir;
+
+    /** Tworzy losową partię z dozwolonych ruchów (i kilku pasów). */
+    private static ArchivedGame randomGame(Random random, int size, int length) {
+        Board board = new Board(size);
+        RulesEngine rules = new RulesEngine();
+        short[] moves = new short[length];
+        Stone turn = Stone.BLACK;
+        for (int k = 0; k < length; k++) {
+            if (random.nextInt(20) > 0) {
+                for (int attempt = 0; attempt < 50; attempt++) {
+                    int x = random.nextInt(size);
+                    int y = random.nextInt(size);
+                    if (rules.play(board, x, y, turn) >= 0) {
+                        moves[k] = ArchivedGame.play(x, y, size);
+                        break;
+                    }
+                }
+            }
+            turn = turn.opposite();
+        }
+        return new ArchivedGame("black-" + length, "white-" + length, size, 6.5f, ScoringRules.AREA,
+                Stone.WHITE, ArchivedGame.Ending.RESIGNATION, 0, 0, moves);
+    }
+
+    @Test
+    void testGamesAreLocatedByIndexAfterReopen() throws Exception {
+        Random random = new Random(1);
+        List<ArchivedGame> games = new ArrayList<>();
+        try (GameArchive archive = new GameArchive(dir)) {
+            for (int k = 0; k < 30; k++) {
+                ArchivedGame game = randomGame(random, k % 3 == 0 ? 19 : k % 3 == 1 ? 13 : 9, 40 + k);
+                assertEquals(k, archive.append(game));
+                games.add(game);
+            }
+        }
+
+        try (GameArchive archive = new GameArchive(dir)) {
+            assertEquals(30, archive.size());
+            for (int k : new int[]{29, 0, 17, 4}) {
+                ArchivedGame read = archive.read(k);
+                ArchivedGame expected = games.get(k);
+                assertEquals(expected.blackPlayer, read.blackPlayer);
+                assertEquals(expected.whitePlayer, read.whitePlayer);
+                assertEquals(expected.size, read.size);
+                assertEquals(6.5f, read.komi);
+                assertEquals(ScoringRules.AREA, read.scoring);
+                assertEquals(Stone.WHITE, read.winner);
+                assertEquals(ArchivedGame.Ending.RESIGNATION, read.ending);
+                assertArrayEquals(expected.moves, read.moves);
+            }
+        }
+    }
+
+    @Test
+    void testMovesTakeOneByteOnSmallBoardsAndTwoOn19() throws Exception {
+        short[] moves = new short[100];
+        try (GameArchive archive = new GameArchive(dir)) {
+            archive.append(new ArchivedGame("", "", 9, 6.5f, ScoringRules.TERRITORY, Stone.BLACK,
+                    ArchivedGame.Ending.TIMEOUT, 0, 0, moves));
+        }
+        assertEquals(GameArchive.HEADER + 4 + 100, Files.size(dir.resolve("games.dat")));
+
+        try (GameArchive archive = new GameArchive(dir)) {
+            archive.append(new ArchivedGame("", "", 19, 6.5f, ScoringRules.TERRITORY, Stone.BLACK,
+                    ArchivedGame.Ending.TIMEOUT, 0, 0, moves));
+        }
+        assertEquals(2 * (GameArchive.HEADER + 4) + 100 + 200, Files.size(dir.resolve("games.dat")));
+        assertEquals(16, Files.size(dir.resolve("games.idx")));
+    }
+
+    @Test
+    void testBulkReplayMatchesGameByGameReplay() throws Exception {
+        Random random = new Random(2);
+        List<ArchivedGame> games = new ArrayList<>();
+        try (GameArchive archive = new GameArchive(dir)) {
+            for (int k = 0; k < 3000; k++) {
+                ArchivedGame game = randomGame(random, k % 2 == 0 ? 9 : 19, 30 + k % 50);
+                archive.append(game);
+                games.add(game);
+            }
+
+            BoardSnapshot[] finals = new BoardSnapshot[games.size()];
+            long moves = archive.replay(game -> finals[game.index()] = game.board().snapshot());
+            long parallel = archive.replayParallel(game -> {
+                assertEquals(finals[game.index()], game.board().snapshot());
+                assertEquals(6.5f, game.komi());
+            });
+
+            assertEquals(moves, parallel);
+            assertEquals(games.stream().mapToLong(g -> g.moves.length).sum(), moves);
+            for (int k = 0; k < games.size(); k += 97) {
+                assertEquals(games.get(k).replay().snapshot(), finals[k]);
+            }
+        }
+    }
+
+    @Test
+    void testReplayWhileAppendingSeesOnlyCompleteGames() throws Exception {
+        Random random = new Random(5);
+        ArchivedGame[] games = new ArchivedGame[2000];
+        for (int k = 0; k < games.length; k++) games[k] = randomGame(random, k % 2 == 0 ? 9 : 19, 20 + k % 30);
+        try (GameArchive archive = new GameArchive(dir)) {
+            Thread appender = new Thread(() -> {
+                try {
+                    for (ArchivedGame game : games) archive.append(game);
+                } catch (Exception e) {
+                    throw new AssertionError(e);
+                }
+            });
+            appender.start();
+            while (appender.isAlive()) {
+                int[] replayed = {0};
+                archive.replay(game -> replayed[0]++);
+                assertTrue(replayed[0] <= games.length);
+            }
+            appender.join();
+            assertEquals(games.length, archive.size());
+        }
+    }
+
+    @Test
+    void testTornTailIsDiscardedOnOpen() throws Exception {
+        Random random = new Random(3);
+        try (GameArchive archive = new GameArchive(dir)) {
+            archive.append(randomGame(random, 9, 20));
+            archive.append(randomGame(random, 9, 30));
+        }
+        long complete = Files.size(dir.resolve("games.dat"));
+        try (FileChannel data = FileChannel.open(dir.resolve("games.dat"), StandardOpenOption.WRITE);
+             FileChannel index = FileChannel.open(dir.resolve("games.idx"), StandardOpenOption.WRITE)) {
+            data.write(ByteBuffer.wrap(new byte[]{9, 0, 1, 1, 0, 0}), complete);
+            index.write(ByteBuffer.allocate(8).putLong(0, complete), 16);
+        }
+
+        try (GameArchive archive = new GameArchive(dir)) {
+            assertEquals(2, archive.size());
+            assertEquals(complete, Files.size(dir.resolve("games.dat")));
+            ArchivedGame next = randomGame(random, 13, 10);
+            assertEquals(2, archive.append(next));
+            assertArrayEquals(next.moves, archive.read(2).moves);
+            assertEquals(30, archive.read(1).moves.length);
+        }
+    }
+
+    @Test
+    void testSubmittedGamesAreWrittenBeforeClose() throws Exception {
+        Random random = new Random(4);
+        try (GameArchive archive = new GameArchive(dir)) {
+            for (int k = 0; k < 20; k++) archive.submit(randomGame(random, 9, 10 + k));
+        }
+
+        try (GameArchive archive = new GameArchive(dir)) {
+            assertEquals(20, archive.size());
+            assertEquals(29, archive.read(19).moves.length);
+        }
+    }
+
+    @Test
+    void testFinishedSessionIsArchived() throws Exception {
+        try (GameArchive archive = new GameArchive(dir, Runnable::run)) {
+            ClientConnection black = mock(ClientConnection.class);
+            ClientConnection white = mock(ClientConnection.class);
+            when(black.getStone()).thenReturn(Stone.BLACK);
+            when(white.getStone()).thenReturn(Stone.WHITE);
+            GameSession session = new GameSession(black, white, 9, 6.5f, ScoringRules.TERRITORY, Runnable::run);
+            session.setArchive(archive);
+            session.start(Runnable::run);
+
+            session.handleMove(new Move(2, 2, false, false), black);
+            session.handleMove(new Move(-1, -1, true, false), white);
+            session.handleMove(new Move(6, 6, false, false), black);
+            session.handleMove(new Move(-1, -1, false, true), white);
+
+            assertEquals(1, archive.size());
+            ArchivedGame game = archive.read(0);
+            assertArrayEquals(new short[]{ArchivedGame.play(2, 2, 9), 0, ArchivedGame.play(6, 6, 9)}, game.moves);
+            assertEquals(Stone.BLACK, game.winner);
+            assertEquals(ArchivedGame.Ending.RESIGNATION, game.ending);
+            assertEquals(session.snapshot(), game.replay().snapshot());
+        }
+    }
+
+    /** Czeka (do 5 sekund), aż archiwum będzie zawierać podaną liczbę partii. */
+    private static void awaitGames(GameArchive archive, int expected) throws Exception {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (archive.size() < expected && System.currentTimeMillis() < deadline) Thread.sleep(10);
+        assertEquals(expected, archive.size());
+    }
+
+    @Test
+    void testGameLeftByBothPlayersHasNoWinner() throws Exception {
+        try (GameArchive archive = new GameArchive(dir, Runnable::run)) {
+            ClientConnection black = mock(ClientConnection.class);
+            ClientConnection white = mock(ClientConnection.class);
+            when(black.getStone()).thenReturn(Stone.BLACK);
+            when(white.getStone()).thenReturn(Stone.WHITE);
+            GameSession session = new GameSession(black, white, 9, 6.5f, ScoringRules.TERRITORY, Runnable::run);
+            session.setArchive(archive);
+            session.setReconnectGrace(50);
+            session.start(Runnable::run);
+
+            session.disconnected(black);
+            session.disconnected(white);
+
+            awaitGames(archive, 1);
+            assertEquals(Stone.EMPTY, archive.read(0).winner);
+            assertEquals(ArchivedGame.Ending.DISCONNECT, archive.read(0).ending);
+        }
+    }
+
+    @Test
+    void testRecoveredGameNobodyReturnsToHasNoWinner() throws Exception {
+        try (GameArchive archive = new GameArchive(dir, Runnable::run)) {
+            GameSession session = new GameSession(9, 6.5f, ScoringRules.TERRITORY, 11, 12);
+            session.setArchive(archive);
+            session.setReconnectGrace(50);
+            session.resume(Runnable::run);
+
+            awaitGames(archive, 1);
+            assertTrue(session.isGameOver());
+            assertEquals(Stone.EMPTY, archive.read(0).winner);
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package com.example;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Testy dziennika partii: odczyt po ponownym otwarciu, segmenty i odtwarzanie sesji po awarii.
+ */
+class GameJournalTest {
+
+    @TempDir
+    Path dir;
+
+    private static long segments(Path dir) throws Exception {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.count();
+        }
+    }
+
+    @Test
+    void testUnfinishedGamesSurviveReopenAcrossSegments() throws Exception {
+        try (GameJournal journal = new GameJournal(dir, 10 * GameJournal.RECORD)) {
+            journal.started(1, 9, 6.5f, ScoringRules.AREA, 11, 12);
+            journal.started(2, 9, 6.5f, ScoringRules.TERRITORY, 21, 22);
+            for (int k = 0; k < 20; k++) {
+                journal.append(1, GameJournal.MOVE, k % 2 == 0 ? Stone.BLACK : Stone.WHITE, k % 9, k / 9, 0);
+                journal.append(2, GameJournal.PASS, Stone.BLACK, 0, 0, 0);
+            }
+            journal.append(2, GameJournal.END, Stone.EMPTY, 0, 0, 0);
+        }
+        assertTrue(segments(dir) > 3);
+
+        try (GameJournal journal = new GameJournal(dir, 10 * GameJournal.RECORD)) {
+            List<GameJournal.Record> records = journal.recovered();
+            assertEquals(23, records.size());
+            assertTrue(records.stream().allMatch(r -> r.game == 1));
+            assertEquals(GameJournal.START, records.get(0).type);
+            assertEquals(6.5f, Float.intBitsToFloat((int) records.get(0).value));
+            assertEquals(ScoringRules.AREA, ScoringRules.values()[records.get(0).y]);
+            assertEquals(12, records.get(2).value);
+            GameJournal.Record last = records.get(22);
+            assertEquals(Stone.WHITE, last.stone);
+            assertEquals(19 % 9, last.x);
+            assertEquals(19 / 9, last.y);
+        }
+        assertEquals(3, segments(dir));
+    }
+
+    @Test
+    void testCorruptRecordEndsReplay() throws Exception {
+        try (GameJournal journal = new GameJournal(dir)) {
+            journal.started(1, 9, 6.5f, ScoringRules.TERRITORY, 11, 12);
+            journal.append(1, GameJournal.MOVE, Stone.BLACK, 4, 4, 0);
+            journal.append(1, GameJournal.MOVE, Stone.WHITE, 5, 5, 0);
+        }
+        try (Stream<Path> files = Files.list(dir); RandomAccessFile file =
+                new RandomAccessFile(files.findFirst().orElseThrow().toFile(), "rw")) {
+            file.seek(4L * GameJournal.RECORD + 18);
+            file.write(6);
+        }
+
+        try (GameJournal journal = new GameJournal(dir)) {
+            List<GameJournal.Record> records = journal.recovered();
+            assertEquals(4, records.size());
+            assertEquals(4, records.get(3).x);
+        }
+    }
+
+    @Test
+    void testLobbyRecoversGameAndPlayerResumes() throws Exception {
+        ClientConnection black = mock(ClientConnection.class);
+        ClientConnection white = mock(ClientConnection.class);
+        when(black.getStone()).thenReturn(Stone.BLACK);
+        when(white.getStone()).thenReturn(Stone.WHITE);
+        when(black.isOpen()).thenReturn(true);
+
+        GameJournal journal = new GameJournal(dir);
+        Lobby lobby = new Lobby(9, 6.5f, ScoringRules.TERRITORY, Runnable::run, journal);
+        lobby.join(black);
+        lobby.join(white);
+        GameSession session = lobby.session(1);
+        ArgumentCaptor<EncodedState> sent = ArgumentCaptor.forClass(EncodedState.class);
+        verify(black, timeout(2000)).sendState(sent.capture());
+        long token = sent.getValue().state().token;
+
+        session.handleMove(new Move(2, 2, false, false), black);
+        session.handleMove(new Move(3, 3, false, false), white);
+        session.handleMove(new Move(-1, -1, true, false), black);
+        assertEquals(3, session.snapshots().size());
+        journal.close();
+
+        Lobby restarted = new Lobby(9, 6.5f, ScoringRules.TERRITORY, Runnable::run, new GameJournal(dir));
+        GameSession recovered = restarted.session(1);
+        assertNotNull(recovered);
+        assertEquals(session.snapshot(), recovered.snapshot());
+
+        assertFalse(restarted.resume(token ^ 1, 5, mock(ClientConnection.class)));
+        ClientConnection whiteBack = mock(ClientConnection.class);
+        when(whiteBack.getStone()).thenReturn(Stone.WHITE);
+        long whiteToken = recovered.token(Stone.WHITE);
+        assertTrue(restarted.resume(whiteToken, 5, whiteBack));
+
+        ArgumentCaptor<EncodedState> resumed = ArgumentCaptor.forClass(EncodedState.class);
+        verify(whiteBack, timeout(2000)).sendState(resumed.capture());
+        GameState state = resumed.getValue().state();
+        assertFalse(state.isDelta());
+        assertTrue(state.yourTurn);
+        assertEquals('B', state.board.split("\n")[2].charAt(4));
+
+        recovered.handleMove(new Move(4, 4, false, false), whiteBack);
+        assertEquals(4, recovered.snapshots().size());
+        assertEquals(Stone.WHITE, recovered.snapshot().get(4, 4));
+        assertEquals(token, recovered.token(Stone.BLACK));
+    }
+
+    @Test
+    void testGameFinishedDuringRecoveryIsArchived() throws Exception {
+        try (GameJournal journal = new GameJournal(dir.resolve("journal"))) {
+            journal.started(1, 9, 6.5f, ScoringRules.TERRITORY, 11, 12);
+            journal.append(1, GameJournal.MOVE, Stone.BLACK, 2, 2, 0);
+            journal.append(1, GameJournal.PASS, Stone.WHITE, 0, 0, 0);
+            journal.append(1, GameJournal.PASS, Stone.BLACK, 0, 0, 0);
+            journal.append(1, GameJournal.DONE, Stone.WHITE, 0, 0, 0);
+            journal.append(1, GameJournal.DONE, Stone.BLACK, 0, 0, 0);
+        }
+
+        try (GameJournal journal = new GameJournal(dir.resolve("journal"));
+             GameArchive archive = new GameArchive(dir.resolve("archive"), Runnable::run)) {
+            Lobby lobby = new Lobby(9, 6.5f, ScoringRules.TERRITORY, Runnable::run, journal, archive);
+
+            assertNull(lobby.session(1));
+            assertEquals(1, archive.size());
+            ArchivedGame game = archive.read(0);
+            assertEquals(ArchivedGame.Ending.SCORE, game.ending);
+            assertEquals(Stone.BLACK, game.winner);
+            assertArrayEquals(new short[]{ArchivedGame.play(2, 2, 9), 0, 0}, game.moves);
+        }
+        try (GameJournal journal = new GameJournal(dir.resolve("journal"))) {
+            assertTrue(journal.recovered().isEmpty());
+        }
+    }
+
+    @Test
+    void testSegmentsOfFinishedGamesAreDeletedWhileRunning() throws Exception {
+        try (GameJournal journal = new GameJournal(dir, 10 * GameJournal.RECORD)) {
+            journal.started(1, 9, 6.5f, ScoringRules.AREA, 11, 12);
+            for (long game = 2; game < 30; game++) {
+                journal.started(game, 9, 6.5f, ScoringRules.AREA, 1, 2);
+                journal.append(game, GameJournal.MOVE, Stone.BLACK, 0, 0, 0);
+                journal.append(game, GameJournal.END, Stone.EMPTY, 0, 0, 0);
+            }
+            assertTrue(segments(dir) > 5);
+
+            journal.append(1, GameJournal.END, Stone.EMPTY, 0, 0, 0);
+            for (long game = 30; game < 40; game++) {
+                journal.started(game, 9, 6.5f, ScoringRules.AREA, 1, 2);
+                journal.append(game, GameJournal.END, Stone.EMPTY, 0, 0, 0);
+            }
+            assertTrue(segments(dir) <= 2);
+        }
+    }
+
+    @Test
+    void testGameIsNoLongerJournaledAfterLostRecord() throws Exception {
+        try (GameJournal journal = new GameJournal(dir, 10 * GameJournal.RECORD)) {
+            journal.started(1, 9, 6.5f, ScoringRules.AREA, 11, 12);
+            for (int k = 0; k < 7; k++) journal.append(1, GameJournal.MOVE, Stone.BLACK, k, 0, 0);
+            Path blocker = Files.createFile(dir.resolve("journal-2.log"));
+
+            journal.append(1, GameJournal.MOVE, Stone.BLACK, 7, 0, 0);
+            Files.delete(blocker);
+            journal.append(1, GameJournal.MOVE, Stone.BLACK, 8, 0, 0);
+            journal.started(2, 9, 6.5f, ScoringRules.AREA, 21, 22);
+        }
+
+        try (GameJournal journal = new GameJournal(dir, 10 * GameJournal.RECORD)) {
+            List<GameJournal.Record> records = journal.recovered();
+            assertEquals(3, records.size());
+            assertTrue(records.stream().allMatch(r -> r.game == 2));
+        }
+    }
+
+    @Test
+    void testIncompleteGameIsClosedByRecovery() throws Exception {
+        try (GameJournal journal = new GameJournal(dir)) {
+            journal.append(1, GameJournal.START, Stone.EMPTY, 9, 0, Float.floatToIntBits(6.5f));
+        }
+
+        try (GameJournal journal = new GameJournal(dir)) {
+            assertEquals(1, journal.recovered().size());
+            Lobby lobby = new Lobby(9, 6.5f, ScoringRules.TERRITORY, Runnable::run, journal);
+            assertNull(lobby.session(1));
+        }
+        try (GameJournal journal = new GameJournal(dir)) {
+            assertTrue(journal.recovered().isEmpty());
+        }
+    }
+}
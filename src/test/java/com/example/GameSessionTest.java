@@ -0,0 +1,193 @@
+package com.example;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Testy rozsyłania stanu gry do graczy i widzów oraz zdarzeń przetwarzanych przez skrzynkę sesji.
+ */
+class GameSessionTest {
+
+    private ClientConnection black;
+    private ClientConnection white;
+    private GameSession session;
+
+    @BeforeEach
+    void setUp() {
+        black = mock(ClientConnection.class);
+        white = mock(ClientConnection.class);
+        when(black.getStone()).thenReturn(Stone.BLACK);
+        when(white.getStone()).thenReturn(Stone.WHITE);
+        session = new GameSession(black, white, 9, 6.5f, ScoringRules.TERRITORY, Runnable::run);
+        session.start(Runnable::run);
+    }
+
+    private static ClientConnection spectator() {
+        ClientConnection spectator = mock(ClientConnection.class);
+        when(spectator.getStone()).thenReturn(Stone.EMPTY);
+        return spectator;
+    }
+
+    @Test
+    void testSpectatorsShareOneEncodedStatePerMove() {
+        List<ClientConnection> spectators = new ArrayList<>();
+        for (int k = 0; k < 200; k++) {
+            ClientConnection spectator = spectator();
+            session.addSpectator(spectator);
+            spectators.add(spectator);
+        }
+        assertEquals(200, session.spectatorCount());
+
+        session.handleMove(new Move(4, 4, false, false), black);
+
+        EncodedState first = null;
+        for (ClientConnection spectator : spectators) {
+            ArgumentCaptor<EncodedState> sent = ArgumentCaptor.forClass(EncodedState.class);
+            verify(spectator, times(2)).sendState(sent.capture());
+            EncodedState update = sent.getAllValues().get(1);
+            if (first == null) first = update;
+            assertSame(first, update);
+        }
+        assertTrue(first.state().isDelta());
+        assertEquals("WHITE to play.", first.state().message);
+        assertFalse(first.state().yourTurn);
+    }
+
+    @Test
+    void testSpectatorMovesAreIgnoredAndDisconnectKeepsGame() {
+        ClientConnection spectator = spectator();
+        session.addSpectator(spectator);
+
+        session.handleMove(new Move(4, 4, false, false), spectator);
+        session.handleMove(new Move(-1, -1, false, true), spectator);
+        session.disconnected(spectator);
+
+        assertFalse(session.isGameOver());
+        assertEquals(0, session.spectatorCount());
+        assertEquals(Stone.EMPTY, session.snapshot().get(4, 4));
+        verify(spectator).attach(session, Stone.EMPTY);
+    }
+
+    @Test
+    void testConnectionsAreClosedAfterGameEnds() {
+        ClientConnection spectator = spectator();
+        session.addSpectator(spectator);
+
+        session.handleMove(new Move(-1, -1, false, true), black);
+
+        InOrder order = inOrder(white);
+        order.verify(white, atLeastOnce()).sendState(any());
+        order.verify(white).finish();
+        verify(black).finish();
+        verify(spectator).finish();
+        assertEquals(0, session.spectatorCount());
+
+        ClientConnection late = spectator();
+        session.addSpectator(late);
+        verify(late).sendState(any());
+        verify(late).finish();
+    }
+
+    @Test
+    void testScoredGameClosesConnections() {
+        session.handleMove(new Move(-1, -1, true, false), black);
+        session.handleMove(new Move(-1, -1, true, false), white);
+        session.handleMove(new Move(-1, -1, false, false, true), black);
+        verify(black, never()).finish();
+        session.handleMove(new Move(-1, -1, false, false, true), white);
+
+        assertTrue(session.isGameOver());
+        verify(black).finish();
+        verify(white).finish();
+    }
+
+    @Test
+    void testMoveTimeoutEndsGame() {
+        ClientConnection slow = mock(ClientConnection.class);
+        ClientConnection fast = mock(ClientConnection.class);
+        when(slow.getStone()).thenReturn(Stone.BLACK);
+        when(fast.getStone()).thenReturn(Stone.WHITE);
+        GameSession timed = new GameSession(slow, fast, 9, 6.5f, ScoringRules.TERRITORY);
+        timed.setMoveTimeout(50);
+        timed.start(Runnable::run);
+
+        ArgumentCaptor<EncodedState> sent = ArgumentCaptor.forClass(EncodedState.class);
+        verify(fast, timeout(2000).times(2)).sendState(sent.capture());
+        assertEquals("Opponent ran out of time. You win.", sent.getValue().state().message);
+        assertTrue(timed.isGameOver());
+    }
+
+    @Test
+    void testEventsFromManyThreadsAreProcessedInOrder() throws Exception {
+        GameSession pooled = new GameSession(black, white, 9, 6.5f, ScoringRules.TERRITORY);
+        pooled.start(Runnable::run);
+        Thread[] threads = new Thread[8];
+        for (int t = 0; t < threads.length; t++) {
+            int column = t;
+            threads[t] = new Thread(() -> {
+                for (int y = 0; y < 9; y++) {
+                    pooled.handleMove(new Move(column, y, false, false), black);
+                    pooled.handleMove(new Move(column, y, false, false), white);
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) thread.join();
+
+        List<BoardSnapshot> positions = pooled.snapshots();
+        BoardSnapshot last = positions.get(positions.size() - 1);
+        assertEquals(last, pooled.snapshot());
+        assertTrue(positions.size() > 1);
+        assertEquals(positions.size(), positions.stream().distinct().count());
+    }
+
+    @Test
+    void testReconnectResumesFromClientVersion() {
+        ArgumentCaptor<EncodedState> toBlack = ArgumentCaptor.forClass(EncodedState.class);
+        ArgumentCaptor<EncodedState> toWhite = ArgumentCaptor.forClass(EncodedState.class);
+        verify(black).sendState(toBlack.capture());
+        verify(white).sendState(toWhite.capture());
+        long token = toBlack.getValue().state().token;
+        assertNotEquals(0, token);
+        assertNotEquals(token, toWhite.getValue().state().token);
+
+        session.handleMove(new Move(4, 4, false, false), black);
+        verify(black, times(2)).sendState(toBlack.capture());
+        int version = toBlack.getValue().state().version;
+
+        session.disconnected(black);
+        verify(white, times(3)).sendState(toWhite.capture());
+        assertEquals("Opponent disconnected. Waiting for reconnection...", toWhite.getValue().state().message);
+        session.handleMove(new Move(5, 5, false, false), white);
+
+        ClientConnection unknown = mock(ClientConnection.class);
+        session.reconnect(token + 1, version, unknown);
+        verify(unknown).close();
+
+        ClientConnection returning = mock(ClientConnection.class);
+        when(returning.getStone()).thenReturn(Stone.BLACK);
+        session.reconnect(token, version, returning);
+        verify(returning).attach(session, Stone.BLACK);
+        verify(black).close();
+
+        ArgumentCaptor<EncodedState> resumed = ArgumentCaptor.forClass(EncodedState.class);
+        verify(returning).sendState(resumed.capture());
+        GameState state = resumed.getValue().state();
+        assertEquals(version, state.baseVersion);
+        assertArrayEquals(new int[]{(5 * 9 + 5) << 3 | 2}, state.changes);
+        assertTrue(state.yourTurn);
+
+        session.disconnected(black);
+        assertFalse(session.isGameOver());
+        session.handleMove(new Move(6, 6, false, false), returning);
+        assertEquals(Stone.BLACK, session.snapshot().get(6, 6));
+    }
+}
@@ -0,0 +1,117 @@
+package com.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Testy jednostkowe przyrostowego śledzenia łańcuchów i oddechów.
+ */
+class GroupTrackerTest {
+
+    @Test
+    void testMergeAndAtari() {
+        Board board = new Board(5);
+        GroupTracker groups = board.groups();
+
+        groups.place(0, Stone.BLACK);
+        groups.place(1, Stone.BLACK);
+        groups.place(2, Stone.WHITE);
+        groups.place(5, Stone.WHITE);
+
+        int h = groups.head(0);
+        assertEquals(h, groups.head(1));
+        assertEquals(2, groups.stones(h));
+        assertTrue(groups.inAtari(h));
+        assertEquals(6, groups.atariPoint(h));
+    }
+
+    @Test
+    void testExternalRemovalSplitsChain() {
+        Board board = new Board(5);
+        board.set(0, 0, Stone.BLACK);
+        board.set(0, 1, Stone.BLACK);
+        board.set(0, 2, Stone.BLACK);
+        GroupTracker groups = board.groups();
+        assertEquals(3, groups.stones(groups.head(0)));
+
+        board.set(0, 1, Stone.EMPTY);
+
+        assertNotEquals(groups.head(0), groups.head(2));
+        assertEquals(1, groups.stones(groups.head(0)));
+        assertEquals(1, groups.stones(groups.head(2)));
+    }
+
+    @Test
+    void testRandomGameMatchesFullSearch() {
+        GameSession session = mock(GameSession.class);
+        RulesEngine rules = new RulesEngine();
+        Board board = new Board(9);
+        Random random = new Random(7);
+        Stone turn = Stone.BLACK;
+
+        for (int k = 0; k < 2000; k++) {
+            Move move = new Move(random.nextInt(9), random.nextInt(9), false, false);
+            if (rules.applyMove(board, move, turn, session)) {
+                turn = turn.opposite();
+                assertConsistent(board);
+            }
+        }
+    }
+
+    @Test
+    void testUndoRestoresEveryPosition() {
+        RulesEngine rules = new RulesEngine();
+        Board board = new Board(9);
+        Random random = new Random(11);
+        List<Board> positions = new ArrayList<>();
+        Stone turn = Stone.BLACK;
+
+        for (int k = 0; k < 1000; k++) {
+            Board before = board.copy();
+            if (rules.play(board, random.nextInt(9), random.nextInt(9), turn) >= 0) {
+                positions.add(before);
+                turn = turn.opposite();
+            }
+        }
+        for (int k = positions.size() - 1; k >= 0; k--) {
+            assertTrue(rules.undo(board));
+            assertEquals(positions.get(k), board);
+            assertConsistent(board);
+        }
+    }
+
+    private void assertConsistent(Board board) {
+        GroupTracker groups = board.groups();
+        int size = board.getSize();
+        for (int i = 0; i < size * size; i++) {
+            if (board.get(i) == Stone.EMPTY) {
+                assertEquals(GroupTracker.NONE, groups.head(i));
+                continue;
+            }
+            Set<Integer> chain = new HashSet<>();
+            Set<Integer> liberties = new HashSet<>();
+            Deque<Integer> q = new ArrayDeque<>(List.of(i));
+            chain.add(i);
+            while (!q.isEmpty()) {
+                int p = q.poll();
+                int x = p / size, y = p % size;
+                int[][] dirs = {{1, 0}, {-1, 0}, {0, 1}, {0, -1}};
+                for (int[] d : dirs) {
+                    if (!board.inBounds(x + d[0], y + d[1])) continue;
+                    int n = (x + d[0]) * size + y + d[1];
+                    if (board.get(n) == Stone.EMPTY) liberties.add(n);
+                    else if (board.get(n) == board.get(i) && chain.add(n)) q.add(n);
+                }
+            }
+            int h = groups.head(i);
+            for (int p : chain) assertEquals(h, groups.head(p));
+            assertEquals(chain.size(), groups.stones(h));
+            assertEquals(!liberties.isEmpty(), groups.hasLiberty(h));
+            assertEquals(liberties.size() == 1, groups.inAtari(h));
+        }
+    }
+}
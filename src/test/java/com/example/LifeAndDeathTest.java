@@ -0,0 +1,120 @@
+package com.example;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Testy jednostkowe rozpoznawania martwych kamieni.
+ */
+class LifeAndDeathTest {
+
+    private LifeAndDeath lifeAndDeath;
+    private Board board;
+
+    @BeforeEach
+    void setUp() {
+        lifeAndDeath = new LifeAndDeath();
+        board = new Board(5);
+        for (int y = 0; y < 5; y++) board.set(1, y, Stone.BLACK);
+        board.set(0, 0, Stone.BLACK);
+        board.set(0, 2, Stone.BLACK);
+        board.set(0, 4, Stone.BLACK);
+    }
+
+    private static boolean contains(long[] set, int i) {
+        return (set[i >>> 6] & 1L << i) != 0;
+    }
+
+    @Test
+    void testTwoEyedGroupIsUnconditionallyAlive() {
+        long[] alive = lifeAndDeath.unconditionallyAlive(board, Stone.BLACK);
+
+        assertTrue(contains(alive, board.geometry().index(1, 2)));
+        assertTrue(contains(alive, board.geometry().index(0, 4)));
+    }
+
+    @Test
+    void testOneEyedGroupIsNotUnconditionallyAlive() {
+        board.set(0, 3, Stone.BLACK);
+
+        long[] alive = lifeAndDeath.unconditionallyAlive(board, Stone.BLACK);
+
+        assertEquals(0, BoardGeometry.count(alive));
+    }
+
+    @Test
+    void testStoneInsideOpponentTerritoryIsProposedDead() {
+        board.set(3, 2, Stone.WHITE);
+
+        long[] dead = lifeAndDeath.deadStones(board);
+
+        assertEquals(1, BoardGeometry.count(dead));
+        assertTrue(contains(dead, board.geometry().index(3, 2)));
+    }
+
+    @Test
+    void testGroupOwningTerritoryIsNotProposedDead() {
+        board.set(0, 3, Stone.BLACK);
+
+        long[] dead = lifeAndDeath.deadStones(board);
+
+        assertEquals(0, BoardGeometry.count(dead));
+    }
+
+    @Test
+    void testDeadStonesAreRenderedInLowerCase() {
+        board.set(3, 2, Stone.WHITE);
+
+        String rendered = board.toString(lifeAndDeath.deadStones(board));
+
+        assertEquals("B B . w . ", rendered.split("\n")[2]);
+    }
+
+    /** Buduje kwadratową planszę z wierszy tekstu (wiersz to współrzędna y, znaki B, W i kropka). */
+    private static Board board(String... rows) {
+        Board board = new Board(rows.length);
+        for (int y = 0; y < rows.length; y++) {
+            for (int x = 0; x < rows.length; x++) {
+                char c = rows[y].charAt(x);
+                if (c != '.') board.set(x, y, c == 'B' ? Stone.BLACK : Stone.WHITE);
+            }
+        }
+        return board;
+    }
+
+    @Test
+    void testLivingWallWithDeadInvaderInsideIsNotProposedDead() {
+        Board walled = board(
+                "WWB....",
+                ".WB....",
+                "WWB....",
+                "WWB.W..",
+                "WWB....",
+                ".WB....",
+                "WWB....");
+        assertEquals(0, BoardGeometry.count(lifeAndDeath.unconditionallyAlive(walled, Stone.BLACK)));
+
+        long[] dead = lifeAndDeath.deadStones(walled);
+
+        assertEquals(1, BoardGeometry.count(dead));
+        assertTrue(contains(dead, walled.geometry().index(4, 3)));
+    }
+
+    @Test
+    void testBothGroupsInSekiAreAlive() {
+        Board seki = board(
+                "WWBBWBB",
+                ".WBBWB.",
+                "WWBBWBB",
+                "WWB.WBB",
+                "WWB.WBB",
+                ".WBWWB.",
+                "WWBWWBB");
+
+        long[] dead = lifeAndDeath.deadStones(seki);
+
+        assertEquals(0, BoardGeometry.count(dead));
+    }
+}
@@ -0,0 +1,170 @@
+package com.example;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.ObjectOutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Testy poczekalni: kojarzenie graczy w pary i usuwanie zakończonych sesji.
+ */
+class LobbyTest {
+
+    private ServerSocket server;
+    private final List<Socket> sockets = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = new ServerSocket(0);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        for (Socket s : sockets) s.close();
+        server.close();
+    }
+
+    /** Łączy klienta testowego i zwraca gniazdo po stronie serwera. */
+    private Socket connect(List<Socket> clients) throws Exception {
+        Socket client = new Socket("localhost", server.getLocalPort());
+        new ObjectOutputStream(client.getOutputStream()).flush();
+        Socket accepted = server.accept();
+        clients.add(client);
+        sockets.add(client);
+        sockets.add(accepted);
+        return accepted;
+    }
+
+    /** Czeka (do 5 sekund), aż liczba aktywnych sesji osiągnie podaną wartość. */
+    private static void awaitSessions(Lobby lobby, int expected) throws Exception {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (lobby.activeSessions() != expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(expected, lobby.activeSessions());
+    }
+
+    @Test
+    void testPlayersArePairedAndFinishedSessionsRemoved() throws Exception {
+        Lobby lobby = new Lobby(9, 6.5f, ScoringRules.TERRITORY);
+        lobby.setReconnectGrace(0);
+        List<Socket> clients = new ArrayList<>();
+
+        lobby.join(connect(clients));
+        lobby.join(connect(clients));
+        awaitSessions(lobby, 1);
+        lobby.join(connect(clients));
+        lobby.join(connect(clients));
+        awaitSessions(lobby, 2);
+
+        clients.get(0).close();
+        awaitSessions(lobby, 1);
+        assertNull(lobby.session(1));
+        assertNotNull(lobby.session(2));
+    }
+
+    @Test
+    void testPlayerWhoLeftWhileWaitingIsNotPaired() throws Exception {
+        Lobby lobby = new Lobby(9, 6.5f, ScoringRules.TERRITORY);
+        List<Socket> clients = new ArrayList<>();
+        lobby.join(connect(clients));
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!lobby.hasWaitingPlayer() && System.currentTimeMillis() < deadline) Thread.sleep(10);
+        assertTrue(lobby.hasWaitingPlayer());
+
+        clients.get(0).close();
+        deadline = System.currentTimeMillis() + 5000;
+        while (lobby.hasWaitingPlayer() && System.currentTimeMillis() < deadline) Thread.sleep(10);
+        assertFalse(lobby.hasWaitingPlayer());
+
+        lobby.join(connect(clients));
+        deadline = System.currentTimeMillis() + 5000;
+        while (!lobby.hasWaitingPlayer() && System.currentTimeMillis() < deadline) Thread.sleep(10);
+        assertEquals(0, lobby.activeSessions());
+        lobby.join(connect(clients));
+        awaitSessions(lobby, 1);
+    }
+
+    @Test
+    void testSilentClientDoesNotBlockNewGames() throws Exception {
+        Lobby lobby = new Lobby(9, 6.5f, ScoringRules.TERRITORY);
+        Socket silent = new Socket("localhost", server.getLocalPort());
+        sockets.add(silent);
+        Socket accepted = server.accept();
+        sockets.add(accepted);
+        lobby.join(accepted);
+
+        List<Socket> clients = new ArrayList<>();
+        lobby.join(connect(clients));
+        lobby.join(connect(clients));
+
+        awaitSessions(lobby, 1);
+    }
+
+    @Test
+    void testBinaryClientsNegotiateCompactProtocol() throws Exception {
+        Lobby lobby = new Lobby(9, 6.5f, ScoringRules.AREA);
+        Socket[] clients = new Socket[2];
+        for (int k = 0; k < 2; k++) {
+            clients[k] = new Socket("localhost", server.getLocalPort());
+            clients[k].setSoTimeout(5000);
+            clients[k].getOutputStream().write(WireProtocol.hello());
+            sockets.add(clients[k]);
+            Socket accepted = server.accept();
+            sockets.add(accepted);
+            lobby.join(accepted);
+        }
+        DataInputStream blackIn = new DataInputStream(clients[0].getInputStream());
+        byte[] reply = new byte[3];
+        blackIn.readFully(reply);
+        assertArrayEquals(WireProtocol.hello(), reply);
+
+        GameState started = (GameState) WireProtocol.read(blackIn);
+        assertTrue(started.yourTurn);
+        assertEquals(9, started.size);
+
+        clients[0].getOutputStream().write(WireProtocol.encodeMove(new Move(0, 0, false, false)));
+        GameState accepted = (GameState) WireProtocol.read(blackIn);
+        assertEquals("Move accepted", accepted.message);
+        assertEquals(started.version, accepted.baseVersion);
+        assertTrue(accepted.applyTo(started.board).startsWith("B "));
+    }
+
+    @Test
+    void testConnectionsAreClosedAfterResignation() throws Exception {
+        Lobby lobby = new Lobby(9, 6.5f, ScoringRules.AREA);
+        Socket[] clients = new Socket[2];
+        for (int k = 0; k < 2; k++) {
+            clients[k] = new Socket("localhost", server.getLocalPort());
+            clients[k].setSoTimeout(5000);
+            clients[k].getOutputStream().write(WireProtocol.hello());
+            sockets.add(clients[k]);
+            Socket accepted = server.accept();
+            sockets.add(accepted);
+            lobby.join(accepted);
+        }
+        DataInputStream whiteIn = new DataInputStream(clients[1].getInputStream());
+        whiteIn.readFully(new byte[3]);
+        WireProtocol.read(whiteIn);
+
+        clients[0].getOutputStream().write(WireProtocol.encodeMove(new Move(-1, -1, false, true)));
+        GameState last = null;
+        try {
+            while (true) last = (GameState) WireProtocol.read(whiteIn);
+        } catch (EOFException e) {
+            // serwer zamknął połączenie po wysłaniu stanu końcowego
+        }
+        assertNotNull(last);
+        assertEquals("Opponent resigned. You win.", last.message);
+        awaitSessions(lobby, 0);
+    }
+}
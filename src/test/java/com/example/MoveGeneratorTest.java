@@ -0,0 +1,100 @@
+package com.example;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Testy jednostkowe generatora dozwolonych ruchów.
+ */
+class MoveGeneratorTest {
+
+    private MoveGenerator generator;
+    private RulesEngine rules;
+
+    @BeforeEach
+    void setUp() {
+        generator = new MoveGenerator();
+        rules = new RulesEngine();
+    }
+
+    private static boolean isSet(long[] set, int i) {
+        return (set[i >>> 6] & (1L << i)) != 0;
+    }
+
+    @Test
+    void testEmptyBoardAllMovesLegal() {
+        Board board = new Board(9);
+        assertEquals(81, BoardGeometry.count(generator.legalMoves(board, Stone.BLACK)));
+    }
+
+    @Test
+    void testToPointsUsesPackedIndices() {
+        Board board = new Board(9);
+        board.set(0, 1, Stone.WHITE);
+        board.set(1, 0, Stone.WHITE);
+
+        List<Point> points = MoveGenerator.toPoints(generator.legalMoves(board, Stone.BLACK), 9);
+
+        assertEquals(78, points.size());
+        assertFalse(points.contains(new Point(0, 0)));
+        assertEquals(new Point(0, 2), points.get(0));
+        assertEquals(2, points.get(0).index(9));
+    }
+
+    @Test
+    void testSuicidePointsExcluded() {
+        Board board = new Board(5);
+        board.set(1, 0, Stone.WHITE);
+        board.set(0, 1, Stone.WHITE);
+        board.set(2, 1, Stone.WHITE);
+        board.set(1, 2, Stone.WHITE);
+
+        long[] black = generator.legalMoves(board, Stone.BLACK);
+        assertFalse(isSet(black, 1 * 5 + 1));
+        assertFalse(isSet(black, 0));
+    }
+
+    @Test
+    void testCaptureMakesSurroundedPointLegal() {
+        Board board = new Board(5);
+        board.set(0, 0, Stone.WHITE);
+        board.set(1, 1, Stone.WHITE);
+        board.set(0, 2, Stone.WHITE);
+        assertFalse(isSet(generator.legalMoves(board, Stone.BLACK), 1));
+
+        board.set(1, 0, Stone.BLACK);
+        assertTrue(isSet(generator.legalMoves(board, Stone.BLACK), 1));
+    }
+
+    @Test
+    void testRandomPositionsMatchPlayAndUndo() {
+        Random random = new Random(3);
+        Board board = new Board(9);
+        PositionHistory history = new PositionHistory(9);
+        Stone turn = Stone.BLACK;
+
+        for (int k = 0; k < 400; k++) {
+            long[] legal = generator.legalMoves(board, turn, history);
+            for (int i = 0; i < 81; i++) {
+                boolean expected = rules.play(board, i / 9, i % 9, turn) >= 0;
+                if (expected) {
+                    expected = !history.contains(board);
+                    rules.undo(board);
+                }
+                assertEquals(expected, isSet(legal, i), "point " + i + " at move " + k);
+            }
+
+            int i = random.nextInt(81);
+            if (isSet(legal, i)) {
+                rules.play(board, i / 9, i % 9, turn);
+                history.add(board);
+                turn = turn.opposite();
+            }
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package com.example;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Testy nieblokującego transportu: ramkowanie, przekazywanie ruchów i rozgłaszanie stanu.
+ */
+class NioServerTest {
+
+    private NioServer server;
+    private Lobby lobby;
+    private int port;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        lobby = new Lobby(9, 6.5f, ScoringRules.TERRITORY);
+        server = new NioServer(lobby, 2);
+        port = server.bind(0);
+        Thread acceptor = new Thread(server::serve);
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        server.close();
+    }
+
+    private static GameState receive(DataInputStream in) throws Exception {
+        return (GameState) Frames.read(in, Frames.MAX_SERVER_FRAME);
+    }
+
+    /**
+     * Łączy klienta serializacji; pierwszy gracz czeka, aż serwer umieści go w poczekalni,
+     * aby kolory nie zależały od kolejności obsługi nagłówków przez selektory.
+     */
+    private Socket connectSerialized(boolean first) throws Exception {
+        Socket socket = new Socket("localhost", port);
+        socket.setSoTimeout(5000);
+        socket.getOutputStream().write(Frames.STREAM_HEADER);
+        for (int k = 0; first && !lobby.hasWaitingPlayer() && k < 500; k++) Thread.sleep(10);
+        return socket;
+    }
+
+    private Socket connectBinary() throws Exception {
+        Socket socket = new Socket("localhost", port);
+        socket.setSoTimeout(5000);
+        socket.getOutputStream().write(WireProtocol.hello());
+        byte[] reply = new byte[3];
+        new DataInputStream(socket.getInputStream()).readFully(reply);
+        assertArrayEquals(WireProtocol.hello(), reply);
+        return socket;
+    }
+
+    @Test
+    void testMoveIsDeliveredAndBroadcastToBothPlayers() throws Exception {
+        try (Socket black = connectSerialized(true); Socket white = connectSerialized(false)) {
+            DataInputStream blackIn = new DataInputStream(black.getInputStream());
+            DataInputStream whiteIn = new DataInputStream(white.getInputStream());
+
+            assertTrue(receive(blackIn).yourTurn);
+            GameState whiteStart = receive(whiteIn);
+            assertFalse(whiteStart.yourTurn);
+
+            byte[] payload = Frames.encode(new Move(2, 3, false, false));
+            OutputStream out = black.getOutputStream();
+            out.write(new byte[]{0, 0});
+            out.flush();
+            Thread.sleep(50);
+            out.write(new byte[]{(byte) (payload.length >>> 8), (byte) payload.length});
+            out.write(payload, 0, 10);
+            out.flush();
+            Thread.sleep(50);
+            out.write(payload, 10, payload.length - 10);
+            out.flush();
+
+            GameState afterBlack = receive(blackIn);
+            GameState afterWhite = receive(whiteIn);
+            assertEquals("Move accepted", afterBlack.message);
+            assertTrue(afterWhite.yourTurn);
+            assertTrue(afterWhite.isDelta());
+            assertEquals('B', afterWhite.applyTo(whiteStart.board).split("\n")[3].charAt(4));
+
+            Frames.write(new DataOutputStream(white.getOutputStream()), new Move(0, 0, false, true));
+            assertEquals("Opponent resigned. You win.", receive(blackIn).message);
+            assertEquals(0, lobby.activeSessions());
+        }
+    }
+
+    @Test
+    void testDisconnectEndsGame() throws Exception {
+        lobby.setReconnectGrace(100);
+        try (Socket black = connectSerialized(true); Socket white = connectSerialized(false)) {
+            DataInputStream whiteIn = new DataInputStream(white.getInputStream());
+            receive(whiteIn);
+
+            black.close();
+
+            assertEquals("Opponent disconnected. Waiting for reconnection...", receive(whiteIn).message);
+            assertEquals("Opponent disconnected. You win.", receive(whiteIn).message);
+            assertEquals(0, lobby.activeSessions());
+        }
+    }
+
+    @Test
+    void testReconnectWithTokenResumesGame() throws Exception {
+        try (Socket black = connectBinary(); Socket white = connectBinary()) {
+            DataInputStream blackIn = new DataInputStream(black.getInputStream());
+            DataInputStream whiteIn = new DataInputStream(white.getInputStream());
+            long token = ((GameState) WireProtocol.read(blackIn)).token;
+            WireProtocol.read(whiteIn);
+            assertNotEquals(0, token);
+
+            black.getOutputStream().write(WireProtocol.encodeMove(new Move(4, 4, false, false)));
+            GameState accepted = (GameState) WireProtocol.read(blackIn);
+            WireProtocol.read(whiteIn);
+            black.close();
+            assertEquals("Opponent disconnected. Waiting for reconnection...",
+                    ((GameState) WireProtocol.read(whiteIn)).message);
+
+            try (Socket back = new Socket("localhost", port)) {
+                back.setSoTimeout(5000);
+                back.getOutputStream().write(WireProtocol.resume(token, accepted.version));
+                DataInputStream backIn = new DataInputStream(back.getInputStream());
+                byte[] reply = new byte[3];
+                backIn.readFully(reply);
+                assertArrayEquals(WireProtocol.hello(), reply);
+
+                GameState resumed = (GameState) WireProtocol.read(backIn);
+                assertEquals("Reconnected. Waiting for opponent.", resumed.message);
+                assertEquals(accepted.version, resumed.baseVersion);
+                assertEquals("Opponent reconnected.", ((GameState) WireProtocol.read(whiteIn)).message);
+
+                white.getOutputStream().write(WireProtocol.encodeMove(new Move(5, 5, false, false)));
+                GameState update = (GameState) WireProtocol.read(backIn);
+                assertTrue(update.yourTurn);
+                assertArrayEquals(new int[]{(5 * 9 + 5) << 3 | 2}, update.changes);
+                assertEquals(1, lobby.activeSessions());
+            }
+        }
+    }
+
+    @Test
+    void testBinaryProtocolGame() throws Exception {
+        try (Socket black = connectBinary(); Socket white = connectBinary()) {
+            DataInputStream blackIn = new DataInputStream(black.getInputStream());
+            DataInputStream whiteIn = new DataInputStream(white.getInputStream());
+            assertTrue(((GameState) WireProtocol.read(blackIn)).yourTurn);
+            GameState whiteStart = (GameState) WireProtocol.read(whiteIn);
+
+            black.getOutputStream().write(WireProtocol.encodeMove(new Move(4, 4, false, false)));
+
+            assertEquals("Move accepted", ((GameState) WireProtocol.read(blackIn)).message);
+            GameState state = (GameState) WireProtocol.read(whiteIn);
+            assertTrue(state.yourTurn);
+            assertArrayEquals(new int[]{(4 * 9 + 4) << 3 | 1}, state.changes);
+            assertEquals('B', state.applyTo(whiteStart.board).split("\n")[4].charAt(8));
+
+            Move resync = new Move(-1, -1, false, false);
+            resync.resync = true;
+            white.getOutputStream().write(WireProtocol.encodeMove(resync));
+            GameState full = (GameState) WireProtocol.read(whiteIn);
+            assertFalse(full.isDelta());
+            assertTrue(full.yourTurn);
+            assertEquals(state.version, full.version);
+            assertEquals('B', full.board.split("\n")[4].charAt(8));
+        }
+    }
+
+    @Test
+    void testSpectatorsReceiveMoves() throws Exception {
+        try (Socket black = connectBinary(); Socket white = connectBinary()) {
+            DataInputStream blackIn = new DataInputStream(black.getInputStream());
+            WireProtocol.read(blackIn);
+            List<Socket> spectators = new ArrayList<>();
+            List<String> boards = new ArrayList<>();
+            try {
+                for (int k = 0; k < 5; k++) {
+                    Socket spectator = new Socket("localhost", port);
+                    spectators.add(spectator);
+                    spectator.setSoTimeout(5000);
+                    spectator.getOutputStream().write(WireProtocol.watch(1));
+                    DataInputStream in = new DataInputStream(spectator.getInputStream());
+                    byte[] reply = new byte[3];
+                    in.readFully(reply);
+                    GameState joined = (GameState) WireProtocol.read(in);
+                    assertFalse(joined.isDelta());
+                    boards.add(joined.board);
+                }
+
+                black.getOutputStream().write(WireProtocol.encodeMove(new Move(4, 4, false, false)));
+                assertEquals("Move accepted", ((GameState) WireProtocol.read(blackIn)).message);
+
+                for (int k = 0; k < spectators.size(); k++) {
+                    GameState update = (GameState) WireProtocol.read(new DataInputStream(spectators.get(k).getInputStream()));
+                    assertEquals("WHITE to play.", update.message);
+                    assertEquals('B', update.applyTo(boards.get(k)).split("\n")[4].charAt(8));
+                }
+                assertEquals(5, lobby.session(1).spectatorCount());
+            } finally {
+                for (Socket spectator : spectators) spectator.close();
+            }
+        }
+    }
+}
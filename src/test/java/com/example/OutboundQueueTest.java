@@ -0,0 +1,115 @@
+package com.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.DataInputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Testy kolejki stanów wychodzących: scalanie, limity i nieblokujące wysyłanie.
+ */
+class OutboundQueueTest {
+
+    private static EncodedState keyframe(String board, int version, String message) {
+        return new EncodedState(new GameState(board, message, false, 9, 0, 0, version, GameState.KEYFRAME, null));
+    }
+
+    private static EncodedState delta(int base, int version, String message, int... changes) {
+        return new EncodedState(new GameState(null, message, false, 9, 0, 0, version, base, changes));
+    }
+
+    @Test
+    void testUnsentDeltasAreMerged() {
+        OutboundQueue queue = new OutboundQueue(4, TimeUnit.SECONDS.toNanos(10));
+        queue.offer(delta(1, 2, "first", 5 << 3 | 1, 6 << 3 | 2));
+        queue.offer(delta(2, 3, "second", 6 << 3, 7 << 3 | 1));
+        queue.offer(delta(3, 3, "third"));
+
+        assertEquals(1, queue.size());
+        GameState merged = queue.poll().state();
+        assertEquals(1, merged.baseVersion);
+        assertEquals(3, merged.version);
+        assertEquals("third", merged.message);
+        assertArrayEquals(new int[]{5 << 3 | 1, 6 << 3, 7 << 3 | 1}, merged.changes);
+    }
+
+    @Test
+    void testKeyframeSupersedesAndAbsorbsDeltas() {
+        OutboundQueue queue = new OutboundQueue(4, TimeUnit.SECONDS.toNanos(10));
+        String empty = new Board(9).toString();
+        queue.offer(delta(0, 1, "old", 1));
+        queue.offer(keyframe(empty, 1, "full"));
+        queue.offer(delta(1, 2, "now", 0 << 3 | 1));
+
+        assertEquals(1, queue.size());
+        GameState state = queue.poll().state();
+        assertFalse(state.isDelta());
+        assertEquals(2, state.version);
+        assertTrue(state.board.startsWith("B "));
+        assertNull(queue.poll());
+    }
+
+    @Test
+    void testFinishedQueueDrainsBeforeClosing() throws Exception {
+        OutboundQueue queue = new OutboundQueue(4, TimeUnit.SECONDS.toNanos(10));
+        queue.offer(keyframe("b", 1, "Game over"));
+        queue.finish();
+        queue.offer(delta(1, 2, "ignored", 0));
+
+        assertFalse(queue.drained());
+        assertEquals("Game over", queue.take().state().message);
+        assertNull(queue.take());
+        assertTrue(queue.drained());
+    }
+
+    @Test
+    void testLagAndCapacityLimits() throws Exception {
+        OutboundQueue full = new OutboundQueue(2, TimeUnit.SECONDS.toNanos(10));
+        assertTrue(full.offer(delta(1, 2, "a")));
+        assertTrue(full.offer(delta(5, 6, "b")));
+        assertFalse(full.offer(delta(8, 9, "c")));
+
+        OutboundQueue slow = new OutboundQueue(8, TimeUnit.MILLISECONDS.toNanos(1));
+        assertTrue(slow.offer(delta(1, 2, "a")));
+        Thread.sleep(20);
+        assertFalse(slow.offer(delta(2, 3, "b")));
+
+        slow.close();
+        assertNull(slow.take());
+    }
+
+    @Test
+    void testStalledClientDoesNotBlockSender() throws Exception {
+        try (ServerSocket server = new ServerSocket(0);
+             Socket client = new Socket("localhost", server.getLocalPort());
+             Socket accepted = server.accept()) {
+            client.getOutputStream().write(WireProtocol.hello());
+            ClientHandler handler = new ClientHandler(accepted);
+            handler.attach(mock(GameSession.class), Stone.WHITE);
+            handler.start(task -> Thread.ofVirtual().start(task));
+
+            String board = new Board(19).toString();
+            String message = "x".repeat(4000);
+            long start = System.nanoTime();
+            for (int k = 0; k < 5000; k++) {
+                handler.sendState(keyframe(board, k, message));
+            }
+            assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(2));
+            assertTrue(handler.isOpen());
+
+            DataInputStream in = new DataInputStream(client.getInputStream());
+            byte[] reply = new byte[3];
+            in.readFully(reply);
+            client.setSoTimeout(5000);
+            GameState last = (GameState) WireProtocol.read(in);
+            while (last.version != 4999) last = (GameState) WireProtocol.read(in);
+            assertEquals(4999, last.version);
+            handler.close();
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.example;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Testy jednostkowe historii pozycji i reguły superko.
+ */
+class PositionHistoryTest {
+
+    private RulesEngine rules;
+    private Board board;
+    private PositionHistory history;
+
+    @BeforeEach
+    void setUp() {
+        rules = new RulesEngine();
+        board = new Board(5);
+        history = new PositionHistory(5);
+    }
+
+    private boolean play(int x, int y, Stone stone) {
+        if (rules.play(board, x, y, stone) < 0) return false;
+        if (history.contains(board)) {
+            rules.undo(board);
+            return false;
+        }
+        history.add(board);
+        return true;
+    }
+
+    @Test
+    void testKoRecaptureIsRejected() {
+        assertTrue(play(1, 0, Stone.BLACK));
+        assertTrue(play(2, 0, Stone.WHITE));
+        assertTrue(play(0, 1, Stone.BLACK));
+        assertTrue(play(3, 1, Stone.WHITE));
+        assertTrue(play(1, 2, Stone.BLACK));
+        assertTrue(play(2, 2, Stone.WHITE));
+        assertTrue(play(4, 4, Stone.BLACK));
+        assertTrue(play(1, 1, Stone.WHITE));
+
+        assertTrue(play(2, 1, Stone.BLACK));
+        assertEquals(Stone.EMPTY, board.get(1, 1));
+
+        Board beforeRetake = board.copy();
+        assertFalse(play(1, 1, Stone.WHITE));
+        assertEquals(beforeRetake, board);
+    }
+
+    @Test
+    void testEmptyBoardIsPartOfHistory() {
+        assertTrue(history.contains(new Board(5)));
+
+        board.set(2, 2, Stone.BLACK);
+        assertFalse(history.contains(board));
+    }
+
+    @Test
+    void testZobristFollowsBoardContents() {
+        Board other = new Board(5);
+        board.set(1, 1, Stone.BLACK);
+        board.set(2, 2, Stone.WHITE);
+        other.set(2, 2, Stone.WHITE);
+        other.set(1, 1, Stone.BLACK);
+        assertEquals(board.zobrist(), other.zobrist());
+
+        board.set(1, 1, Stone.EMPTY);
+        board.set(2, 2, Stone.EMPTY);
+        assertEquals(new Board(5).zobrist(), board.zobrist());
+    }
+}
@@ -21,9 +21,10 @@ class RulesEngineTest {
         board = new Board(9);
 
         session = mock(GameSession.class);
-        when(session.getPreviousBoard()).thenReturn(null);
+        when(session.repeatsPosition(any())).thenReturn(false);
+        when(session.countsPrisoners()).thenReturn(true);
         doNothing().when(session).addPrisoner(any());
-        doNothing().when(session).setPreviousBoard(any());
+        doNothing().when(session).recordPosition(any());
     }
 
     @Test
@@ -69,6 +70,22 @@ class RulesEngineTest {
         assertTrue(result);
         assertEquals(Stone.EMPTY, board.get(1, 1));
         assertEquals(Stone.BLACK, board.get(2, 1));
+        verify(session).addPrisoner(Stone.BLACK);
+    }
+
+    @Test
+    void testCaptureWithoutPrisonerCounting() {
+        board.set(1, 0, Stone.BLACK);
+        board.set(0, 1, Stone.BLACK);
+        board.set(1, 2, Stone.BLACK);
+        board.set(1, 1, Stone.WHITE);
+        when(session.countsPrisoners()).thenReturn(false);
+
+        boolean result = rules.applyMove(board, new Move(2, 1, false, false, false), Stone.BLACK, session);
+
+        assertTrue(result);
+        assertEquals(Stone.EMPTY, board.get(1, 1));
+        verify(session, never()).addPrisoner(any());
     }
 
     @Test
@@ -85,4 +102,49 @@ class RulesEngineTest {
         assertFalse(result);
         assertEquals(Stone.EMPTY, board.get(1, 1));
     }
+
+    @Test
+    void testPlayAndUndoRestoresCapturedStones() {
+        board.set(1, 0, Stone.BLACK);
+        board.set(0, 1, Stone.BLACK);
+        board.set(1, 2, Stone.BLACK);
+        board.set(1, 1, Stone.WHITE);
+        Board before = board.copy();
+
+        assertEquals(1, rules.play(board, 2, 1, Stone.BLACK));
+        assertEquals(Stone.EMPTY, board.get(1, 1));
+
+        assertTrue(rules.undo(board));
+        assertEquals(before, board);
+        assertFalse(rules.undo(board));
+    }
+
+    @Test
+    void testIllegalPlayLeavesBoardUnchanged() {
+        board.set(1, 0, Stone.WHITE);
+        board.set(0, 1, Stone.WHITE);
+        board.set(2, 1, Stone.WHITE);
+        board.set(1, 2, Stone.WHITE);
+        Board before = board.copy();
+
+        assertEquals(-1, rules.play(board, 1, 1, Stone.BLACK));
+        assertEquals(before, board);
+        assertFalse(rules.undo(board));
+    }
+
+    @Test
+    void testRepeatedPositionIsRejected() {
+        board.set(1, 0, Stone.BLACK);
+        board.set(0, 1, Stone.BLACK);
+        board.set(1, 2, Stone.BLACK);
+        board.set(1, 1, Stone.WHITE);
+        Board before = board.copy();
+        when(session.repeatsPosition(any())).thenReturn(true);
+
+        boolean result = rules.applyMove(board, new Move(2, 1, false, false, false), Stone.BLACK, session);
+
+        assertFalse(result);
+        assertEquals(before, board);
+        verify(session, never()).addPrisoner(any());
+    }
 }
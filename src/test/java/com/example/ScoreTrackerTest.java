@@ -0,0 +1,50 @@
+package com.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Testy jednostkowe przyrostowego licznika terytorium.
+ */
+class ScoreTrackerTest {
+
+    @Test
+    void testTracksPlacementsAndRemovals() {
+        Board board = new Board(5);
+        ScoreTracker tracker = board.territory();
+        assertEquals(0, tracker.blackTerritory());
+
+        board.set(3, 3, Stone.WHITE);
+        for (int y = 0; y < 5; y++) board.set(1, y, Stone.BLACK);
+        assertEquals(5, tracker.blackTerritory());
+        assertEquals(0, tracker.whiteTerritory());
+
+        board.set(1, 2, Stone.EMPTY);
+        assertEquals(0, tracker.blackTerritory());
+    }
+
+    @Test
+    void testRandomGameMatchesScoringEngine() {
+        RulesEngine rules = new RulesEngine();
+        ScoringEngine engine = new ScoringEngine();
+        Board board = new Board(9);
+        ScoreTracker tracker = board.territory();
+        Random random = new Random(5);
+        Stone turn = Stone.BLACK;
+
+        for (int k = 0; k < 1500; k++) {
+            if (rules.play(board, random.nextInt(9), random.nextInt(9), turn) >= 0) {
+                turn = turn.opposite();
+            }
+            if (k % 7 == 0) rules.undo(board);
+
+            ScoringResult expected = engine.score(board, 3, 4, 0.5f);
+            ScoringResult actual = tracker.estimate(3, 4, 0.5f);
+            assertEquals(expected.blackScore, actual.blackScore);
+            assertEquals(expected.whiteScore, actual.whiteScore);
+        }
+    }
+}
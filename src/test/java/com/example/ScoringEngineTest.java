@@ -3,6 +3,8 @@ package com.example;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.Random;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 /**
@@ -38,4 +40,48 @@ class ScoringEngineTest {
         assertTrue(result.blackScore > 0);
         assertEquals(0, result.whiteScore);
     }
+
+    @Test
+    void testSharedRegionIsNeutral() {
+        for (int y = 0; y < 5; y++) {
+            board.set(1, y, Stone.BLACK);
+            board.set(3, y, Stone.WHITE);
+        }
+
+        ScoringResult result = engine.score(board, 2, 1, 0.5f);
+
+        assertEquals(5 + 2, result.blackScore);
+        assertEquals(5 + 1 + 0.5f, result.whiteScore);
+    }
+
+    @Test
+    void testAreaScoringCountsStonesAndIgnoresPrisoners() {
+        for (int y = 0; y < 5; y++) {
+            board.set(1, y, Stone.BLACK);
+            board.set(3, y, Stone.WHITE);
+        }
+
+        ScoringResult result = engine.score(board, 2, 1, 0.5f, ScoringRules.AREA);
+
+        assertEquals(5 + 5, result.blackScore);
+        assertEquals(5 + 5 + 0.5f, result.whiteScore);
+    }
+
+    @Test
+    void testAreaScoringMatchesTerritoryPlusStones() {
+        Random random = new Random(5);
+        RulesEngine rules = new RulesEngine();
+        Board game = new Board(19);
+        Stone turn = Stone.BLACK;
+
+        for (int k = 0; k < 300; k++) {
+            if (rules.play(game, random.nextInt(19), random.nextInt(19), turn) >= 0) {
+                turn = turn.opposite();
+            }
+            ScoringResult territory = engine.score(game, 0, 0, 0);
+            ScoringResult area = engine.score(game, 0, 0, 0, ScoringRules.AREA);
+            assertEquals(territory.blackScore + game.count(Stone.BLACK), area.blackScore);
+            assertEquals(territory.whiteScore + game.count(Stone.WHITE), area.whiteScore);
+        }
+    }
 }
@@ -0,0 +1,74 @@
+package com.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Testy skrzynki zadań aktora: kolejność zadań i odporność na wyjątki zadań.
+ */
+class SerialExecutorTest {
+
+    @Test
+    void testMailboxKeepsRunningAfterTaskThrowsError() {
+        SerialExecutor mailbox = new SerialExecutor(Runnable::run);
+        List<String> ran = new ArrayList<>();
+
+        assertThrows(AssertionError.class, () -> mailbox.execute(() -> {
+            throw new AssertionError("task failed");
+        }));
+        mailbox.execute(() -> ran.add("next"));
+
+        assertEquals(List.of("next"), ran);
+    }
+
+    @Test
+    void testTasksQueuedBehindFailingTaskStillRun() throws Exception {
+        ExecutorService pool = Executors.newSingleThreadExecutor(task -> {
+            Thread thread = new Thread(task);
+            thread.setUncaughtExceptionHandler((t, e) -> { });
+            return thread;
+        });
+        try {
+            SerialExecutor mailbox = new SerialExecutor(pool);
+            CountDownLatch gate = new CountDownLatch(1);
+            CountDownLatch done = new CountDownLatch(2);
+            List<Integer> order = new ArrayList<>();
+
+            mailbox.execute(() -> {
+                try {
+                    gate.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            mailbox.execute(() -> {
+                throw new StackOverflowError();
+            });
+            mailbox.execute(() -> {
+                throw new IllegalStateException();
+            });
+            mailbox.execute(() -> {
+                order.add(1);
+                done.countDown();
+            });
+            mailbox.execute(() -> {
+                order.add(2);
+                done.countDown();
+            });
+            gate.countDown();
+
+            assertTrue(done.await(5, TimeUnit.SECONDS));
+            assertEquals(List.of(1, 2), order);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Testy jednostkowe binarnego protokołu przesyłania ruchów i stanów gry.
+ */
+class WireProtocolTest {
+
+    private static Object roundTrip(byte[] frame) throws Exception {
+        int length = (frame[0] & 0xFF) << 8 | (frame[1] & 0xFF);
+        assertEquals(frame.length - WireProtocol.HEADER, length);
+        return WireProtocol.decode(Arrays.copyOfRange(frame, WireProtocol.HEADER, frame.length));
+    }
+
+    @Test
+    void testMovesRoundTrip() throws Exception {
+        Move play = (Move) roundTrip(WireProtocol.encodeMove(new Move(18, 3, false, false)));
+        assertEquals(18, play.x);
+        assertEquals(3, play.y);
+        assertFalse(play.pass || play.resign || play.doneScoring);
+
+        assertTrue(((Move) roundTrip(WireProtocol.encodeMove(new Move(-1, -1, true, false)))).pass);
+        assertTrue(((Move) roundTrip(WireProtocol.encodeMove(new Move(-1, -1, false, true)))).resign);
+        assertTrue(((Move) roundTrip(WireProtocol.encodeMove(new Move(-1, -1, false, false, true)))).doneScoring);
+        assertEquals(5, WireProtocol.encodeMove(new Move(1, 2, false, false)).length);
+    }
+
+    @Test
+    void testStateRoundTripWithDeadMarks() throws Exception {
+        Board board = new Board(19);
+        board.set(0, 0, Stone.BLACK);
+        board.set(18, 17, Stone.WHITE);
+        board.set(3, 4, Stone.WHITE);
+        long[] dead = board.geometry().newSet();
+        int i = board.geometry().index(3, 4);
+        dead[i >>> 6] |= 1L << i;
+        GameState state = new GameState(board.toString(dead), "Group marked dead. Żółw.", true, 19, 12.5f, 7f);
+
+        GameState decoded = (GameState) roundTrip(WireProtocol.encodeState(state));
+
+        assertEquals(state.board, decoded.board);
+        assertEquals(state.message, decoded.message);
+        assertTrue(decoded.yourTurn);
+        assertEquals(19, decoded.size);
+        assertEquals(12.5f, decoded.blackEstimate);
+        assertEquals(7f, decoded.whiteEstimate);
+    }
+
+    @Test
+    void testDeltaRoundTrip() throws Exception {
+        GameState state = new GameState(null, "Your turn", true, 19, 3f, 6.5f, 42, 41,
+                new int[]{(3 * 19 + 3) << 3 | 1, (3 * 19 + 4) << 3, 360 << 3 | 4});
+
+        byte[] frame = WireProtocol.encodeState(state);
+        GameState decoded = (GameState) roundTrip(frame);
+
+        assertTrue(decoded.isDelta());
+        assertEquals(42, decoded.version);
+        assertEquals(41, decoded.baseVersion);
+        assertArrayEquals(state.changes, decoded.changes);
+        assertEquals("Your turn", decoded.message);
+        assertTrue(frame.length < 48, "delta frame: " + frame.length);
+    }
+
+    @Test
+    void testStateIsMuchSmallerThanSerializedState() throws Exception {
+        Board board = new Board(19);
+        for (int k = 0; k < 120; k++) board.set(k % 19, (k * 7) % 19, k % 2 == 0 ? Stone.BLACK : Stone.WHITE);
+        GameState state = new GameState(board.toString(), "Move accepted", false, 19, 40f, 46.5f);
+
+        int binary = WireProtocol.encodeState(state).length;
+        int serialized = Frames.encode(state).length;
+
+        assertTrue(binary * 5 < serialized, binary + " vs " + serialized);
+    }
+}